@@ -0,0 +1,22 @@
+package org.shopservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the expiry of cart stock reservations.
+ *
+ * @param ttl          time after which an unchecked-out cart is dropped and its stock released
+ * @param tick         resolution of the expiry timer wheel; carts expire up to one tick late
+ * @param wheelSize    number of slots of the timer wheel
+ * @param releaseBatch maximum number of carts released in one bulk write
+ */
+@ConfigurationProperties(prefix = "shop.cart-reservation")
+public record CartReservationProperties(
+        @DefaultValue("30m") Duration ttl,
+        @DefaultValue("1s") Duration tick,
+        @DefaultValue("512") int wheelSize,
+        @DefaultValue("500") int releaseBatch) {
+}
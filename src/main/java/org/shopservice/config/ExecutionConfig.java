@@ -0,0 +1,60 @@
+package org.shopservice.config;
+
+import org.shopservice.controller.ConcurrencyLimitFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Threads that handle requests, see {@link ExecutionProperties}.
+ * <p>
+ * On virtual threads at most {@code maxConcurrentRequests} requests run at once. Platform
+ * threads are capped by Tomcat's pool, which queues the requests above it instead of rejecting
+ * them, so that mode keeps no limit of its own. Virtual threads are not capped, and without the
+ * limit a slow database would turn every waiting request into a waiter on the Mongo connection
+ * pool, where it fails after the driver's wait-queue timeout.
+ */
+@Configuration
+public class ExecutionConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionConfig.class);
+
+    /**
+     * Virtual threads for Tomcat's request handling and for the async executor that writes
+     * streamed responses. Background workers keep their own platform threads.
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "shop.execution", name = "mode", havingValue = "virtual")
+    static class VirtualThreads {
+
+        @Bean
+        FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(ExecutionProperties properties) {
+            logger.info("Handling requests on virtual threads, at most {} at a time",
+                    properties.maxConcurrentRequests());
+            FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(
+                    new ConcurrencyLimitFilter(properties.maxConcurrentRequests(), properties.acquireTimeout()));
+            registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+            return registration;
+        }
+
+        @Bean
+        TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandler() {
+            return handler -> handler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+
+        // replaces Boot's pooled executor, which is only created when no executor bean exists
+        @Bean(name = "applicationTaskExecutor")
+        AsyncTaskExecutor applicationTaskExecutor() {
+            return new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor());
+        }
+    }
+}
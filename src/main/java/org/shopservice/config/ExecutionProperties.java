@@ -0,0 +1,30 @@
+package org.shopservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the threads that handle requests.
+ *
+ * @param mode                  {@code platform} serves requests on Tomcat's bounded thread pool;
+ *                              {@code virtual} serves every request, and the Mongo calls it makes,
+ *                              on its own virtual thread
+ * @param maxConcurrentRequests requests handled at the same time in {@code virtual} mode; keep it at
+ *                              or below the Mongo connection pool size ({@code maxPoolSize}, 100
+ *                              by default). Unused in {@code platform} mode, where Tomcat's pool
+ *                              sets the limit
+ * @param acquireTimeout        how long a request waits for a slot before it is rejected with 503
+ */
+@ConfigurationProperties(prefix = "shop.execution")
+public record ExecutionProperties(
+        @DefaultValue("platform") Mode mode,
+        @DefaultValue("100") int maxConcurrentRequests,
+        @DefaultValue("1s") Duration acquireTimeout) {
+
+    public enum Mode {
+        PLATFORM,
+        VIRTUAL
+    }
+}
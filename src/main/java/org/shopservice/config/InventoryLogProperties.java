@@ -0,0 +1,25 @@
+package org.shopservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the write-behind pipeline for {@link org.shopservice.model.InventoryLog} records.
+ *
+ * @param writeBehind   queue records and insert them in batches; {@code false} inserts synchronously
+ * @param queueCapacity maximum number of records waiting to be flushed
+ * @param batchSize     number of queued records that triggers a flush
+ * @param flushInterval maximum time a record waits before it is flushed
+ * @param spillFile     append-only file that records are written to before they are queued and
+ *                      that is replayed on startup; empty disables it
+ */
+@ConfigurationProperties(prefix = "shop.inventory-log")
+public record InventoryLogProperties(
+        @DefaultValue("true") boolean writeBehind,
+        @DefaultValue("10000") int queueCapacity,
+        @DefaultValue("500") int batchSize,
+        @DefaultValue("200ms") Duration flushInterval,
+        @DefaultValue("") String spillFile) {
+}
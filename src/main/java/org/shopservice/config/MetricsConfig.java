@@ -0,0 +1,47 @@
+package org.shopservice.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.shopservice.controller.DbRoundTripFilter;
+import org.shopservice.service.ShopService;
+import org.springframework.aop.Advisor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+
+/**
+ * Metrics beyond what Spring Boot records on its own, which already covers request latency per
+ * endpoint ({@code http.server.requests}) and Mongo command latency per command and collection
+ * ({@code mongodb.driver.commands}). All of them are scraped from {@code /actuator/prometheus}.
+ * <p>
+ * Also counts the Mongo commands of each request, see {@link DbRoundTripFilter}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor shopServiceMetrics(ObjectProvider<MeterRegistry> registry) {
+        return new ServiceCallMetrics(registry, ShopService.class).advisor();
+    }
+
+    @Bean
+    MongoClientSettingsBuilderCustomizer mongoPoolWaitMetrics(MeterRegistry registry) {
+        MongoPoolWaitMetrics listener = new MongoPoolWaitMetrics(registry);
+        return builder -> builder.applyToConnectionPoolSettings(pool -> pool.addConnectionPoolListener(listener));
+    }
+
+    // always on, so tests can count round trips; idle unless a recording is open on the thread
+    @Bean
+    MongoClientSettingsBuilderCustomizer mongoRoundTrips() {
+        MongoRoundTrips listener = new MongoRoundTrips();
+        return builder -> builder.addCommandListener(listener);
+    }
+
+    @Bean
+    DbRoundTripFilter dbRoundTripFilter() {
+        return new DbRoundTripFilter();
+    }
+}
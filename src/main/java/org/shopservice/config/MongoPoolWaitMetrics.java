@@ -0,0 +1,63 @@
+package org.shopservice.config;
+
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent waiting for a connection from the Mongo connection pool
+ * ({@code mongodb.driver.pool.checkout}, by outcome), which the driver's own pool metrics,
+ * sizes and wait-queue length only, do not cover.
+ * <p>
+ * The driver reports no elapsed time for a checkout, so it is measured from the start event
+ * to the checked-out or failed event on the same thread. That holds for the blocking client; a
+ * reactive checkout that has to wait completes on another thread and is not measured.
+ */
+class MongoPoolWaitMetrics implements ConnectionPoolListener {
+
+    // one slot per thread, reused, so measuring allocates nothing per checkout
+    private final ThreadLocal<long[]> started = ThreadLocal.withInitial(() -> new long[1]);
+    private final Timer checkedOut;
+    private final Timer failed;
+
+    MongoPoolWaitMetrics(MeterRegistry registry) {
+        this.checkedOut = timer(registry, "success");
+        this.failed = timer(registry, "failure");
+    }
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        started.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        record(checkedOut);
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        record(failed);
+    }
+
+    private void record(Timer timer) {
+        long[] start = started.get();
+        if (start[0] != 0) {
+            timer.record(System.nanoTime() - start[0], TimeUnit.NANOSECONDS);
+            start[0] = 0;
+        }
+    }
+
+    private static Timer timer(MeterRegistry registry, String outcome) {
+        return Timer.builder("mongodb.driver.pool.checkout")
+                .description("Time spent waiting for a pooled connection")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
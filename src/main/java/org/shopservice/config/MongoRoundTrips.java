@@ -0,0 +1,125 @@
+package org.shopservice.config;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Counts the Mongo commands a thread sends while a {@link Recording} is open on it, to catch
+ * code that makes a database round trip per item instead of one per batch.
+ * <p>
+ * Commands are attributed to the thread that sends them, which is the request thread for
+ * almost everything the blocking service does. A thread that does work on behalf of other
+ * requests, like the leader of a stock group commit, opens its recording with
+ * {@link #start(Collection)} so its commands also count towards theirs. Other work handed to
+ * other threads, such as inventory log flushes, the cart expiry sweeper or the reactive driver,
+ * is not counted. With no recording open a command costs one thread-local lookup.
+ */
+public final class MongoRoundTrips implements CommandListener {
+
+    private static final ThreadLocal<Recording> current = new ThreadLocal<>();
+
+    /**
+     * Starts counting the commands of the current thread until the returned recording is
+     * closed. Recordings nest; a command counts towards every recording open at the time.
+     */
+    public static Recording start() {
+        return start(List.of());
+    }
+
+    /**
+     * Like {@link #start()}, but the commands also count towards {@code onBehalfOf}, recordings
+     * of other threads whose work the current thread does while they wait for it. A command
+     * counts once per recording, however many paths lead to it.
+     */
+    public static Recording start(Collection<Recording> onBehalfOf) {
+        Recording recording = new Recording(current.get(), List.copyOf(onBehalfOf));
+        current.set(recording);
+        return recording;
+    }
+
+    /**
+     * @return the innermost recording open on the current thread, or {@code null}
+     */
+    public static Recording current() {
+        return current.get();
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        Recording recording = current.get();
+        if (recording != null) {
+            recording.record(describe(event));
+        }
+    }
+
+    // e.g. "find products"; getMore names its collection in a field of its own
+    private static String describe(CommandStartedEvent event) {
+        BsonDocument command = event.getCommand();
+        BsonValue target = command.get("getMore".equals(event.getCommandName()) ? "collection" : event.getCommandName());
+        return target != null && target.isString()
+                ? event.getCommandName() + " " + target.asString().getValue()
+                : event.getCommandName();
+    }
+
+    public static final class Recording implements AutoCloseable {
+        private final Recording outer;
+        private final List<Recording> onBehalfOf;
+        // only written by the thread it was opened on, or by one working for it while it waits
+        private final List<String> commands = new ArrayList<>();
+        private boolean closed;
+
+        private Recording(Recording outer, List<Recording> onBehalfOf) {
+            this.outer = outer;
+            this.onBehalfOf = onBehalfOf;
+        }
+
+        /**
+         * @return number of commands sent so far
+         */
+        public int count() {
+            return commands.size();
+        }
+
+        /**
+         * @return the commands sent so far, in order, as command name and collection
+         */
+        public List<String> commands() {
+            return List.copyOf(commands);
+        }
+
+        private void record(String command) {
+            record(command, Collections.newSetFromMap(new IdentityHashMap<>()));
+        }
+
+        private void record(String command, Set<Recording> counted) {
+            // once a recording is counted, so are the ones it leads to
+            for (Recording recording = this; recording != null && counted.add(recording); recording = recording.outer) {
+                if (!recording.closed) {
+                    recording.commands.add(command);
+                }
+                recording.onBehalfOf.forEach(other -> other.record(command, counted));
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            if (current.get() == this) {
+                if (outer != null) {
+                    current.set(outer);
+                } else {
+                    current.remove();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.shopservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the in-process product cache.
+ *
+ * @param maximumSize  maximum number of cached products
+ * @param ttl          time after which a cached product is reloaded from the database
+ * @param changeStream evict products written by other instances, as reported by the change
+ *                     stream of the {@code products} collection; requires a replica set
+ */
+@ConfigurationProperties(prefix = "shop.product-cache")
+public record ProductCacheProperties(
+        @DefaultValue("10000") long maximumSize,
+        @DefaultValue("5m") Duration ttl,
+        @DefaultValue("false") boolean changeStream) {
+}
@@ -0,0 +1,225 @@
+package org.shopservice.config;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Explains every filtered query before it is sent and records the ones whose winning plan
+ * scans the whole collection, which means an index is missing. Tests fail on them, see
+ * {@code QueryPlanGuardTestListener}; elsewhere they are logged.
+ * <p>
+ * Queries without a filter ({@code find}, {@code count} and {@code distinct} without one,
+ * pipelines that do not start with {@code $match}) read everything on purpose and are not
+ * explained. Updates and deletes are not explained either. Each query shape, i.e. the query
+ * with its values left out, is explained once; later queries of a shape that scans are
+ * recorded without explaining them again.
+ * <p>
+ * Explains run in the background, on a thread of their own and the sync client: the listener
+ * is called on the thread that holds the connection, a driver thread for the reactive client,
+ * and must not wait there for another connection. They are not counted by
+ * {@link MongoRoundTrips}. {@link #violations()} waits for the explains still running. Keep the
+ * guard out of production all the same.
+ */
+public class QueryPlanGuard implements CommandListener, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryPlanGuard.class);
+
+    // fields of each command that shape its plan, i.e. what the explain needs
+    private static final Map<String, Set<String>> EXPLAINED = Map.of(
+            "find", Set.of("find", "filter", "sort", "projection", "hint", "skip", "limit", "collation"),
+            "count", Set.of("count", "query", "hint", "skip", "limit", "collation"),
+            "distinct", Set.of("distinct", "key", "query", "collation"),
+            "aggregate", Set.of("aggregate", "pipeline", "cursor", "hint", "collation"));
+
+    private final ObjectProvider<MongoClient> mongoClient;
+    private final long minDocuments;
+    private final ExecutorService explainer = Executors.newVirtualThreadPerTaskExecutor();
+    // query shapes by namespace, explained or being explained, and those of them that scan
+    private final Set<String> explainedShapes = ConcurrentHashMap.newKeySet();
+    private final Set<String> scanningShapes = ConcurrentHashMap.newKeySet();
+    private final Set<CompletableFuture<Void>> pending = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+
+    // the client is looked up on first use: it is built with this listener
+    public QueryPlanGuard(ObjectProvider<MongoClient> mongoClient, long minDocuments) {
+        this.mongoClient = mongoClient;
+        this.minDocuments = minDocuments;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        BsonDocument explained = explainable(event.getCommandName(), event.getCommand());
+        if (explained == null) {
+            return;
+        }
+        String namespace = event.getDatabaseName() + "." + explained.getString(event.getCommandName()).getValue();
+        String shape = namespace + " " + shape(explained).asDocument().toJson();
+        if (scanningShapes.contains(shape)) {
+            violations.add(namespace + " " + explained.toJson());
+            return;
+        }
+        if (!explainedShapes.add(shape)) {
+            return;
+        }
+        try {
+            CompletableFuture<Void> explain = CompletableFuture.runAsync(
+                    () -> check(event.getDatabaseName(), event.getCommandName(), explained, shape), explainer);
+            pending.add(explain);
+            explain.whenComplete((ignored, ex) -> {
+                pending.remove(explain);
+                if (ex != null) {
+                    // the query itself has run and reported whatever is wrong with it
+                    explainedShapes.remove(shape);
+                    logger.warn("Could not explain {}", explained.toJson(), ex.getCause());
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // closed along with the context
+        }
+    }
+
+    /**
+     * Waits for the explains still running, so that every query sent so far is accounted for.
+     *
+     * @return the collection scans recorded since the last {@link #clear()}, as namespace and query
+     */
+    public List<String> violations() {
+        awaitExplains();
+        return List.copyOf(violations);
+    }
+
+    /**
+     * Waits for the explains still running and forgets their violations.
+     */
+    public void clear() {
+        awaitExplains();
+        violations.clear();
+    }
+
+    @Override
+    public void close() {
+        explainer.shutdownNow();
+    }
+
+    private void awaitExplains() {
+        try {
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).get();
+        } catch (ExecutionException | CancellationException ex) {
+            // logged by the explain itself
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the query with every value replaced by its type, so that queries differing in
+     * their values only are explained once
+     */
+    static BsonValue shape(BsonValue value) {
+        if (value.isDocument()) {
+            BsonDocument shape = new BsonDocument();
+            value.asDocument().forEach((field, fieldValue) -> shape.put(field, shape(fieldValue)));
+            return shape;
+        }
+        if (value.isArray()) {
+            // $in lists of any length plan alike
+            return new BsonArray(value.asArray().stream().map(QueryPlanGuard::shape).distinct().toList());
+        }
+        return new BsonString(value.getBsonType().name());
+    }
+
+    /**
+     * @return the parts of a command to explain, or {@code null} if it is not a filtered query
+     */
+    static BsonDocument explainable(String commandName, BsonDocument command) {
+        Set<String> fields = EXPLAINED.get(commandName);
+        if (fields == null || !command.isString(commandName) || !filtered(commandName, command)) {
+            return null;
+        }
+        BsonDocument explained = new BsonDocument();
+        command.forEach((field, value) -> {
+            if (fields.contains(field)) {
+                explained.put(field, value);
+            }
+        });
+        return explained;
+    }
+
+    /**
+     * @return whether the winning plan of an explain output, or of any of its pipeline stages,
+     * reads the whole collection
+     */
+    static boolean scansCollection(BsonValue explain) {
+        if (explain.isDocument()) {
+            for (Map.Entry<String, BsonValue> field : explain.asDocument().entrySet()) {
+                if (field.getKey().equals("winningPlan") ? hasStage(field.getValue(), "COLLSCAN")
+                        : scansCollection(field.getValue())) {
+                    return true;
+                }
+            }
+        } else if (explain.isArray()) {
+            return explain.asArray().stream().anyMatch(QueryPlanGuard::scansCollection);
+        }
+        return false;
+    }
+
+    private static boolean hasStage(BsonValue plan, String stage) {
+        if (plan.isDocument()) {
+            BsonDocument document = plan.asDocument();
+            return new BsonString(stage).equals(document.get("stage"))
+                    || document.values().stream().anyMatch(value -> hasStage(value, stage));
+        }
+        return plan.isArray() && plan.asArray().stream().anyMatch(value -> hasStage(value, stage));
+    }
+
+    private static boolean filtered(String commandName, BsonDocument command) {
+        return switch (commandName) {
+            case "find" -> !command.getDocument("filter", new BsonDocument()).isEmpty();
+            case "aggregate" -> {
+                BsonArray pipeline = command.getArray("pipeline", new BsonArray());
+                yield !pipeline.isEmpty() && pipeline.get(0).asDocument().containsKey("$match");
+            }
+            default -> !command.getDocument("query", new BsonDocument()).isEmpty();
+        };
+    }
+
+    private void check(String databaseName, String commandName, BsonDocument query, String shape) {
+        String collection = query.getString(commandName).getValue();
+        MongoDatabase database = mongoClient.getObject().getDatabase(databaseName);
+        if (database.getCollection(collection).estimatedDocumentCount() < minDocuments) {
+            // explain it again once the collection has grown
+            explainedShapes.remove(shape);
+            return;
+        }
+        BsonDocument explain = database.runCommand(
+                new BsonDocument("explain", query).append("verbosity", new BsonString("queryPlanner")),
+                BsonDocument.class);
+        if (scansCollection(explain)) {
+            String violation = databaseName + "." + collection + " " + query.toJson();
+            logger.warn("Collection scan, an index is missing: {}", violation);
+            scanningShapes.add(shape);
+            violations.add(violation);
+        }
+    }
+}
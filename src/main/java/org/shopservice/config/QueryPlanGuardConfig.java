@@ -0,0 +1,27 @@
+package org.shopservice.config;
+
+import com.mongodb.client.MongoClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Installs the {@link QueryPlanGuard} on the Mongo clients when
+ * {@code shop.query-plan-guard.enabled} is set, as it is for the tests.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "shop.query-plan-guard", name = "enabled", havingValue = "true")
+public class QueryPlanGuardConfig {
+
+    @Bean
+    QueryPlanGuard queryPlanGuard(ObjectProvider<MongoClient> mongoClient, QueryPlanGuardProperties properties) {
+        return new QueryPlanGuard(mongoClient, properties.minDocuments());
+    }
+
+    @Bean
+    MongoClientSettingsBuilderCustomizer queryPlanGuardListener(QueryPlanGuard guard) {
+        return builder -> builder.addCommandListener(guard);
+    }
+}
@@ -0,0 +1,16 @@
+package org.shopservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the {@link QueryPlanGuard}, meant for tests and staging rather than production.
+ *
+ * @param enabled      explain every filtered query and record those that scan a whole collection
+ * @param minDocuments collections with fewer documents are too small to care how they are read
+ */
+@ConfigurationProperties(prefix = "shop.query-plan-guard")
+public record QueryPlanGuardProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("1") long minDocuments) {
+}
@@ -0,0 +1,98 @@
+package org.shopservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every public method declared by a service class ({@code shop.service}, with a percentile
+ * histogram) and counts the exceptions it throws by type ({@code shop.service.errors}), both
+ * tagged with the class and method name.
+ * <p>
+ * The meters of a method are registered on its first call and then looked up by {@link Method},
+ * so later calls record without building tags or meter ids and without allocating.
+ */
+class ServiceCallMetrics implements MethodInterceptor {
+
+    private final ObjectProvider<MeterRegistry> registry;
+    private final Class<?> serviceClass;
+    private final Map<Method, MethodMeters> meters = new ConcurrentHashMap<>();
+
+    // the registry is looked up on first use: advisors are created before the registry is configured
+    ServiceCallMetrics(ObjectProvider<MeterRegistry> registry, Class<?> serviceClass) {
+        this.registry = registry;
+        this.serviceClass = serviceClass;
+    }
+
+    Advisor advisor() {
+        return new DefaultPointcutAdvisor(new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return serviceClass.isAssignableFrom(targetClass)
+                        && method.getDeclaringClass() == serviceClass
+                        && Modifier.isPublic(method.getModifiers());
+            }
+        }, this);
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        MethodMeters methodMeters = meters.get(method);
+        if (methodMeters == null) {
+            methodMeters = meters.computeIfAbsent(method, this::register);
+        }
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } catch (Throwable ex) {
+            methodMeters.error(ex);
+            throw ex;
+        } finally {
+            methodMeters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private MethodMeters register(Method method) {
+        return new MethodMeters(registry.getObject(), serviceClass.getSimpleName(), method.getName());
+    }
+
+    private static final class MethodMeters {
+        final MeterRegistry registry;
+        final String className;
+        final String methodName;
+        final Timer timer;
+        // errors are off the hot path; their counters are registered per exception type as they occur
+        final Map<Class<?>, Counter> errors = new ConcurrentHashMap<>();
+
+        MethodMeters(MeterRegistry registry, String className, String methodName) {
+            this.registry = registry;
+            this.className = className;
+            this.methodName = methodName;
+            this.timer = Timer.builder("shop.service")
+                    .description("Time spent in a service method")
+                    .tags("class", className, "method", methodName)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+
+        void error(Throwable ex) {
+            errors.computeIfAbsent(ex.getClass(), type -> Counter.builder("shop.service.errors")
+                    .description("Exceptions thrown by a service method")
+                    .tags("class", className, "method", methodName, "exception", type.getSimpleName())
+                    .register(registry)).increment();
+        }
+    }
+}
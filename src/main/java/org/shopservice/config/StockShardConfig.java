@@ -0,0 +1,24 @@
+package org.shopservice.config;
+
+import org.shopservice.repository.ShardedStockLoader;
+import org.springframework.aop.Advisor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+/**
+ * Completes the stock of sharded products read through the product repository, see
+ * {@link ShardedStockLoader}.
+ */
+@Configuration
+public class StockShardConfig {
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor shardedStockLoader(ObjectProvider<MongoTemplate> mongoTemplate) {
+        return new ShardedStockLoader(mongoTemplate).advisor();
+    }
+}
@@ -0,0 +1,16 @@
+package org.shopservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of sharded stock counters.
+ *
+ * @param rebalanceInterval time between two passes that even out the shards of every sharded product
+ */
+@ConfigurationProperties(prefix = "shop.stock-shards")
+public record StockShardProperties(
+        @DefaultValue("5s") Duration rebalanceInterval) {
+}
@@ -0,0 +1,84 @@
+package org.shopservice.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Responses for the list endpoints that must not materialize a whole collection:
+ * keyset pages and NDJSON streams.
+ */
+final class CollectionResponses {
+
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    private CollectionResponses() {
+    }
+
+    static int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive, was " + limit);
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    /**
+     * Builds a keyset page from {@code fetched}, which holds up to {@code limit + 1} items in id
+     * order: the extra item only signals that there is a next page, which is then announced in a
+     * {@code Link: <...?after=<last id>&limit=...>; rel="next"} header.
+     */
+    static <T> ResponseEntity<List<T>> keysetPage(List<T> fetched, int limit, Function<T, String> idOf) {
+        if (fetched.size() <= limit) {
+            return ResponseEntity.ok(fetched);
+        }
+        List<T> items = fetched.subList(0, limit);
+        String next = ServletUriComponentsBuilder.fromCurrentRequestUri()
+                .queryParam("after", "{after}")
+                .queryParam("limit", limit)
+                .encode()
+                .buildAndExpand(idOf.apply(items.get(limit - 1)))
+                .toUriString();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(items);
+    }
+
+    /**
+     * Writes one JSON document per line while the source stream is consumed, so memory use does
+     * not grow with the size of the collection. The stream is opened and closed on the
+     * response-writing thread.
+     */
+    static <T> ResponseEntity<StreamingResponseBody> ndjson(ObjectMapper objectMapper, Supplier<Stream<T>> source) {
+        ObjectWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            try (Stream<T> items = source.get();
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                         .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                for (Iterator<T> it = items.iterator(); it.hasNext(); ) {
+                    writer.writeValue(generator, it.next());
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+}
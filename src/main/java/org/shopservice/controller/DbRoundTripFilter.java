@@ -0,0 +1,38 @@
+package org.shopservice.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.shopservice.config.MongoRoundTrips;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * In debug mode, that is with this filter's logger at DEBUG, counts the Mongo commands each
+ * request sends and logs them once the request is done. Responses written by a controller
+ * also carry the count in the {@value DbRoundTripHeaderAdvice#HEADER} header. Off the debug
+ * level the filter does nothing.
+ */
+public class DbRoundTripFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DbRoundTripFilter.class);
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !logger.isDebugEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try (MongoRoundTrips.Recording recording = MongoRoundTrips.start()) {
+            chain.doFilter(request, response);
+            logger.debug("{} {} -> {}: {} database commands {}", request.getMethod(), request.getRequestURI(),
+                    response.getStatus(), recording.count(), recording.commands());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.shopservice.controller;
+
+import org.shopservice.config.MongoRoundTrips;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Adds the Mongo commands counted by {@link DbRoundTripFilter} so far to the response, just
+ * before its body is written and the headers go out.
+ */
+@ControllerAdvice
+public class DbRoundTripHeaderAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String HEADER = "X-Db-Round-Trips";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType contentType,
+                                  Class<? extends HttpMessageConverter<?>> converterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        MongoRoundTrips.Recording recording = MongoRoundTrips.current();
+        if (recording != null) {
+            response.getHeaders().set(HEADER, Integer.toString(recording.count()));
+        }
+        return body;
+    }
+}
@@ -1,17 +1,27 @@
 package org.shopservice.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.shopservice.model.InventoryImportResult;
+import org.shopservice.service.InventoryImporter;
 import org.shopservice.service.ShopService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 @RestController
 @RequestMapping("/inventory")
 @RequiredArgsConstructor
 public class InventoryController {
 
+    private static final String TEXT_CSV = "text/csv";
+
     private final ShopService shopService;
+    private final InventoryImporter inventoryImporter;
 
     @PostMapping("/in")
     public ResponseEntity<Void> goodsIn(@RequestParam String productId,
@@ -26,4 +36,14 @@ public class InventoryController {
         shopService.goodsOut(productId, amount);
         return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
     }
+
+    // POST /inventory/import — Apply a CSV or NDJSON file of signed stock deltas
+    @PostMapping(value = "/import", consumes = {TEXT_CSV, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<InventoryImportResult> importStock(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                             InputStream body) throws IOException {
+        InventoryImporter.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                ? InventoryImporter.Format.NDJSON
+                : InventoryImporter.Format.CSV;
+        return ResponseEntity.ok(inventoryImporter.importStock(body, format));
+    }
 }
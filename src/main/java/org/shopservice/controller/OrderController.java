@@ -1,14 +1,18 @@
 package org.shopservice.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.shopservice.exception.OrderNotFoundException;
 import org.shopservice.model.Order;
 import org.shopservice.model.OrderItem;
+import org.shopservice.model.OrderRequest;
+import org.shopservice.model.OrderResult;
 import org.shopservice.model.enums.OrderStatus;
 import org.shopservice.service.ShopService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -18,6 +22,7 @@ import java.util.List;
 public class OrderController {
 
     private final ShopService shopService;
+    private final ObjectMapper objectMapper;
 
     // POST /orders — Place a new order
     @PostMapping
@@ -28,6 +33,19 @@ public class OrderController {
         return new ResponseEntity<>(placed, HttpStatus.CREATED);
     }
 
+    // POST /orders/batch — Place many orders at once, with one result per order
+    @PostMapping("/batch")
+    public ResponseEntity<List<OrderResult>> placeOrders(@RequestBody List<OrderRequest> orders) {
+        return ResponseEntity.ok(shopService.placeOrders(orders));
+    }
+
+    // POST /orders/checkout/{cartId} — Turn a reserved cart into an order
+    @PostMapping("/checkout/{cartId}")
+    public ResponseEntity<Order> checkoutCart(@PathVariable String cartId) {
+        Order placed = shopService.checkoutCart(cartId);
+        return new ResponseEntity<>(placed, HttpStatus.CREATED);
+    }
+
     // GET /orders/{id} — Get order by ID
     @GetMapping("/{id}")
     public ResponseEntity<Order> getOrderById(@PathVariable String id) {
@@ -36,12 +54,25 @@ public class OrderController {
     }
 
     // GET /orders?status=... — Get orders by status or all
+    // GET /orders?after=...&limit=... — Get one page of all orders, ordered by id
     @GetMapping
-    public List<Order> getOrdersByStatus(@RequestParam(required = false) OrderStatus status) {
+    public ResponseEntity<List<Order>> getOrdersByStatus(@RequestParam(required = false) OrderStatus status,
+                                                         @RequestParam(required = false) String after,
+                                                         @RequestParam(required = false) Integer limit) {
         if (status != null) {
-            return shopService.getOrdersByStatus(status);
+            return ResponseEntity.ok(shopService.getOrdersByStatus(status));
+        }
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(shopService.getAllOrders());
         }
-        return shopService.getAllOrders();
+        int pageSize = CollectionResponses.pageSize(limit);
+        return CollectionResponses.keysetPage(shopService.getOrders(after, pageSize + 1), pageSize, Order::getId);
+    }
+
+    // GET /orders/stream?status=... — Stream orders as NDJSON
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamOrders(@RequestParam(required = false) OrderStatus status) {
+        return CollectionResponses.ndjson(objectMapper, () -> shopService.streamOrders(status));
     }
 
     // PUT /orders/{id}/status — Update order status
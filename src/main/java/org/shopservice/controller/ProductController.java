@@ -1,14 +1,29 @@
 package org.shopservice.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.shopservice.exception.ProductNotFoundException;
 import org.shopservice.model.Product;
 import org.shopservice.repository.ProductRepo;
+import org.shopservice.service.ProductCache;
+import org.shopservice.service.ProductCache.ProductCacheStats;
+import org.shopservice.service.ProductFacetIndex.Facet;
+import org.shopservice.service.ProductSuggestIndex;
+import org.shopservice.service.ShopService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/products")
@@ -16,21 +31,72 @@ import java.util.List;
 public class ProductController {
 
     private final ProductRepo productRepo;
+    private final ProductCache productCache;
+    private final ShopService shopService;
+    private final ProductSuggestIndex productSuggestIndex;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public ResponseEntity<Product> createProduct(@RequestBody Product product) {
         Product saved = productRepo.save(product);
+        productCache.put(saved);
         return new ResponseEntity<>(saved, HttpStatus.CREATED);
     }
 
+    // GET /products?color=...&size=...&brand=... — all products, or those matching the facets
+    // GET /products?after=...&limit=... — one page of all products, ordered by id
     @GetMapping
-    public List<Product> getAllProducts() {
-        return productRepo.findAll();
+    public ResponseEntity<List<Product>> getAllProducts(@RequestParam(required = false) List<String> color,
+                                                        @RequestParam(required = false) List<String> size,
+                                                        @RequestParam(required = false) List<String> brand,
+                                                        @RequestParam(required = false) String after,
+                                                        @RequestParam(required = false) Integer limit) {
+        if (color != null || size != null || brand != null) {
+            return ResponseEntity.ok(shopService.filterProducts(selection(color, size, brand)));
+        }
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(productRepo.findAll());
+        }
+        int pageSize = CollectionResponses.pageSize(limit);
+        Pageable page = PageRequest.of(0, pageSize + 1, Sort.by("id"));
+        List<Product> fetched = after == null
+                ? productRepo.findAllBy(page)
+                : productRepo.findByIdGreaterThan(after, page);
+        return CollectionResponses.keysetPage(fetched, pageSize, Product::getId);
+    }
+
+    // GET /products/stream — all products as NDJSON
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamProducts() {
+        return CollectionResponses.ndjson(objectMapper, productRepo::streamAllBy);
+    }
+
+    // GET /products/facets?color=... — product counts per color, size and brand
+    @GetMapping("/facets")
+    public Map<String, Map<String, Integer>> getFacetCounts(@RequestParam(required = false) List<String> color,
+                                                            @RequestParam(required = false) List<String> size,
+                                                            @RequestParam(required = false) List<String> brand) {
+        Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+        shopService.countFacets(selection(color, size, brand))
+                .forEach((facet, values) -> counts.put(facet.key(), values));
+        return counts;
+    }
+
+    @GetMapping("/search")
+    public Page<Product> searchProducts(@RequestParam("q") String query,
+                                        @PageableDefault(size = 20) Pageable pageable) {
+        return shopService.searchProducts(query, pageable);
+    }
+
+    @GetMapping("/suggest")
+    public List<String> suggest(@RequestParam String prefix,
+                                @RequestParam(defaultValue = "10") int limit) {
+        return productSuggestIndex.suggest(prefix, Math.min(limit, ProductSuggestIndex.MAX_SUGGESTIONS));
     }
 
     @GetMapping("/{id}")
     public Product getProductById(@PathVariable String id) {
-        return productRepo.findById(id)
+        return productCache.findById(id)
                 .orElseThrow(() -> new ProductNotFoundException(id));
     }
 
@@ -41,7 +107,29 @@ public class ProductController {
                 .orElseThrow(() -> new ProductNotFoundException(id));
 
         updatedProduct.setId(existing.getId());
-        return productRepo.save(updatedProduct);
+        // reservations are only changed by reserving, releasing and checking out carts
+        updatedProduct.setReserved(existing.getReserved());
+        updatedProduct.setStockShards(existing.getStockShards());
+        if (existing.getStockShards() > 0) {
+            // most of the stock lives in the shards; only the part on the document can be written here
+            if (updatedProduct.getStock() != existing.getStock()) {
+                throw new IllegalArgumentException(
+                        "Stock of product " + id + " is sharded; change it through goods-in and goods-out");
+            }
+            updatedProduct.setStock(existing.getStock() - existing.getShardedStock());
+            productRepo.save(updatedProduct);
+            productCache.evict(id);
+            return productCache.findById(id)
+                    .orElseThrow(() -> new ProductNotFoundException(id));
+        }
+        Product saved = productRepo.save(updatedProduct);
+        productCache.put(saved);
+        return saved;
+    }
+
+    @PutMapping("/{id}/stock-shards")
+    public Product configureStockShards(@PathVariable String id, @RequestParam int count) {
+        return shopService.configureStockShards(id, count);
     }
 
     @DeleteMapping("/{id}")
@@ -49,6 +137,23 @@ public class ProductController {
     public void deleteProduct(@PathVariable String id) {
         Product existing = productRepo.findById(id)
                 .orElseThrow(() -> new ProductNotFoundException(id));
+        if (existing.getStockShards() > 0) {
+            productRepo.configureStockShards(id, 0);
+        }
         productRepo.delete(existing);
+        productCache.evict(id);
+    }
+
+    @GetMapping("/cache/stats")
+    public ProductCacheStats getCacheStats() {
+        return productCache.stats();
+    }
+
+    private static Map<Facet, List<String>> selection(List<String> color, List<String> size, List<String> brand) {
+        Map<Facet, List<String>> selection = new EnumMap<>(Facet.class);
+        selection.put(Facet.COLOR, color == null ? List.of() : color);
+        selection.put(Facet.SIZE, size == null ? List.of() : size);
+        selection.put(Facet.BRAND, brand == null ? List.of() : brand);
+        return selection;
     }
 }
@@ -0,0 +1,54 @@
+package org.shopservice.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.shopservice.model.Order;
+import org.shopservice.model.OrderItem;
+import org.shopservice.model.enums.OrderStatus;
+import org.shopservice.service.ReactiveShopService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking variants of the {@link OrderController} endpoints. The request thread is
+ * released while Mongo works, and streams are written as fast as the client reads them.
+ */
+@RestController
+@RequestMapping("/reactive/orders")
+@RequiredArgsConstructor
+public class ReactiveOrderController {
+
+    private final ReactiveShopService shopService;
+
+    // POST /reactive/orders — Place a new order
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Order> placeOrder(@RequestParam String id,
+                                  @RequestBody List<OrderItem> items,
+                                  @RequestParam OrderStatus status) {
+        return shopService.placeOrder(id, items, status);
+    }
+
+    // POST /reactive/orders/checkout/{cartId} — Turn a reserved cart into an order
+    @PostMapping("/checkout/{cartId}")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Order> checkoutCart(@PathVariable String cartId) {
+        return shopService.checkoutCart(cartId);
+    }
+
+    // GET /reactive/orders/{id} — Get order by ID
+    @GetMapping("/{id}")
+    public Mono<Order> getOrderById(@PathVariable String id) {
+        return shopService.getOrderById(id);
+    }
+
+    // GET /reactive/orders/stream?status=... — Stream orders as NDJSON
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Order> streamOrders(@RequestParam(required = false) OrderStatus status) {
+        return shopService.streamOrders(status);
+    }
+}
@@ -0,0 +1,32 @@
+package org.shopservice.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.shopservice.model.Product;
+import org.shopservice.service.ReactiveShopService;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking variants of the {@link ProductController} reads.
+ */
+@RestController
+@RequestMapping("/reactive/products")
+@RequiredArgsConstructor
+public class ReactiveProductController {
+
+    private final ReactiveShopService shopService;
+
+    // GET /reactive/products/{id} — Get product by ID
+    @GetMapping("/{id}")
+    public Mono<Product> getProductById(@PathVariable String id) {
+        return shopService.getProductById(id);
+    }
+
+    // GET /reactive/products/stream — all products as NDJSON
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Product> streamProducts() {
+        return shopService.streamProducts();
+    }
+}
@@ -0,0 +1,7 @@
+package org.shopservice.exception;
+
+public class CartNotFoundException extends RuntimeException {
+    public CartNotFoundException(String id) {
+        super("Cart not found: " + id);
+    }
+}
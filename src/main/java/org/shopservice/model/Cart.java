@@ -3,6 +3,7 @@ package org.shopservice.model;
 import lombok.Value;
 import lombok.With;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.Instant;
 import java.util.List;
@@ -15,4 +16,7 @@ public class Cart {
     String id;
     List<CartItem> items;
     Instant createdAt;
+    // when the reservation lapses and the stock is released again
+    @Indexed
+    Instant expiresAt;
 }
@@ -0,0 +1,30 @@
+package org.shopservice.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Summary of a stock import. {@code rejections} lists at most the first
+ * {@link org.shopservice.service.InventoryImporter#MAX_REPORTED_REJECTIONS} problems;
+ * {@code linesRejected} counts all of them.
+ */
+@Value
+public class InventoryImportResult {
+    long linesRead;
+    long linesApplied;
+    long linesRejected;
+    int productsUpdated;
+    List<Rejection> rejections;
+
+    /**
+     * A rejected line, or all lines of a product that could not be applied; {@code line} is
+     * then the first of them.
+     */
+    @Value
+    public static class Rejection {
+        long line;
+        String productId;
+        String reason;
+    }
+}
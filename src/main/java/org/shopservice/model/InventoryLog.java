@@ -2,6 +2,7 @@ package org.shopservice.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.Instant;
 
@@ -13,9 +14,11 @@ import java.time.Instant;
 public class InventoryLog {
     @Id
     private String id;
+    @Indexed
     private Instant timestamp;
     private int delta;
     private String sourceType;
+    @Indexed
     private String sourceId;
 
     public InventoryLog(int delta, String sourceType, String sourceId) {
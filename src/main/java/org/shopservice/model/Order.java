@@ -4,6 +4,7 @@ import lombok.Value;
 import lombok.With;
 import org.shopservice.model.enums.OrderStatus;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -23,6 +24,7 @@ public class Order {
     List<OrderItem> items;
 
     @Field("status")
+    @Indexed
     OrderStatus status;
 
     @Field("timestamp")
@@ -30,10 +32,7 @@ public class Order {
 
     public BigDecimal totalPrice() {
         return items.stream()
-                .map(item ->
-                        item.getProduct().getPrice()
-                                .multiply(BigDecimal.valueOf(item.getQuantity()))
-                )
+                .map(OrderItem::lineTotal)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
@@ -1,15 +1,50 @@
 package org.shopservice.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Value;
 import lombok.With;
 import org.springframework.data.mongodb.core.mapping.Field;
 
+import java.math.BigDecimal;
+
+/**
+ * One line of an order: a snapshot of the product's id, name and price at the time the
+ * order was placed, and the ordered quantity.
+ */
 @Value
 @With
 public class OrderItem {
-    @Field("product")
-    Product product;
+    @Field("productId")
+    String productId;
+
+    @Field("name")
+    String name;
+
+    @Field("unitPrice")
+    BigDecimal unitPrice;
 
     @Field("quantity")
     int quantity;
-}
\ No newline at end of file
+
+    public static OrderItem of(Product product, int quantity) {
+        return new OrderItem(product.getId(), product.getName(), product.getPrice(), quantity);
+    }
+
+    public BigDecimal lineTotal() {
+        return unitPrice.multiply(BigDecimal.valueOf(quantity));
+    }
+
+    // still accepts request bodies that send the whole product instead of its id
+    @JsonCreator
+    static OrderItem fromJson(@JsonProperty("productId") String productId,
+                              @JsonProperty("name") String name,
+                              @JsonProperty("unitPrice") BigDecimal unitPrice,
+                              @JsonProperty("quantity") int quantity,
+                              @JsonProperty("product") Product product) {
+        if (productId == null && product != null) {
+            return of(product, quantity);
+        }
+        return new OrderItem(productId, name, unitPrice, quantity);
+    }
+}
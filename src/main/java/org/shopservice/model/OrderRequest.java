@@ -0,0 +1,16 @@
+package org.shopservice.model;
+
+import lombok.Value;
+import org.shopservice.model.enums.OrderStatus;
+
+import java.util.List;
+
+/**
+ * One order of a batch submitted to {@code POST /orders/batch}.
+ */
+@Value
+public class OrderRequest {
+    String id;
+    OrderStatus status;
+    List<OrderItem> items;
+}
@@ -0,0 +1,21 @@
+package org.shopservice.model;
+
+import lombok.Value;
+
+/**
+ * Outcome of one order of a batch: either placed, or rejected with the reason.
+ */
+@Value
+public class OrderResult {
+    String orderId;
+    boolean placed;
+    String error;
+
+    public static OrderResult placed(String orderId) {
+        return new OrderResult(orderId, true, null);
+    }
+
+    public static OrderResult rejected(String orderId, String error) {
+        return new OrderResult(orderId, false, error);
+    }
+}
@@ -1,14 +1,18 @@
 package org.shopservice.model;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.PersistenceCreator;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.math.BigDecimal;
 
 @Document(collection = "products")
 @Data
-@AllArgsConstructor
 public class Product {
     @Id
     private String id; // Now mutable
@@ -18,5 +22,42 @@ public class Product {
     private String color;
     private String size;
     private BigDecimal price;
+    // units on hand, including the reserved ones
     private int stock;
+    // units held for carts that have not been checked out yet
+    private int reserved;
+    // number of StockShard counters the available units are spread over; 0 keeps them all here.
+    // Nearly every product has 0, so only the sharded ones are indexed
+    @Indexed(partialFilter = "{ 'stockShards': { $gt: 0 } }")
+    private int stockShards;
+    // part of stock read from the shards; only the rest is stored on this document
+    @Transient
+    @JsonIgnore
+    private int shardedStock;
+
+    @PersistenceCreator
+    @JsonCreator
+    public Product(String id, String name, String brand, String description, String color, String size,
+                   BigDecimal price, int stock, int reserved, int stockShards) {
+        this.id = id;
+        this.name = name;
+        this.brand = brand;
+        this.description = description;
+        this.color = color;
+        this.size = size;
+        this.price = price;
+        this.stock = stock;
+        this.reserved = reserved;
+        this.stockShards = stockShards;
+    }
+
+    public Product(String id, String name, String brand, String description,
+                   String color, String size, BigDecimal price, int stock) {
+        this(id, name, brand, description, color, size, price, stock, 0, 0);
+    }
+
+    @JsonProperty(value = "available", access = JsonProperty.Access.READ_ONLY)
+    public int availableStock() {
+        return stock - reserved;
+    }
 }
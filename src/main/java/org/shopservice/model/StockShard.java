@@ -0,0 +1,22 @@
+package org.shopservice.model;
+
+import lombok.Value;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * One of the sub-counters holding the available units of a product with sharded stock.
+ */
+@Document(collection = "stock_shards")
+@Value
+public class StockShard {
+    @Id
+    String id;
+    String productId;
+    int shard;
+    int stock;
+
+    public static String id(String productId, int shard) {
+        return productId + "#" + shard;
+    }
+}
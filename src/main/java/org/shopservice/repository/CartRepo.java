@@ -2,8 +2,15 @@ package org.shopservice.repository;
 
 import org.shopservice.model.Cart;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.stream.Stream;
+
 @Repository
-public interface CartRepo extends MongoRepository<Cart, String> {
-}
\ No newline at end of file
+public interface CartRepo extends MongoRepository<Cart, String>, CartRepoCustom {
+
+    // only the ids and timestamps are loaded; backed by a cursor, the caller must close the stream
+    @Query(value = "{}", fields = "{ '_id': 1, 'createdAt': 1, 'expiresAt': 1 }")
+    Stream<Cart> streamExpiriesBy();
+}
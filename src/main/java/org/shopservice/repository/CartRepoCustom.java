@@ -0,0 +1,36 @@
+package org.shopservice.repository;
+
+import org.shopservice.model.Cart;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Cart expiry operations. Removals claim each cart atomically, so that its reserved stock
+ * is released by exactly one caller even when several instances expire carts.
+ */
+public interface CartRepoCustom {
+
+    /**
+     * Removes a cart, whether or not it has expired.
+     *
+     * @return the removed cart, or {@code null} if it did not exist
+     */
+    Cart remove(String cartId);
+
+    /**
+     * Removes the given carts whose expiry is not after {@code now}.
+     *
+     * @return the carts that were removed by this call
+     */
+    List<Cart> removeExpired(Collection<String> cartIds, Instant now);
+
+    /**
+     * Sets the expiry of carts saved without one to their creation time plus {@code ttl}.
+     *
+     * @return the number of carts updated
+     */
+    long backfillExpiry(Duration ttl);
+}
@@ -0,0 +1,50 @@
+package org.shopservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.shopservice.model.Cart;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class CartRepoCustomImpl implements CartRepoCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Cart remove(String cartId) {
+        return mongoTemplate.findAndRemove(Query.query(Criteria.where("_id").is(cartId)), Cart.class);
+    }
+
+    @Override
+    public List<Cart> removeExpired(Collection<String> cartIds, Instant now) {
+        // a multi-document remove does not say which documents it removed, so every cart is
+        // claimed with its own findAndRemove; the expiry guard skips carts that were extended
+        List<Cart> removed = new ArrayList<>(cartIds.size());
+        for (String cartId : cartIds) {
+            Query query = Query.query(Criteria.where("_id").is(cartId)
+                    .and("expiresAt").lte(now));
+            Cart cart = mongoTemplate.findAndRemove(query, Cart.class);
+            if (cart != null) {
+                removed.add(cart);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public long backfillExpiry(Duration ttl) {
+        Query query = Query.query(Criteria.where("expiresAt").exists(false));
+        AggregationUpdate update = AggregationUpdate.update()
+                .set("expiresAt").toValue(ArithmeticOperators.valueOf("createdAt").add(ttl.toMillis()));
+        return mongoTemplate.updateMulti(query, update, Cart.class).getModifiedCount();
+    }
+}
@@ -2,12 +2,28 @@ package org.shopservice.repository;
 
 import org.shopservice.model.Order;
 import org.shopservice.model.enums.OrderStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface OrderRepo extends MongoRepository<Order, String> {
+public interface OrderRepo extends MongoRepository<Order, String>, OrderRepoCustom {
     List<Order> findByStatus(OrderStatus status);
+
+    // only the ids are loaded
+    @Query(value = "{ '_id': { $in: ?0 } }", fields = "{ '_id': 1 }")
+    List<Order> findIdsByIdIn(Collection<String> ids);
+
+    // keyset pagination: pass a Pageable sorted by id and limited to the page size
+    List<Order> findAllBy(Pageable pageable);
+    List<Order> findByIdGreaterThan(String id, Pageable pageable);
+
+    // backed by a cursor; the caller must close the stream
+    Stream<Order> streamAllBy();
+    Stream<Order> streamByStatus(OrderStatus status);
 }
@@ -0,0 +1,37 @@
+package org.shopservice.repository;
+
+import org.shopservice.model.Order;
+import org.shopservice.model.enums.OrderStatus;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Order changes that run as a single targeted update returning the updated document,
+ * instead of a findById → with... → save round-trip that rewrites the whole order.
+ */
+public interface OrderRepoCustom {
+
+    /**
+     * Sets the status of an order.
+     *
+     * @return the order after the update, or {@code null} if it does not exist
+     */
+    Order updateStatus(String orderId, OrderStatus status);
+
+    /**
+     * Sets the quantity of the line for {@code productId} in an order.
+     *
+     * @return the order after the update, or {@code null} if the order does not exist
+     * or has no line for the product
+     */
+    Order updateItemQuantity(String orderId, String productId, int quantity);
+
+    /**
+     * Inserts new orders in a single unordered bulk write. An order whose id is already taken,
+     * e.g. by a concurrent insert, is skipped without failing the others.
+     *
+     * @return ids of the orders that were <em>not</em> inserted because the id exists
+     */
+    Set<String> insertUnlessExists(List<Order> orders);
+}
@@ -0,0 +1,59 @@
+package org.shopservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.shopservice.model.Order;
+import org.shopservice.model.enums.OrderStatus;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@RequiredArgsConstructor
+public class OrderRepoCustomImpl implements OrderRepoCustom {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Order updateStatus(String orderId, OrderStatus status) {
+        Query query = Query.query(Criteria.where("_id").is(orderId));
+        return mongoTemplate.findAndModify(query, new Update().set("status", status), RETURN_NEW, Order.class);
+    }
+
+    @Override
+    public Order updateItemQuantity(String orderId, String productId, int quantity) {
+        // the positional $ addresses the first line matched by the items.productId condition
+        Query query = Query.query(Criteria.where("_id").is(orderId)
+                .and("items.productId").is(productId));
+        return mongoTemplate.findAndModify(query, new Update().set("items.$.quantity", quantity), RETURN_NEW, Order.class);
+    }
+
+    @Override
+    public Set<String> insertUnlessExists(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> existing = new HashSet<>();
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.class).insert(orders).execute();
+        } catch (BulkOperationException ex) {
+            ex.getErrors().forEach(error -> {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw ex;
+                }
+                existing.add(orders.get(error.getIndex()).getId());
+            });
+        }
+        return existing;
+    }
+}
@@ -1,18 +1,26 @@
 package org.shopservice.repository;
 
 import org.shopservice.model.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.*;
+import java.util.stream.Stream;
 
 @Repository
-public interface ProductRepo extends MongoRepository<Product, String> {
+public interface ProductRepo extends MongoRepository<Product, String>, ProductRepoCustom {
     Optional<Product> getProductById(String id);
-    List<Product> findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase
-            (String nameKw,
-             String descKw,
-             String brandKw,
-             String colorKw,
-             String sizeKw);
+
+    // only the ids are loaded
+    @Query(value = "{ '_id': { $in: ?0 } }", fields = "{ '_id': 1 }")
+    List<Product> findIdsByIdIn(Collection<String> ids);
+
+    // keyset pagination: pass a Pageable sorted by id and limited to the page size
+    List<Product> findAllBy(Pageable pageable);
+    List<Product> findByIdGreaterThan(String id, Pageable pageable);
+
+    // backed by a cursor; the caller must close the stream
+    Stream<Product> streamAllBy();
 }
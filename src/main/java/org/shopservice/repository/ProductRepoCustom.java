@@ -0,0 +1,111 @@
+package org.shopservice.repository;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stock mutations that run as a single server-side update instead of
+ * a findById → setStock → save round-trip.
+ * <p>
+ * {@code stock} counts the units on hand and {@code reserved} the units held for carts;
+ * only {@code stock - reserved} units are available for new orders and reservations.
+ * Products with {@code stockShards > 0} keep most of their available units in
+ * {@link org.shopservice.model.StockShard} counters instead; the methods below take and put
+ * units there transparently.
+ */
+public interface ProductRepoCustom {
+
+    /**
+     * Decrements the stock of a product by {@code quantity}, but only if at least
+     * {@code quantity} units are available.
+     *
+     * @return {@code true} if the decrement was applied, {@code false} if the product
+     * does not exist or has insufficient stock
+     */
+    boolean decrementStockIfAvailable(String productId, int quantity);
+
+    /**
+     * Returns {@code quantity} reserved units to the available stock, but only if at least
+     * that many units are reserved.
+     *
+     * @return {@code true} if the release was applied
+     */
+    boolean releaseReserved(String productId, int quantity);
+
+    /**
+     * Increments the stock of a product by {@code quantity}.
+     *
+     * @return {@code true} if the product exists and was updated
+     */
+    boolean incrementStock(String productId, int quantity);
+
+    /**
+     * Applies one guarded decrement per product in a single bulk write.
+     * Decrements whose guard holds are applied even if others fail.
+     *
+     * @param quantities units to remove, keyed by product id
+     * @return ids of the products whose decrement was <em>not</em> applied
+     */
+    Set<String> decrementStockBulk(Map<String, Integer> quantities);
+
+    /**
+     * Applies one increment per product in a single bulk write.
+     *
+     * @param quantities units to add, keyed by product id
+     */
+    void incrementStockBulk(Map<String, Integer> quantities);
+
+    /**
+     * Reserves available units, one guarded update per product in a single bulk write.
+     *
+     * @param quantities units to reserve, keyed by product id
+     * @return ids of the products whose reservation was <em>not</em> applied
+     */
+    Set<String> reserveStockBulk(Map<String, Integer> quantities);
+
+    /**
+     * Returns reserved units to the available stock, one guarded update per product in a
+     * single bulk write.
+     *
+     * @param quantities reserved units to release, keyed by product id
+     * @return ids of the products with fewer units reserved, which were left unchanged
+     */
+    Set<String> releaseReservedBulk(Map<String, Integer> quantities);
+
+    /**
+     * Turns reserved units into sold ones, taking them off both the on-hand and the reserved
+     * count, one guarded update per product in a single bulk write.
+     *
+     * @param quantities reserved units sold, keyed by product id
+     * @return ids of the products with fewer units reserved, which were left unchanged
+     */
+    Set<String> commitReservedBulk(Map<String, Integer> quantities);
+
+    /**
+     * Undoes {@link #commitReservedBulk}: puts sold units back on both the on-hand and the
+     * reserved count, one update per product in a single bulk write.
+     *
+     * @param quantities units to hold again, keyed by product id
+     */
+    void restoreReservedBulk(Map<String, Integer> quantities);
+
+    /**
+     * Spreads the available stock of a product over {@code shards} sub-counters, or with
+     * {@code 0} moves it all back onto the product document.
+     *
+     * @return {@code false} if the product does not exist
+     */
+    boolean configureStockShards(String productId, int shards);
+
+    /**
+     * Whether the product is known to keep its available stock in shards. Answered from memory
+     * and refreshed on every rebalance, so a product sharded moments ago may not be known yet.
+     */
+    boolean hasShardedStock(String productId);
+
+    /**
+     * Evens out the shards of every sharded product and hands the units kept on the product
+     * documents to their shards.
+     */
+    void rebalanceStockShards();
+}
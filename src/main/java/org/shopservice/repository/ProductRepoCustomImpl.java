@@ -0,0 +1,324 @@
+package org.shopservice.repository;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.shopservice.model.Product;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.SetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+public class ProductRepoCustomImpl implements ProductRepoCustom {
+
+    // raised on purpose by a guarded update whose guard fails, see guardedBulk
+    private static final int CONVERSION_FAILURE = 241;
+
+    private final MongoTemplate mongoTemplate;
+    private final StockShardCounters shardCounters;
+    // products known to keep their available stock in shards, with their number of shards;
+    // learnt when a take on the product document fails, refreshed on every rebalance
+    private final Map<String, Integer> shardedProducts = new ConcurrentHashMap<>();
+
+    public ProductRepoCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+        this.shardCounters = new StockShardCounters(mongoTemplate);
+    }
+
+    @Override
+    public boolean decrementStockIfAvailable(String productId, int quantity) {
+        Integer shards = shardedProducts.get(productId);
+        if (shards == null) {
+            // the guard and the $inc are evaluated atomically on the server
+            if (updateOne(productId, available(quantity), new Update().inc("stock", -quantity))) {
+                return true;
+            }
+            shards = findSharded(List.of(productId)).get(productId);
+            if (shards == null) {
+                return false;
+            }
+        }
+        return shardCounters.take(productId, shards, quantity);
+    }
+
+    @Override
+    public boolean incrementStock(String productId, int quantity) {
+        Integer shards = shardedProducts.get(productId);
+        if (shards != null) {
+            return shardCounters.put(productId, shards, quantity);
+        }
+        Query query = Query.query(Criteria.where("_id").is(productId));
+        UpdateResult result = mongoTemplate.updateFirst(query, new Update().inc("stock", quantity), Product.class);
+        return result.getMatchedCount() == 1;
+    }
+
+    @Override
+    public boolean releaseReserved(String productId, int quantity) {
+        return updateOne(productId, reservedAtLeast(quantity), new Update().inc("reserved", -quantity));
+    }
+
+    @Override
+    public Set<String> decrementStockBulk(Map<String, Integer> quantities) {
+        return takeStockBulk(quantities, -1, 0, null);
+    }
+
+    @Override
+    public void incrementStockBulk(Map<String, Integer> quantities) {
+        Map<String, Integer> unsharded = new LinkedHashMap<>();
+        quantities.forEach((id, quantity) -> {
+            Integer shards = shardedProducts.get(id);
+            if (shards != null) {
+                shardCounters.put(id, shards, quantity);
+            } else {
+                unsharded.put(id, quantity);
+            }
+        });
+        if (unsharded.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        unsharded.forEach((id, quantity) ->
+                bulk.updateOne(Query.query(Criteria.where("_id").is(id)), new Update().inc("stock", quantity)));
+        bulk.execute();
+    }
+
+    @Override
+    public Set<String> reserveStockBulk(Map<String, Integer> quantities) {
+        // units taken from the shards move onto the product document as reserved ones
+        return takeStockBulk(quantities, 0, 1,
+                quantity -> new Update().inc("stock", quantity).inc("reserved", quantity));
+    }
+
+    @Override
+    public Set<String> releaseReservedBulk(Map<String, Integer> quantities) {
+        return guardedBulk(quantities, ProductRepoCustomImpl::hasReserved, 0, -1);
+    }
+
+    @Override
+    public Set<String> commitReservedBulk(Map<String, Integer> quantities) {
+        return guardedBulk(quantities, ProductRepoCustomImpl::hasReserved, -1, -1);
+    }
+
+    @Override
+    public void restoreReservedBulk(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        // reserved units are always kept on the product document, sharded or not
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        quantities.forEach((id, quantity) -> bulk.updateOne(Query.query(Criteria.where("_id").is(id)),
+                new Update().inc("stock", quantity).inc("reserved", quantity)));
+        bulk.execute();
+    }
+
+    @Override
+    public boolean hasShardedStock(String productId) {
+        return shardedProducts.containsKey(productId);
+    }
+
+    @Override
+    public boolean configureStockShards(String productId, int shards) {
+        Document previous = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(productId)),
+                new Update().set("stockShards", shards), FindAndModifyOptions.options().returnNew(false),
+                Document.class, mongoTemplate.getCollectionName(Product.class));
+        if (previous == null) {
+            return false;
+        }
+        int before = previous.getInteger("stockShards", 0);
+        if (shards > 0) {
+            shardedProducts.put(productId, shards);
+        } else {
+            shardedProducts.remove(productId);
+        }
+        shardCounters.drain(productId, shards, before);
+        if (shards > 0) {
+            shardCounters.rebalance(productId, shards);
+        }
+        return true;
+    }
+
+    @Override
+    public void rebalanceStockShards() {
+        Query query = Query.query(Criteria.where("stockShards").gt(0));
+        query.fields().include("stockShards");
+        Map<String, Integer> sharded = new HashMap<>();
+        mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(Product.class))
+                .forEach(product -> sharded.put(product.getString("_id"), product.getInteger("stockShards")));
+        // also forgets products whose shards were removed by another instance
+        shardedProducts.keySet().retainAll(sharded.keySet());
+        shardedProducts.putAll(sharded);
+        sharded.forEach(shardCounters::rebalance);
+    }
+
+    /**
+     * Takes available units of several products. Products not known to be sharded are tried on
+     * their own document first, in one guarded bulk write; the ones that fail there and turn out
+     * to be sharded, and the ones known to be, are taken from their shards.
+     *
+     * @param stockSign    direction {@code stock} moves by the quantity on a product document that
+     *                     has the units itself
+     * @param reservedSign direction {@code reserved} moves by the quantity on such a document
+     * @param afterSharded the update applied to the product document after its units were taken
+     *                     from the shards, or {@code null} for none
+     * @return ids of the products whose units were <em>not</em> taken
+     */
+    private Set<String> takeStockBulk(Map<String, Integer> quantities,
+                                      int stockSign,
+                                      int reservedSign,
+                                      IntFunction<Update> afterSharded) {
+        Map<String, Integer> unsharded = new LinkedHashMap<>();
+        Map<String, Integer> sharded = new LinkedHashMap<>();
+        quantities.forEach((id, quantity) -> {
+            Integer shards = shardedProducts.get(id);
+            if (shards != null) {
+                sharded.put(id, shards);
+            } else {
+                unsharded.put(id, quantity);
+            }
+        });
+        Set<String> rejected = new HashSet<>(guardedBulk(unsharded, ProductRepoCustomImpl::hasAvailable,
+                stockSign, reservedSign));
+        if (!rejected.isEmpty()) {
+            Map<String, Integer> found = findSharded(rejected);
+            rejected.removeAll(found.keySet());
+            sharded.putAll(found);
+        }
+
+        sharded.forEach((id, shards) -> {
+            int quantity = quantities.get(id);
+            if (!shardCounters.take(id, shards, quantity)) {
+                rejected.add(id);
+            } else if (afterSharded != null) {
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(id)),
+                        afterSharded.apply(quantity), Product.class);
+            }
+        });
+        return rejected;
+    }
+
+    // looks up which of the products are sharded and remembers them
+    private Map<String, Integer> findSharded(Collection<String> productIds) {
+        Query query = Query.query(Criteria.where("_id").in(productIds).and("stockShards").gt(0));
+        query.fields().include("stockShards");
+        Map<String, Integer> sharded = new HashMap<>();
+        mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(Product.class))
+                .forEach(product -> sharded.put(product.getString("_id"), product.getInteger("stockShards")));
+        shardedProducts.putAll(sharded);
+        return sharded;
+    }
+
+    private boolean updateOne(String productId, Criteria guard, Update update) {
+        Query query = Query.query(Criteria.where("_id").is(productId).andOperator(guard));
+        UpdateResult result = mongoTemplate.updateFirst(query, update, Product.class);
+        return result.getMatchedCount() == 1;
+    }
+
+    /**
+     * Moves {@code stock} and {@code reserved} of several products by {@code sign * quantity},
+     * each only if its guard holds, in one bulk write.
+     * <p>
+     * A bulk result only reports totals. To learn which lines were not applied, each line is an
+     * update pipeline matched by {@code _id} alone that evaluates its guard itself: when the guard
+     * fails it converts a non-numeric string to a number, which fails that line alone with an
+     * error carrying its index. Lines that matched nothing are products that do not exist.
+     *
+     * @return ids of the products left unchanged
+     */
+    private Set<String> guardedBulk(Map<String, Integer> quantities,
+                                    IntFunction<AggregationExpression> guard,
+                                    int stockSign,
+                                    int reservedSign) {
+        if (quantities.isEmpty()) {
+            return Set.of();
+        }
+        List<String> ids = new ArrayList<>(quantities.keySet());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (String id : ids) {
+            int quantity = quantities.get(id);
+            // one $set stage, so both fields are computed from the document as it was
+            SetOperation set = stockSign != 0
+                    ? new SetOperation("stock", guarded(guard.apply(quantity), "stock", stockSign * quantity))
+                    : null;
+            if (reservedSign != 0) {
+                AggregationExpression reserved = guarded(guard.apply(quantity), "reserved", reservedSign * quantity);
+                set = set != null ? set.set("reserved", reserved) : new SetOperation("reserved", reserved);
+            }
+            bulk.updateOne(Query.query(Criteria.where("_id").is(id)), AggregationUpdate.update().set(set));
+        }
+
+        Set<String> rejected = new HashSet<>();
+        BulkWriteResult result;
+        try {
+            result = bulk.execute();
+        } catch (BulkOperationException ex) {
+            ex.getErrors().forEach(error -> {
+                if (error.getCode() != CONVERSION_FAILURE) {
+                    throw ex;
+                }
+                rejected.add(ids.get(error.getIndex()));
+            });
+            result = ex.getResult();
+        }
+
+        if (result.getMatchedCount() + rejected.size() < ids.size()) {
+            List<String> unknown = ids.stream().filter(id -> !rejected.contains(id)).toList();
+            Set<String> missing = new HashSet<>(unknown);
+            Query query = Query.query(Criteria.where("_id").in(unknown));
+            query.fields().include("_id");
+            mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(Product.class))
+                    .forEach(product -> missing.remove(product.getString("_id")));
+            rejected.addAll(missing);
+        }
+        return rejected;
+    }
+
+    // field + delta if the guard holds, otherwise an error; $cond only evaluates the branch it takes
+    private static AggregationExpression guarded(AggregationExpression guard, String field, int delta) {
+        return ConditionalOperators.when(guard)
+                .then(ArithmeticOperators.valueOf(ConditionalOperators.ifNull(field).then(0)).add(delta))
+                .otherwiseValueOf(context -> new Document("$toInt",
+                        // refers to _id so the server cannot fold it into a constant and fail up front
+                        new Document("$concat", List.of("guard failed for product ", "$_id"))));
+    }
+
+    // stock - reserved >= quantity; products saved before reservations were counted have no reserved field
+    static Criteria available(int quantity) {
+        return Criteria.expr(hasAvailable(quantity));
+    }
+
+    static AggregationExpression hasAvailable(int quantity) {
+        return ComparisonOperators.valueOf(
+                        ArithmeticOperators.valueOf("stock")
+                                .subtract(ConditionalOperators.ifNull("reserved").then(0)))
+                .greaterThanEqualToValue(quantity);
+    }
+
+    static AggregationExpression hasReserved(int quantity) {
+        return ComparisonOperators.valueOf(ConditionalOperators.ifNull("reserved").then(0))
+                .greaterThanEqualToValue(quantity);
+    }
+
+    static Criteria reservedAtLeast(int quantity) {
+        return Criteria.where("reserved").gte(quantity);
+    }
+}
@@ -0,0 +1,18 @@
+package org.shopservice.repository;
+
+import org.shopservice.model.Order;
+import org.shopservice.model.enums.OrderStatus;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Non-blocking counterpart of {@link OrderRepo}.
+ */
+@Repository
+public interface ReactiveOrderRepo extends ReactiveMongoRepository<Order, String> {
+
+    // backed by a cursor that fetches as the subscriber requests
+    Flux<Order> findAllBy();
+    Flux<Order> findByStatus(OrderStatus status);
+}
@@ -0,0 +1,17 @@
+package org.shopservice.repository;
+
+import org.shopservice.model.Product;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Non-blocking counterpart of the reads of {@link ProductRepo}. Stock is only written through
+ * {@link ProductRepo}, which knows about sharded stock.
+ */
+@Repository
+public interface ReactiveProductRepo extends ReactiveMongoRepository<Product, String> {
+
+    // backed by a cursor that fetches as the subscriber requests
+    Flux<Product> findAllBy();
+}
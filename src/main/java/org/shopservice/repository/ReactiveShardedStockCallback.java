@@ -0,0 +1,41 @@
+package org.shopservice.repository;
+
+import org.bson.Document;
+import org.reactivestreams.Publisher;
+import org.shopservice.model.Product;
+import org.shopservice.model.StockShard;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveAfterConvertCallback;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link ShardedStockLoader} for products read through the reactive driver, one product at a time.
+ */
+@Component
+public class ReactiveShardedStockCallback implements ReactiveAfterConvertCallback<Product> {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    // lazy: the template looks up its entity callbacks, this one included, when it is created
+    public ReactiveShardedStockCallback(@Lazy ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Publisher<Product> onAfterConvert(Product product, Document document, String collection) {
+        if (product.getStockShards() <= 0) {
+            return Mono.just(product);
+        }
+        return mongoTemplate.find(StockShardCounters.shardsOf(product.getId(), product.getStockShards()),
+                        StockShard.class)
+                .map(StockShard::getStock)
+                .reduce(0, Integer::sum)
+                .map(sharded -> {
+                    product.setShardedStock(sharded);
+                    product.setStock(product.getStock() + sharded);
+                    return product;
+                });
+    }
+}
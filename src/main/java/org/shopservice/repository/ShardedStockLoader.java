@@ -0,0 +1,101 @@
+package org.shopservice.repository;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.shopservice.model.Product;
+import org.shopservice.model.StockShard;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Adds the units held in the shards of sharded products to the stock they are read with, so
+ * every reader sees the on-hand stock. The sum is read after the product and is not a
+ * consistent snapshot while units move between counters; stock writes never rely on it.
+ * <p>
+ * Wraps the {@link ProductRepo} methods rather than the conversion of each document, so the
+ * shards of every sharded product a call returns, a whole page included, are read in one query.
+ * Streamed products are completed one by one as they are consumed.
+ */
+public class ShardedStockLoader implements MethodInterceptor {
+
+    private final ObjectProvider<MongoTemplate> mongoTemplate;
+
+    // the template is looked up on first use: advisors are created before it exists
+    public ShardedStockLoader(ObjectProvider<MongoTemplate> mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public Advisor advisor() {
+        return new DefaultPointcutAdvisor(new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                // the stock writes of the custom fragment never return products
+                return ProductRepo.class.isAssignableFrom(targetClass)
+                        && method.getDeclaringClass() != ProductRepoCustom.class
+                        && method.getReturnType() != void.class;
+            }
+        }, this);
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        if (result instanceof Product product) {
+            load(List.of(product));
+        } else if (result instanceof Optional<?> optional && optional.orElse(null) instanceof Product product) {
+            load(List.of(product));
+        } else if (result instanceof Iterable<?> iterable) {
+            List<Product> products = new ArrayList<>();
+            iterable.forEach(element -> {
+                if (element instanceof Product product) {
+                    products.add(product);
+                }
+            });
+            load(products);
+        } else if (result instanceof Stream<?> stream) {
+            return stream.peek(element -> {
+                if (element instanceof Product product) {
+                    load(List.of(product));
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Folds the shards of the sharded ones among {@code products} into their stock.
+     */
+    void load(Collection<Product> products) {
+        List<Product> sharded = products.stream()
+                .filter(product -> product.getStockShards() > 0)
+                .toList();
+        if (sharded.isEmpty()) {
+            return;
+        }
+        List<String> ids = sharded.stream()
+                .flatMap(product -> StockShardCounters.shardIds(product.getId(), product.getStockShards()))
+                .toList();
+        Map<String, Integer> totals = new HashMap<>();
+        mongoTemplate.getObject().find(Query.query(Criteria.where("_id").in(ids)), StockShard.class)
+                .forEach(shard -> totals.merge(shard.getProductId(), shard.getStock(), Integer::sum));
+        for (Product product : sharded) {
+            int units = totals.getOrDefault(product.getId(), 0);
+            product.setShardedStock(units);
+            product.setStock(product.getStock() + units);
+        }
+    }
+}
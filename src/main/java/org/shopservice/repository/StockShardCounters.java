@@ -0,0 +1,218 @@
+package org.shopservice.repository;
+
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.shopservice.model.Product;
+import org.shopservice.model.StockShard;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Stock counters of products in sharded mode.
+ * <p>
+ * A product with {@code stockShards = N} spreads its available units over N {@link StockShard}
+ * documents. The product document keeps the reserved units and the units not spread yet, so
+ * the on-hand stock is its {@code stock} plus the sum of its shards. Takes and puts go to a
+ * random shard, which lets concurrent orders for one product write to different documents
+ * instead of queueing on the product. Units always move by taking them from one counter with a
+ * guarded {@code $inc} before adding them to another, so a concurrent reader may briefly miss
+ * units in transit but never sees units that are not there.
+ */
+final class StockShardCounters {
+
+    private final MongoTemplate mongoTemplate;
+
+    StockShardCounters(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Takes {@code quantity} units off the available stock: from a random shard if it has
+     * enough, otherwise from the fullest shards and the product document together.
+     *
+     * @return {@code true} if all units were taken; if not, none were
+     */
+    boolean take(String productId, int shards, int quantity) {
+        int first = random(shards);
+        if (takeFromShard(productId, first, quantity)) {
+            return true;
+        }
+        Document product = readProduct(productId);
+        if (product == null) {
+            return false;
+        }
+        List<StockShard> current = find(productId, shards);
+        int total = spare(product) + current.stream().mapToInt(StockShard::getStock).sum();
+        if (total < quantity) {
+            return false;
+        }
+
+        int taken = 0;
+        for (StockShard shard : current.stream().sorted(Comparator.comparingInt(StockShard::getStock).reversed()).toList()) {
+            int part = Math.min(quantity - taken, shard.getStock());
+            if (part > 0 && takeFromShard(productId, shard.getShard(), part)) {
+                taken += part;
+            }
+        }
+        if (taken < quantity && takeFromProduct(productId, quantity - taken)) {
+            taken = quantity;
+        }
+        if (taken < quantity) {
+            // lost a race with other writers: hand back the units taken so far
+            if (taken > 0) {
+                addToProduct(productId, taken);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds {@code quantity} units to a random shard, or to the product document if that shard
+     * is gone.
+     *
+     * @return {@code false} if the product does not exist
+     */
+    boolean put(String productId, int shards, int quantity) {
+        return addToShard(productId, random(shards), quantity) || addToProduct(productId, quantity);
+    }
+
+    /**
+     * Moves the units of the shards numbered {@code from} to {@code to - 1} back onto the
+     * product document and removes those shards.
+     */
+    void drain(String productId, int from, int to) {
+        for (int shard = from; shard < to; shard++) {
+            StockShard removed = mongoTemplate.findAndRemove(byId(productId, shard), StockShard.class);
+            if (removed != null && removed.getStock() > 0) {
+                addToProduct(productId, removed.getStock());
+            }
+        }
+    }
+
+    /**
+     * Creates missing shards and spreads the available units evenly over them, unless every
+     * shard still holds at least half its share and the product document has no spare units.
+     */
+    void rebalance(String productId, int shards) {
+        Document product = readProduct(productId);
+        if (product == null) {
+            return;
+        }
+        List<StockShard> current = find(productId, shards);
+        if (current.size() < shards) {
+            create(productId, shards);
+            current = find(productId, shards);
+        }
+        int[] stock = new int[shards];
+        current.forEach(shard -> stock[shard.getShard()] = shard.getStock());
+        int spare = spare(product);
+        int[] target = shares(spare + IntStream.of(stock).sum(), shards);
+        boolean balanced = spare == 0 && IntStream.range(0, shards).allMatch(i -> stock[i] * 2 >= target[i]);
+        if (balanced) {
+            return;
+        }
+
+        // collect the surplus of every shard on the product document, then fill up the others
+        for (int shard = 0; shard < shards; shard++) {
+            int surplus = stock[shard] - target[shard];
+            if (surplus > 0 && takeFromShard(productId, shard, surplus)) {
+                addToProduct(productId, surplus);
+            }
+        }
+        for (int shard = 0; shard < shards; shard++) {
+            int deficit = target[shard] - stock[shard];
+            if (deficit > 0 && takeFromProduct(productId, deficit) && !addToShard(productId, shard, deficit)) {
+                addToProduct(productId, deficit);
+            }
+        }
+    }
+
+    /**
+     * Splits {@code total} units over {@code shards} counters as evenly as possible.
+     */
+    static int[] shares(int total, int shards) {
+        int[] shares = new int[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            shares[shard] = total / shards + (shard < total % shards ? 1 : 0);
+        }
+        return shares;
+    }
+
+    static Query shardsOf(String productId, int shards) {
+        return Query.query(Criteria.where("_id").in(shardIds(productId, shards).toList()));
+    }
+
+    static Stream<String> shardIds(String productId, int shards) {
+        return IntStream.range(0, shards).mapToObj(shard -> StockShard.id(productId, shard));
+    }
+
+    private List<StockShard> find(String productId, int shards) {
+        return mongoTemplate.find(shardsOf(productId, shards), StockShard.class);
+    }
+
+    private void create(String productId, int shards) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockShard.class);
+        for (int shard = 0; shard < shards; shard++) {
+            bulk.upsert(byId(productId, shard), new Update()
+                    .setOnInsert("productId", productId)
+                    .setOnInsert("shard", shard)
+                    .setOnInsert("stock", 0));
+        }
+        bulk.execute();
+    }
+
+    private boolean takeFromShard(String productId, int shard, int quantity) {
+        Query query = byId(productId, shard).addCriteria(Criteria.where("stock").gte(quantity));
+        return mongoTemplate.updateFirst(query, new Update().inc("stock", -quantity), StockShard.class)
+                .getMatchedCount() == 1;
+    }
+
+    private boolean addToShard(String productId, int shard, int quantity) {
+        // never upsert: a shard that is gone was drained and must stay gone
+        return mongoTemplate.updateFirst(byId(productId, shard), new Update().inc("stock", quantity), StockShard.class)
+                .getMatchedCount() == 1;
+    }
+
+    private boolean takeFromProduct(String productId, int quantity) {
+        Query query = Query.query(Criteria.where("_id").is(productId)
+                .andOperator(ProductRepoCustomImpl.available(quantity)));
+        return mongoTemplate.updateFirst(query, new Update().inc("stock", -quantity), Product.class)
+                .getMatchedCount() == 1;
+    }
+
+    private boolean addToProduct(String productId, int quantity) {
+        UpdateResult result = mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(productId)),
+                new Update().inc("stock", quantity), Product.class);
+        return result.getMatchedCount() == 1;
+    }
+
+    // the stored document, without the shards folded into its stock
+    private Document readProduct(String productId) {
+        Query query = Query.query(Criteria.where("_id").is(productId));
+        query.fields().include("stock", "reserved");
+        return mongoTemplate.findOne(query, Document.class, mongoTemplate.getCollectionName(Product.class));
+    }
+
+    // available units kept on the product document itself
+    private static int spare(Document product) {
+        return Math.max(0, product.getInteger("stock", 0) - product.getInteger("reserved", 0));
+    }
+
+    private static Query byId(String productId, int shard) {
+        return Query.query(Criteria.where("_id").is(StockShard.id(productId, shard)));
+    }
+
+    private static int random(int shards) {
+        return ThreadLocalRandom.current().nextInt(shards);
+    }
+}
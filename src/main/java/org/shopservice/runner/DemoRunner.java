@@ -5,6 +5,7 @@ import org.shopservice.model.*;
 import org.shopservice.model.enums.OrderStatus;
 import org.shopservice.repository.InventoryLogRepo;
 import org.shopservice.repository.ProductRepo;
+import org.shopservice.service.InventoryLogWriter;
 import org.shopservice.service.ShopService;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
@@ -20,6 +21,7 @@ public class DemoRunner implements CommandLineRunner {
     private final ProductRepo productRepo;
     private final ShopService shopService;
     private final InventoryLogRepo inventoryLogRepo;
+    private final InventoryLogWriter inventoryLogWriter;
 
     @Override
     public void run(String... args) throws Exception {
@@ -52,7 +54,7 @@ public class DemoRunner implements CommandLineRunner {
 
         // 2) Place a new order (PENDING)
         List<OrderItem> items1 = List.of(
-                new OrderItem(productRepo.findById("P1").orElseThrow(), 2)
+                OrderItem.of(productRepo.findById("P1").orElseThrow(), 2)
         );
         Order order1 = shopService.placeOrder("order1", items1, OrderStatus.PROCESSING);
         System.out.println("[SCENARIO B] Placed order1 for 2×T-Shirt");
@@ -80,8 +82,8 @@ public class DemoRunner implements CommandLineRunner {
 
         // 6) Place a second order (PENDING)
         List<OrderItem> items2 = List.of(
-                new OrderItem(productRepo.findById("P1").orElseThrow(), 1),
-                new OrderItem(productRepo.findById("P2").orElseThrow(), 2)
+                OrderItem.of(productRepo.findById("P1").orElseThrow(), 1),
+                OrderItem.of(productRepo.findById("P2").orElseThrow(), 2)
         );
         Order order2 = shopService.placeOrder("order2", items2, OrderStatus.PROCESSING);
         System.out.println("[SCENARIO F] Placed order2 (PENDING):");
@@ -94,7 +96,7 @@ public class DemoRunner implements CommandLineRunner {
         Order updatedOrder2 = shopService.updateOrderItemQuantity(order2.getId(), "P2", 5);
         System.out.println("[SCENARIO G] Updated order2 Banana quantity: " +
                 updatedOrder2.getItems().stream()
-                        .filter(item -> item.getProduct().getId().equals("P2"))
+                        .filter(item -> item.getProductId().equals("P2"))
                         .findFirst().map(OrderItem::getQuantity).orElse(0));
         System.out.println("Items after update: " + order2.getItems());
         System.out.println(" ");
@@ -118,9 +120,9 @@ public class DemoRunner implements CommandLineRunner {
         );
         Cart cart = shopService.reserveStockForCart("cart1", cartItems);
         System.out.println("[SCENARIO J] Reserved stock for cart1: " + cart.getItems());
-        System.out.println("Stocks after reserve: T-Shirt="
-                + productRepo.findById("P1").get().getStock()
-                + ", Slim Jeans=" + productRepo.findById("P2").get().getStock());
+        System.out.println("Available after reserve: T-Shirt="
+                + productRepo.findById("P1").get().availableStock()
+                + ", Slim Jeans=" + productRepo.findById("P2").get().availableStock());
         System.out.println();
 
         // 11) Calculate cart total without placing an order
@@ -128,6 +130,13 @@ public class DemoRunner implements CommandLineRunner {
         System.out.println("[SCENARIO K] Cart total: €" + total);
         System.out.println();
 
+        // 11b) Check out the reserved cart: its reserved units leave the on-hand stock
+        Order checkedOut = shopService.checkoutCart(cart.getId());
+        System.out.println("[SCENARIO K2] Checked out cart1 as order " + checkedOut.getId()
+                + ": total=€" + checkedOut.totalPrice()
+                + ", T-Shirt stock=" + productRepo.findById("P1").get().getStock());
+        System.out.println();
+
         System.out.println("[SCENARIO L] searchProducts(\"blue\"):");
         List<Product> blues = shopService.searchProducts("blue");
         System.out.println("Search results (" + blues.size() + "): ");
@@ -164,22 +173,23 @@ public class DemoRunner implements CommandLineRunner {
         List<CartItem> demoItems = List.of(new CartItem("P1", 3));
         shopService.reserveStockForCart(demoCartId, demoItems);
 
-// 2) Check stock after reservation
+// 2) Check available stock after reservation
         int afterReserve = productRepo.findById("P1")
-                .orElseThrow().getStock();
-        System.out.println("Stock after reservation: " + afterReserve);
+                .orElseThrow().availableStock();
+        System.out.println("Available after reservation: " + afterReserve);
 
 // 3) Manually release the reserved stock
         shopService.releaseReservedStock("P1", 3);
 
-// 4) Check stock after release
+// 4) Check available stock after release
         int afterRelease = productRepo.findById("P1")
-                .orElseThrow().getStock();
-        System.out.println("Stock after manual release: " + afterRelease);
+                .orElseThrow().availableStock();
+        System.out.println("Available after manual release: " + afterRelease);
         System.out.println();
 
         // Inventory Log
         System.out.println("=== SCENARIO Q: Inventory Audit Trail ===");
+        inventoryLogWriter.flush();
         List<InventoryLog> logs = inventoryLogRepo.findAll();
         logs.forEach(log -> System.out.println(log));
         
@@ -0,0 +1,103 @@
+package org.shopservice.runner;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites order lines that still embed the whole product into the compact
+ * {@link org.shopservice.model.OrderItem} snapshot.
+ * <p>
+ * Runs before any other runner. Legacy orders are read from a cursor and rewritten in
+ * unordered bulk updates of {@link #BATCH_SIZE}, so memory use does not grow with the
+ * collection. Each update only matches while the order still has legacy lines, which makes
+ * the migration safe to rerun after an interruption.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class OrderItemSnapshotMigration implements ApplicationRunner {
+
+    static final int BATCH_SIZE = 500;
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderItemSnapshotMigration.class);
+    private static final String LEGACY_PRODUCT = "items.product";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        String collection = mongoTemplate.getCollectionName(org.shopservice.model.Order.class);
+        Bson legacy = Filters.exists(LEGACY_PRODUCT);
+        int migrated = 0;
+        List<Document> batch = new ArrayList<>(BATCH_SIZE);
+        try (MongoCursor<Document> cursor = mongoTemplate.getCollection(collection)
+                .find(legacy)
+                .projection(Projections.include("items"))
+                .batchSize(BATCH_SIZE)
+                .cursor()) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() == BATCH_SIZE) {
+                    migrated += write(collection, batch);
+                    batch.clear();
+                }
+            }
+        }
+        migrated += write(collection, batch);
+        if (migrated > 0) {
+            logger.info("Migrated {} orders to compact order line snapshots", migrated);
+        }
+    }
+
+    private int write(String collection, List<Document> orders) {
+        if (orders.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+        for (Document order : orders) {
+            List<Document> items = order.getList("items", Document.class).stream()
+                    .map(OrderItemSnapshotMigration::snapshot)
+                    .toList();
+            bulk.updateOne(Query.query(Criteria.where("_id").is(order.get("_id")).and(LEGACY_PRODUCT).exists(true)),
+                    new Update().set("items", items));
+        }
+        return bulk.execute().getModifiedCount();
+    }
+
+    /**
+     * Converts one stored order line to the snapshot layout. Lines that are already compact
+     * are returned unchanged; the price keeps the representation it was stored with.
+     */
+    static Document snapshot(Document item) {
+        Document product = item.get("product", Document.class);
+        if (product == null) {
+            return item;
+        }
+        Object id = product.get("_id");
+        // product ids that look like an ObjectId were stored as one
+        return new Document("productId", id instanceof ObjectId objectId ? objectId.toHexString() : id)
+                .append("name", product.get("name"))
+                .append("unitPrice", product.get("price"))
+                .append("quantity", item.get("quantity"));
+    }
+}
@@ -0,0 +1,121 @@
+package org.shopservice.runner;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.shopservice.model.Cart;
+import org.shopservice.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Moves the stock held by carts reserved before reservations had their own counter.
+ * <p>
+ * Those carts took their units off {@code stock}; they are put back on hand and counted as
+ * {@code reserved} instead, so that expiring or checking out the carts works on them like on
+ * new ones. The migration runs during startup, before the expiry sweeper and any request can
+ * touch a cart.
+ * <p>
+ * Its record in the {@code migrations} collection is a lock first and a marker second: it is
+ * inserted as {@code started}, and only set to {@code done} once every product is updated.
+ * Other instances wait for {@code done}, and take over a lock that has not finished within
+ * {@link #LOCK_TIMEOUT}, as its owner died. Each product update is tagged with the migration in
+ * the same write and only matches untagged products, so redoing the work after a crash does not
+ * move any units twice.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReservedStockMigration {
+
+    static final String MIGRATIONS = "migrations";
+    static final String MIGRATION_ID = "cart-reservations-as-reserved-stock";
+    static final String STARTED = "started";
+    static final String DONE = "done";
+    // tags the products already migrated, until the migration is done
+    static final String APPLIED = "appliedMigrations";
+    static final Duration LOCK_TIMEOUT = Duration.ofMinutes(5);
+    static final Duration POLL_INTERVAL = Duration.ofSeconds(1);
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservedStockMigration.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    @PostConstruct
+    void migrate() {
+        boolean waiting = false;
+        while (!acquire()) {
+            if (isDone()) {
+                return;
+            }
+            if (!waiting) {
+                logger.info("Waiting for another instance to finish migration {}", MIGRATION_ID);
+                waiting = true;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for migration " + MIGRATION_ID, ex);
+            }
+        }
+
+        Map<String, Integer> reserved = new HashMap<>();
+        try (Stream<Cart> carts = mongoTemplate.stream(new Query(), Cart.class)) {
+            carts.forEach(cart -> cart.getItems().forEach(item ->
+                    reserved.merge(item.getProductId(), item.getQuantity(), Integer::sum)));
+        }
+        if (!reserved.isEmpty()) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+            reserved.forEach((productId, quantity) -> bulk.updateOne(
+                    Query.query(Criteria.where("_id").is(productId).and(APPLIED).ne(MIGRATION_ID)),
+                    new Update().inc("stock", quantity).inc("reserved", quantity).addToSet(APPLIED, MIGRATION_ID)));
+            bulk.execute();
+            logger.info("Moved the stock of existing cart reservations to the reserved count of {} products",
+                    reserved.size());
+        }
+
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(MIGRATION_ID)),
+                new Update().set("state", DONE).set("appliedAt", new Date()), MIGRATIONS);
+        // the tags are only needed while the migration can still be redone
+        mongoTemplate.updateMulti(Query.query(Criteria.where(APPLIED).is(MIGRATION_ID)),
+                new Update().unset(APPLIED), Product.class);
+    }
+
+    private boolean acquire() {
+        Date now = new Date();
+        try {
+            mongoTemplate.insert(new Document("_id", MIGRATION_ID).append("state", STARTED).append("startedAt", now),
+                    MIGRATIONS);
+            return true;
+        } catch (DuplicateKeyException ex) {
+            Query stale = Query.query(Criteria.where("_id").is(MIGRATION_ID)
+                    .and("state").is(STARTED)
+                    .and("startedAt").lt(new Date(now.getTime() - LOCK_TIMEOUT.toMillis())));
+            boolean takenOver = mongoTemplate.updateFirst(stale, new Update().set("startedAt", now), MIGRATIONS)
+                    .getModifiedCount() > 0;
+            if (takenOver) {
+                logger.warn("Migration {} was left unfinished; redoing it", MIGRATION_ID);
+            }
+            return takenOver;
+        }
+    }
+
+    private boolean isDone() {
+        Document record = mongoTemplate.findById(MIGRATION_ID, Document.class, MIGRATIONS);
+        // records written before the lock existed have no state and were applied in full
+        return record != null && !STARTED.equals(record.get("state"));
+    }
+}
@@ -0,0 +1,167 @@
+package org.shopservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.shopservice.config.CartReservationProperties;
+import org.shopservice.model.Cart;
+import org.shopservice.model.CartItem;
+import org.shopservice.model.InventoryLog;
+import org.shopservice.repository.CartRepo;
+import org.shopservice.repository.ProductRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Releases the stock of carts that were not checked out in time.
+ * <p>
+ * Every reserved cart is kept in a {@link TimerWheel} under its expiry, so a sweep only looks
+ * at the carts due in the ticks that passed instead of querying the {@code carts} collection.
+ * Expired carts are claimed and removed one by one, which keeps concurrent sweepers from
+ * releasing a cart twice, and their reserved units are released with one bulk write per
+ * {@code releaseBatch} carts. On startup the wheel is rebuilt from the expiry of every stored
+ * cart; carts that expired while the service was down are released on the first sweep.
+ */
+@Component
+// legacy reservations must be converted before the first sweep
+@DependsOn("reservedStockMigration")
+public class CartExpirySweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartExpirySweeper.class);
+
+    private final CartRepo cartRepo;
+    private final ProductRepo productRepo;
+    private final ProductCache productCache;
+    private final InventoryLogWriter inventoryLogWriter;
+    private final CartReservationProperties properties;
+    private final TimerWheel<String> wheel;
+
+    private Thread sweeper;
+    private volatile boolean running;
+
+    public CartExpirySweeper(CartRepo cartRepo,
+                             ProductRepo productRepo,
+                             ProductCache productCache,
+                             InventoryLogWriter inventoryLogWriter,
+                             CartReservationProperties properties) {
+        this.cartRepo = cartRepo;
+        this.productRepo = productRepo;
+        this.productCache = productCache;
+        this.inventoryLogWriter = inventoryLogWriter;
+        this.properties = properties;
+        this.wheel = new TimerWheel<>(properties.tick(), properties.wheelSize(), Instant.now());
+    }
+
+    @PostConstruct
+    void start() {
+        rebuild();
+        running = true;
+        sweeper = new Thread(this::run, "cart-expiry-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        sweeper.interrupt();
+        sweeper.join(properties.tick().multipliedBy(2).toMillis());
+    }
+
+    /**
+     * Returns when a reservation made at {@code reservedAt} expires.
+     */
+    public Instant expiryOf(Instant reservedAt) {
+        return reservedAt.plus(properties.ttl());
+    }
+
+    public void schedule(Cart cart) {
+        if (cart.getExpiresAt() != null) {
+            wheel.schedule(cart.getId(), cart.getExpiresAt());
+        }
+    }
+
+    public void cancel(String cartId) {
+        wheel.cancel(cartId);
+    }
+
+    void rebuild() {
+        long backfilled = cartRepo.backfillExpiry(properties.ttl());
+        if (backfilled > 0) {
+            logger.info("Set the expiry of {} carts reserved without one", backfilled);
+        }
+        try (Stream<Cart> carts = cartRepo.streamExpiriesBy()) {
+            carts.forEach(this::schedule);
+        }
+        logger.info("Tracking the expiry of {} reserved carts", wheel.size());
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(properties.tick().toMillis());
+                sweep(Instant.now());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                logger.error("Cart expiry sweep failed", ex);
+            }
+        }
+    }
+
+    /**
+     * Releases every cart whose reservation has expired by {@code now}.
+     */
+    void sweep(Instant now) {
+        List<String> due = wheel.advance(now);
+        for (int from = 0; from < due.size(); from += properties.releaseBatch()) {
+            List<String> batch = due.subList(from, Math.min(from + properties.releaseBatch(), due.size()));
+            List<Cart> claimed;
+            try {
+                claimed = cartRepo.removeExpired(batch, now);
+            } catch (RuntimeException ex) {
+                // these and the remaining carts were not claimed: try them again one tick later
+                Instant retryAt = now.plus(properties.tick());
+                due.subList(from, due.size()).forEach(cartId -> wheel.schedule(cartId, retryAt));
+                throw ex;
+            }
+            release(claimed, now);
+        }
+    }
+
+    private void release(List<Cart> carts, Instant now) {
+        if (carts.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        List<InventoryLog> logs = new ArrayList<>();
+        for (Cart cart : carts) {
+            for (CartItem item : cart.getItems()) {
+                quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+                logs.add(InventoryLog.builder()
+                        .delta(item.getQuantity())
+                        .sourceType("ExpireCart")
+                        .sourceId(cart.getId())
+                        .timestamp(now)
+                        .build());
+            }
+        }
+        Set<String> unreserved = productRepo.releaseReservedBulk(quantities);
+        productCache.evictAll(quantities.keySet());
+        if (!unreserved.isEmpty()) {
+            logger.warn("Fewer units reserved than held by expired carts for products {}; left unchanged", unreserved);
+        }
+        inventoryLogWriter.submitAll(logs);
+        logger.info("Released the reservations of {} expired carts", carts.size());
+    }
+}
@@ -0,0 +1,136 @@
+package org.shopservice.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Group commit: concurrent callers hand in requests, and one of them at a time, the leader,
+ * applies every request waiting at that moment as one group. While a group is being applied
+ * the next one builds up, so an idle system applies requests one by one without delay and a
+ * busy one in groups of up to {@code maxGroupSize}. Each caller returns once the group that
+ * holds its request has been applied; the next caller in line then leads the following group,
+ * so no caller applies more than one group.
+ * <p>
+ * Waiting uses a {@link ReentrantLock} rather than a monitor, so waiting virtual threads
+ * release their carrier thread.
+ */
+final class GroupCommit<R> {
+
+    private final Consumer<List<R>> apply;
+    private final int maxGroupSize;
+    private final ArrayDeque<Ticket<R>> pending = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition turn = lock.newCondition();
+    private boolean leading;
+
+    GroupCommit(Consumer<List<R>> apply, int maxGroupSize) {
+        if (maxGroupSize <= 0) {
+            throw new IllegalArgumentException("Group size must be positive");
+        }
+        this.apply = apply;
+        this.maxGroupSize = maxGroupSize;
+    }
+
+    /**
+     * Hands in {@code request} and returns once a group holding it has been applied. Results
+     * for single requests are passed back through the request objects.
+     *
+     * @throws RuntimeException what applying the group threw
+     */
+    void submit(R request) {
+        Ticket<R> ticket = new Ticket<>(request);
+        lock.lock();
+        try {
+            pending.add(ticket);
+            if (!leading) {
+                leading = true;
+                ticket.leader = true;
+            }
+            awaitTurn(ticket);
+        } finally {
+            lock.unlock();
+        }
+        if (!ticket.done) {
+            lead();
+        }
+        if (ticket.failure != null) {
+            throw ticket.failure;
+        }
+    }
+
+    int waiting() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitTurn(Ticket<R> ticket) {
+        boolean interrupted = false;
+        // the request is already queued, so wait for its outcome even when interrupted
+        while (!ticket.done && !ticket.leader) {
+            try {
+                turn.await();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // the leader's own ticket is at the head of the queue, so it is part of the group it applies
+    private void lead() {
+        List<Ticket<R>> group = new ArrayList<>();
+        lock.lock();
+        try {
+            while (!pending.isEmpty() && group.size() < maxGroupSize) {
+                group.add(pending.poll());
+            }
+        } finally {
+            lock.unlock();
+        }
+        RuntimeException failure = new IllegalStateException("Group was not applied");
+        try {
+            apply.accept(group.stream().map(ticket -> ticket.request).toList());
+            failure = null;
+        } catch (RuntimeException ex) {
+            failure = ex;
+        } finally {
+            lock.lock();
+            try {
+                for (Ticket<R> ticket : group) {
+                    ticket.failure = failure;
+                    ticket.done = true;
+                }
+                Ticket<R> next = pending.peek();
+                if (next != null) {
+                    next.leader = true;
+                } else {
+                    leading = false;
+                }
+                turn.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Ticket<R> {
+        final R request;
+        boolean leader;
+        boolean done;
+        RuntimeException failure;
+
+        Ticket(R request) {
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.shopservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.shopservice.model.InventoryImportResult;
+import org.shopservice.model.InventoryImportResult.Rejection;
+import org.shopservice.model.InventoryLog;
+import org.shopservice.model.Product;
+import org.shopservice.repository.ProductRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Applies goods-in and goods-out files with tens of thousands of lines.
+ * <p>
+ * Each line carries a product id and a signed stock delta, positive for goods in and
+ * negative for goods out, either as CSV ({@code productId,delta}, with an optional header
+ * line) or as NDJSON ({@code {"productId": "P1", "delta": 5}}). The body is read line by
+ * line and only the net delta per product is kept, so memory grows with the number of
+ * distinct products rather than with the file. The net deltas are then applied in bulk
+ * writes of {@link #CHUNK_SIZE} products, with one inventory log record per product.
+ * A product whose net goods out exceeds its stock is left unchanged.
+ * <p>
+ * The chunks bypass the stock group commit of {@link ShopService}: each is already a bulk
+ * write, and its guarded updates settle races with concurrent orders on their own.
+ */
+@Service
+@RequiredArgsConstructor
+public class InventoryImporter {
+
+    public enum Format { CSV, NDJSON }
+
+    public static final int MAX_REPORTED_REJECTIONS = 100;
+    static final int CHUNK_SIZE = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryImporter.class);
+
+    private final ProductRepo productRepo;
+    private final ProductCache productCache;
+    private final InventoryLogWriter inventoryLogWriter;
+    private final ObjectMapper objectMapper;
+
+    public InventoryImportResult importStock(InputStream body, Format format) throws IOException {
+        Summary summary = new Summary();
+        Map<String, NetDelta> deltas = new LinkedHashMap<>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String text;
+        while ((text = reader.readLine()) != null) {
+            long line = ++summary.linesRead;
+            if (text.isBlank() || (format == Format.CSV && line == 1 && isCsvHeader(text))) {
+                continue;
+            }
+            try {
+                Entry entry = format == Format.CSV ? parseCsv(text) : parseNdjson(text);
+                NetDelta net = deltas.computeIfAbsent(entry.productId(), id -> new NetDelta(line));
+                net.delta += entry.delta();
+                net.lines++;
+            } catch (IllegalArgumentException ex) {
+                summary.reject(line, null, ex.getMessage(), 1);
+            }
+        }
+        logger.info("Read {} import lines for {} products", summary.linesRead, deltas.size());
+
+        List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+        for (String productId : deltas.keySet()) {
+            chunk.add(productId);
+            if (chunk.size() == CHUNK_SIZE) {
+                apply(chunk, deltas, summary);
+                chunk.clear();
+            }
+        }
+        apply(chunk, deltas, summary);
+
+        logger.info("Stock import applied {} lines to {} products, rejected {} lines",
+                summary.linesApplied, summary.productsUpdated, summary.linesRejected);
+        return new InventoryImportResult(summary.linesRead, summary.linesApplied, summary.linesRejected,
+                summary.productsUpdated, List.copyOf(summary.rejections));
+    }
+
+    private void apply(List<String> productIds, Map<String, NetDelta> deltas, Summary summary) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        Set<String> existing = productRepo.findIdsByIdIn(productIds).stream()
+                .map(Product::getId)
+                .collect(Collectors.toSet());
+        Map<String, Integer> goodsIn = new LinkedHashMap<>();
+        Map<String, Integer> goodsOut = new LinkedHashMap<>();
+        for (String productId : productIds) {
+            NetDelta net = deltas.get(productId);
+            if (!existing.contains(productId)) {
+                summary.reject(net.firstLine, productId, "Product not found", net.lines);
+            } else if (Math.abs(net.delta) > Integer.MAX_VALUE) {
+                summary.reject(net.firstLine, productId, "Net delta out of range: " + net.delta, net.lines);
+            } else if (net.delta > 0) {
+                goodsIn.put(productId, (int) net.delta);
+            } else if (net.delta < 0) {
+                goodsOut.put(productId, (int) -net.delta);
+            } else {
+                // lines that cancel out are applied without touching the product
+                summary.linesApplied += net.lines;
+            }
+        }
+
+        Set<String> rejected = productRepo.decrementStockBulk(goodsOut);
+        productRepo.incrementStockBulk(goodsIn);
+        productCache.evictAll(productIds);
+
+        List<InventoryLog> logs = new ArrayList<>(goodsIn.size() + goodsOut.size());
+        Instant now = Instant.now();
+        goodsIn.forEach((productId, amount) -> logs.add(log(productId, amount, "ImportGoodsIn", now)));
+        goodsOut.forEach((productId, amount) -> {
+            NetDelta net = deltas.get(productId);
+            if (rejected.contains(productId)) {
+                summary.reject(net.firstLine, productId, "Insufficient stock for net goods out of " + amount, net.lines);
+            } else {
+                logs.add(log(productId, -amount, "ImportGoodsOut", now));
+            }
+        });
+        logs.forEach(log -> {
+            summary.linesApplied += deltas.get(log.getSourceId()).lines;
+            summary.productsUpdated++;
+        });
+        inventoryLogWriter.submitAll(logs);
+    }
+
+    private static InventoryLog log(String productId, int delta, String sourceType, Instant timestamp) {
+        return InventoryLog.builder()
+                .delta(delta)
+                .sourceType(sourceType)
+                .sourceId(productId)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private static boolean isCsvHeader(String text) {
+        return text.trim().toLowerCase(Locale.ROOT).startsWith("productid");
+    }
+
+    private static Entry parseCsv(String text) {
+        String[] fields = text.split(",", -1);
+        if (fields.length != 2) {
+            throw new IllegalArgumentException("Expected productId,delta");
+        }
+        return entry(fields[0].trim(), fields[1].trim());
+    }
+
+    private Entry parseNdjson(String text) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(text);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Malformed JSON");
+        }
+        if (node == null || !node.isObject() || !node.path("productId").isTextual() || !node.path("delta").isIntegralNumber()) {
+            throw new IllegalArgumentException("Expected {\"productId\": ..., \"delta\": ...}");
+        }
+        return entry(node.get("productId").asText(), node.get("delta").asText());
+    }
+
+    private static Entry entry(String productId, String delta) {
+        if (productId.isEmpty()) {
+            throw new IllegalArgumentException("Missing productId");
+        }
+        int value;
+        try {
+            value = Integer.parseInt(delta);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Delta is not an integer: " + delta);
+        }
+        if (value == 0) {
+            throw new IllegalArgumentException("Delta must not be zero");
+        }
+        return new Entry(productId, value);
+    }
+
+    private record Entry(String productId, int delta) {
+    }
+
+    private static final class NetDelta {
+        final long firstLine;
+        long delta;
+        int lines;
+
+        NetDelta(long firstLine) {
+            this.firstLine = firstLine;
+        }
+    }
+
+    private static final class Summary {
+        long linesRead;
+        long linesApplied;
+        long linesRejected;
+        int productsUpdated;
+        final List<Rejection> rejections = new ArrayList<>();
+
+        void reject(long line, String productId, String reason, int lines) {
+            linesRejected += lines;
+            if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                rejections.add(new Rejection(line, productId, reason));
+            }
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package org.shopservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.shopservice.config.InventoryLogProperties;
+import org.shopservice.model.InventoryLog;
+import org.shopservice.repository.InventoryLogRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind pipeline for the inventory audit trail.
+ * <p>
+ * Records are queued in a bounded in-memory queue and inserted into {@code inventory_logs}
+ * in batches by a background thread, once {@code batchSize} records are waiting or
+ * {@code flushInterval} has passed. When a spill file is configured, each record is appended
+ * to it before it is queued, and whatever is still in the file on startup is replayed.
+ * Records get their id up front, so replaying an already flushed record overwrites it
+ * instead of duplicating it.
+ * <p>
+ * The spill file is written in segments: every flush seals the segment written so far,
+ * renaming it to {@code <spill file>.<n>}, and deletes the sealed segments once every record
+ * queued before the seal is in the database. So the file holds about one flush interval of
+ * records however busy the queue stays.
+ * <p>
+ * A full queue that cannot be flushed, because the database is down, makes callers wait
+ * until there is room again rather than lose the record of a stock change that has already
+ * been made.
+ * <p>
+ * The locks held across database and file I/O are {@link ReentrantLock}s, so request threads
+ * that help flushing do not pin their carrier when they are virtual threads.
+ */
+@Component
+public class InventoryLogWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryLogWriter.class);
+
+    private final InventoryLogRepo inventoryLogRepo;
+    private final ObjectMapper objectMapper;
+    private final InventoryLogProperties properties;
+    private final BlockingQueue<InventoryLog> queue;
+    private final Path spillFile;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock spillLock = new ReentrantLock();
+    private final Object signal = new Object();
+
+    // batches whose insert failed; retried with upsert semantics on the next flush
+    private final List<InventoryLog> pending = new ArrayList<>();
+    private BufferedWriter spillWriter;
+    // records appended to the active segment; sealed segments await a flush that empties them
+    private int spilled;
+    private long nextSegment;
+    private final List<Path> sealed = new ArrayList<>();
+    private Thread flusher;
+    private volatile boolean running;
+
+    public InventoryLogWriter(InventoryLogRepo inventoryLogRepo,
+                              ObjectMapper objectMapper,
+                              InventoryLogProperties properties) {
+        this.inventoryLogRepo = inventoryLogRepo;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.queueCapacity());
+        this.spillFile = properties.spillFile().isBlank() ? null : Path.of(properties.spillFile());
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!properties.writeBehind()) {
+            return;
+        }
+        if (spillFile != null) {
+            replaySpillFile();
+            spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "inventory-log-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void stop() throws IOException, InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        flusher.join();
+        flush();
+        if (spillWriter != null) {
+            spillWriter.close();
+        }
+    }
+
+    public void submit(InventoryLog log) {
+        submitAll(List.of(log));
+    }
+
+    public void submitAll(List<InventoryLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        logs.stream()
+                .filter(log -> log.getId() == null)
+                .forEach(log -> log.setId(new ObjectId().toHexString()));
+        if (!running) {
+            inventoryLogRepo.insert(logs);
+            return;
+        }
+
+        for (InventoryLog log : logs) {
+            boolean warned = false;
+            while (!enqueue(log)) {
+                // queue is full: the caller helps draining, and waits if that fails, instead of dropping the record
+                flush();
+                if (enqueue(log)) {
+                    break;
+                }
+                if (!warned) {
+                    logger.warn("Inventory log queue is full and cannot be flushed; waiting for the database");
+                    warned = true;
+                }
+                LockSupport.parkNanos(properties.flushInterval().toNanos());
+            }
+        }
+        if (queue.size() >= properties.batchSize()) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Inserts everything queued so far, on the calling thread.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            // every record in these segments is pending or queued ahead of anything queued later
+            List<Path> segments = sealSpillSegment();
+            if (!pending.isEmpty()) {
+                if (!write(List.copyOf(pending), true)) {
+                    return;
+                }
+                pending.clear();
+            }
+            List<InventoryLog> batch = new ArrayList<>(properties.batchSize());
+            while (queue.drainTo(batch, properties.batchSize()) > 0) {
+                if (!write(batch, false)) {
+                    pending.addAll(batch);
+                    return;
+                }
+                batch = new ArrayList<>(properties.batchSize());
+            }
+            deleteSpillSegments(segments);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private boolean enqueue(InventoryLog log) {
+        spillLock.lock();
+        try {
+            if (queue.remainingCapacity() == 0) {
+                return false;
+            }
+            spill(log);
+            queue.add(log);
+            return true;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                synchronized (signal) {
+                    if (running && queue.size() < properties.batchSize()) {
+                        signal.wait(properties.flushInterval().toMillis());
+                    }
+                }
+                flush();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                logger.error("Inventory log flush failed", ex);
+            }
+        }
+    }
+
+    private boolean write(List<InventoryLog> batch, boolean retry) {
+        try {
+            if (retry) {
+                inventoryLogRepo.saveAll(batch);
+            } else {
+                inventoryLogRepo.insert(batch);
+            }
+            logger.debug("Flushed {} inventory log records", batch.size());
+            return true;
+        } catch (RuntimeException ex) {
+            logger.error("Could not write {} inventory log records; will retry", batch.size(), ex);
+            return false;
+        }
+    }
+
+    private void spill(InventoryLog log) {
+        if (spillWriter == null) {
+            return;
+        }
+        try {
+            spillWriter.write(objectMapper.writeValueAsString(log));
+            spillWriter.newLine();
+            // hand the line to the OS so it survives a crash of this process
+            spillWriter.flush();
+            spilled++;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not append to inventory log spill file " + spillFile, ex);
+        }
+    }
+
+    /**
+     * Renames the active segment, if it holds any records, to the next sealed segment and
+     * starts a new one.
+     *
+     * @return every sealed segment
+     */
+    private List<Path> sealSpillSegment() {
+        if (spillWriter == null) {
+            return List.of();
+        }
+        spillLock.lock();
+        try {
+            if (spilled > 0) {
+                spillWriter.close();
+                Path segment = Path.of(spillFile + "." + nextSegment++);
+                Files.move(spillFile, segment);
+                sealed.add(segment);
+                spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                spilled = 0;
+            }
+            return List.copyOf(sealed);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not seal inventory log spill file " + spillFile, ex);
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private void deleteSpillSegments(List<Path> segments) {
+        for (Path segment : segments) {
+            try {
+                Files.deleteIfExists(segment);
+                sealed.remove(segment);
+            } catch (IOException ex) {
+                // replaying it later only overwrites records that are already stored
+                logger.warn("Could not delete inventory log spill segment {}", segment, ex);
+            }
+        }
+    }
+
+    // sealed segments in the order they were written, then the active one
+    private List<Path> spillSegments() throws IOException {
+        Path directory = spillFile.toAbsolutePath().getParent();
+        String prefix = spillFile.getFileName() + ".";
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().startsWith(prefix))
+                    .filter(file -> file.getFileName().toString().substring(prefix.length()).matches("\\d+"))
+                    .sorted(Comparator.comparingLong(file ->
+                            Long.parseLong(file.getFileName().toString().substring(prefix.length()))))
+                    .forEach(segments::add);
+        }
+        if (Files.exists(spillFile)) {
+            segments.add(spillFile);
+        }
+        return segments;
+    }
+
+    private void replaySpillFile() throws IOException {
+        List<Path> segments = spillSegments();
+        if (segments.isEmpty()) {
+            return;
+        }
+        List<InventoryLog> batch = new ArrayList<>(properties.batchSize());
+        int replayed = 0;
+        for (Path segment : segments) {
+            try (var lines = Files.lines(segment, StandardCharsets.UTF_8)) {
+                for (String line : (Iterable<String>) lines::iterator) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        batch.add(objectMapper.readValue(line, InventoryLog.class));
+                    } catch (IOException ex) {
+                        // a torn last line from a crash mid-write; everything before it is intact
+                        logger.warn("Skipping unreadable line in inventory log spill file {}", segment);
+                        continue;
+                    }
+                    if (batch.size() == properties.batchSize()) {
+                        inventoryLogRepo.saveAll(batch);
+                        replayed += batch.size();
+                        batch = new ArrayList<>(properties.batchSize());
+                    }
+                }
+            }
+        }
+        inventoryLogRepo.saveAll(batch);
+        replayed += batch.size();
+        for (Path segment : segments) {
+            Files.delete(segment);
+        }
+        logger.info("Replayed {} inventory log records from {}", replayed, segments);
+    }
+}
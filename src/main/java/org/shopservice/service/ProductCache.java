@@ -0,0 +1,88 @@
+package org.shopservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.shopservice.config.ProductCacheProperties;
+import org.shopservice.model.Product;
+import org.shopservice.repository.ProductRepo;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded read-through cache in front of {@link ProductRepo} lookups by id.
+ * <p>
+ * Entries are evicted by size and after a fixed time to live. Every write to a product must
+ * go through {@link #put} or {@link #evict} so the cache never serves a stale stock level
+ * written by this node. Cached instances are shared and must not be modified by callers.
+ */
+@Component
+public class ProductCache {
+
+    private final ProductRepo productRepo;
+    private final Cache<String, Product> cache;
+
+    public ProductCache(ProductRepo productRepo, ProductCacheProperties properties) {
+        this.productRepo = productRepo;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Product> findById(String id) {
+        // loaded like a bulk lookup: outside the cache's map locks, so a virtual thread waiting on
+        // the database does not pin its carrier thread
+        return Optional.ofNullable(cache.getAll(List.of(id), missing -> productRepo.findById(id)
+                .map(product -> Map.of(id, product))
+                .orElse(Map.of())).get(id));
+    }
+
+    /**
+     * Looks up several products, loading all misses with a single {@code findAllById}.
+     * Products that do not exist are absent from the result.
+     */
+    public Map<String, Product> findAllById(Collection<String> ids) {
+        return cache.getAll(ids, missing -> productRepo.findAllById(List.copyOf(missing)).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity())));
+    }
+
+    /**
+     * Reloads the given products from the database, bypassing and refreshing the cache.
+     */
+    public Map<String, Product> reload(Collection<String> ids) {
+        cache.invalidateAll(ids);
+        return findAllById(ids);
+    }
+
+    public void put(Product product) {
+        cache.put(product.getId(), product);
+    }
+
+    public void evict(String id) {
+        cache.invalidate(id);
+    }
+
+    public void evictAll(Collection<String> ids) {
+        cache.invalidateAll(ids);
+    }
+
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    public ProductCacheStats stats() {
+        var stats = cache.stats();
+        return new ProductCacheStats(cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.evictionCount(), stats.hitRate());
+    }
+
+    public record ProductCacheStats(long size, long hits, long misses, long evictions, double hitRate) {
+    }
+}
@@ -0,0 +1,273 @@
+package org.shopservice.service;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.shopservice.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the local {@link ProductCache} and product indexes in line with writes made by other
+ * instances and by raw updates.
+ * <p>
+ * A background thread follows the change stream of the {@code products} collection and evicts
+ * every product that is inserted, updated, replaced or deleted. Inserts and replacements are put
+ * into the indexes from the full document carried by the event; an update is reloaded only when it
+ * touches a field other than the stock counters, which the indexes never depend on. The resume token is stored in
+ * {@code change_stream_tokens}, so after a restart or a dropped connection the stream picks up
+ * where it left off instead of clearing the whole cache. Only when the token can no longer be
+ * resumed, or the collection is dropped, is the cache cleared.
+ * <p>
+ * An invalidate event ends the stream. Its token is never stored, because it cannot resume the old
+ * stream; it is only used to start the next one right after it. An event that cannot be applied
+ * clears the cache instead of stopping the thread.
+ */
+@Component
+@ConditionalOnProperty(prefix = "shop.product-cache", name = "change-stream", havingValue = "true")
+public class ProductChangeStreamListener {
+
+    static final String TOKEN_COLLECTION = "change_stream_tokens";
+    static final String SUBSCRIPTION_ID = "product-cache";
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductChangeStreamListener.class);
+
+    // ChangeStreamHistoryLost, ChangeStreamFatalError
+    private static final Set<Integer> UNRESUMABLE = Set.of(286, 280);
+    private static final Duration MAX_AWAIT = Duration.ofSeconds(1);
+    private static final Duration TOKEN_SAVE_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(5);
+    private static final Set<String> STOCK_FIELDS = Set.of("stock", "reserved", "stockShards");
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductCache productCache;
+    private final ProductIndexMaintainer indexMaintainer;
+
+    private volatile boolean running;
+    private Thread worker;
+    private BsonDocument resumeToken;
+    private BsonDocument startAfter;
+    private BsonDocument savedToken;
+    private long lastSave;
+
+    public ProductChangeStreamListener(MongoTemplate mongoTemplate, ProductCache productCache,
+                                       ProductIndexMaintainer indexMaintainer) {
+        this.mongoTemplate = mongoTemplate;
+        this.productCache = productCache;
+        this.indexMaintainer = indexMaintainer;
+    }
+
+    @PostConstruct
+    void start() {
+        resumeToken = loadToken();
+        savedToken = resumeToken;
+        running = true;
+        worker = new Thread(this::run, "product-change-stream");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(MAX_AWAIT.multipliedBy(2).toMillis());
+    }
+
+    private void run() {
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = open()) {
+                logger.info("Following product changes{}", resumeToken == null ? "" : " from stored resume token");
+                while (running) {
+                    ChangeStreamDocument<Document> event = cursor.tryNext();
+                    if (event != null && event.getOperationType() == OperationType.INVALIDATE) {
+                        invalidated(event);
+                        break;
+                    }
+                    if (event != null) {
+                        apply(event);
+                    }
+                    // also advances while idle, so the stored token never falls out of the oplog
+                    if (cursor.getResumeToken() != null) {
+                        resumeToken = cursor.getResumeToken();
+                    }
+                    saveTokenIfDue();
+                }
+            } catch (MongoServerException ex) {
+                if (UNRESUMABLE.contains(ex.getCode())) {
+                    logger.warn("Product change stream cannot be resumed; clearing product cache", ex);
+                    restartFromNow();
+                } else {
+                    retryLater(ex);
+                }
+            } catch (MongoException ex) {
+                retryLater(ex);
+            }
+        }
+        saveTokenIfDue();
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> open() {
+        ChangeStreamIterable<Document> stream = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Product.class))
+                .watch()
+                .maxAwaitTime(MAX_AWAIT.toMillis(), TimeUnit.MILLISECONDS);
+        if (startAfter != null) {
+            stream = stream.startAfter(startAfter);
+        } else if (resumeToken != null) {
+            stream = stream.resumeAfter(resumeToken);
+        }
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor();
+        startAfter = null;
+        return cursor;
+    }
+
+    private void apply(ChangeStreamDocument<Document> event) {
+        try {
+            handle(event);
+        } catch (RuntimeException ex) {
+            logger.warn("Could not apply product change {}; clearing product cache", event.getOperationType(), ex);
+            productCache.evictAll();
+            indexMaintainer.rebuild();
+        }
+    }
+
+    private void invalidated(ChangeStreamDocument<Document> event) {
+        logger.info("Product change stream was invalidated; reopening it");
+        restartFromNow();
+        startAfter = event.getResumeToken();
+    }
+
+    void handle(ChangeStreamDocument<Document> event) {
+        switch (event.getOperationType()) {
+            case INSERT, UPDATE, REPLACE, DELETE -> {
+                String productId = productId(event.getDocumentKey());
+                if (productId != null) {
+                    productCache.evict(productId);
+                    logger.debug("Evicted product {} after remote {}", productId, event.getOperationType());
+                    index(event, productId);
+                }
+            }
+            case DROP, RENAME, DROP_DATABASE -> {
+                productCache.evictAll();
+                indexMaintainer.rebuild();
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void index(ChangeStreamDocument<Document> event, String productId) {
+        switch (event.getOperationType()) {
+            case INSERT, REPLACE -> {
+                if (event.getFullDocument() != null) {
+                    indexMaintainer.put(mongoTemplate.getConverter().read(Product.class, event.getFullDocument()));
+                }
+            }
+            case UPDATE -> {
+                if (touchesDescription(event)) {
+                    indexMaintainer.refresh(productId);
+                }
+            }
+            case DELETE -> indexMaintainer.remove(productId);
+            default -> {
+            }
+        }
+    }
+
+    private static boolean touchesDescription(ChangeStreamDocument<Document> event) {
+        UpdateDescription description = event.getUpdateDescription();
+        if (description == null) {
+            return true;
+        }
+        Stream<String> updated = description.getUpdatedFields() == null
+                ? Stream.empty() : description.getUpdatedFields().keySet().stream();
+        Stream<String> removed = description.getRemovedFields() == null
+                ? Stream.empty() : description.getRemovedFields().stream();
+        return Stream.concat(updated, removed).anyMatch(field -> !STOCK_FIELDS.contains(field));
+    }
+
+    private void restartFromNow() {
+        productCache.evictAll();
+        indexMaintainer.rebuild();
+        resumeToken = null;
+        saveTokenIfDue();
+    }
+
+    private void retryLater(MongoException ex) {
+        if (!running) {
+            return;
+        }
+        logger.warn("Product change stream failed; retrying in {}", RETRY_DELAY, ex);
+        try {
+            Thread.sleep(RETRY_DELAY.toMillis());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private static String productId(BsonDocument documentKey) {
+        if (documentKey == null) {
+            return null;
+        }
+        BsonValue id = documentKey.get("_id");
+        if (id == null) {
+            return null;
+        }
+        // ids that look like an ObjectId are stored as one by Spring Data
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        // products are keyed by string ids; any other id type cannot be in the cache
+        return id.isString() ? id.asString().getValue() : null;
+    }
+
+    private MongoCollection<BsonDocument> tokens() {
+        return mongoTemplate.getDb().getCollection(TOKEN_COLLECTION, BsonDocument.class);
+    }
+
+    private BsonDocument loadToken() {
+        BsonDocument stored = tokens().find(new BsonDocument("_id", new BsonString(SUBSCRIPTION_ID))).first();
+        return stored == null || !stored.isDocument("token") ? null : stored.getDocument("token");
+    }
+
+    private void saveTokenIfDue() {
+        long now = System.currentTimeMillis();
+        boolean changed = resumeToken == null ? savedToken != null : !resumeToken.equals(savedToken);
+        if (!changed || (running && now - lastSave < TOKEN_SAVE_INTERVAL.toMillis())) {
+            return;
+        }
+        BsonDocument id = new BsonDocument("_id", new BsonString(SUBSCRIPTION_ID));
+        if (resumeToken == null) {
+            tokens().deleteOne(id);
+        } else {
+            tokens().replaceOne(id, id.clone()
+                            .append("token", resumeToken)
+                            .append("updatedAt", new BsonDateTime(now)),
+                    new ReplaceOptions().upsert(true));
+        }
+        savedToken = resumeToken;
+        lastSave = now;
+    }
+}
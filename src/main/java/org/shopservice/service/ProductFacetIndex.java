@@ -0,0 +1,219 @@
+package org.shopservice.service;
+
+import org.shopservice.model.Product;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Bitmap index over the color, size and brand of every product.
+ * <p>
+ * Each product gets a dense ordinal (ordinals of deleted products are reused), and every facet
+ * value keeps a {@link BitSet} of the ordinals that carry it. Filtering is an OR of the selected
+ * values per facet and an AND across facets; facet counts are cardinalities of intersections.
+ * Values are matched case-insensitively and reported in the spelling first seen.
+ */
+@Component
+public class ProductFacetIndex implements ProductIndex {
+
+    public enum Facet {
+        COLOR("color", Product::getColor),
+        SIZE("size", Product::getSize),
+        BRAND("brand", Product::getBrand);
+
+        private final String key;
+        private final Function<Product, String> getter;
+
+        Facet(String key, Function<Product, String> getter) {
+            this.key = key;
+            this.getter = getter;
+        }
+
+        public String key() {
+            return key;
+        }
+    }
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String> productIds = new ArrayList<>();
+    // ordinal -> facet values the product carries, to unindex it without visiting every value
+    private final Map<Integer, List<FacetValue>> memberships = new HashMap<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+    private final Map<Facet, Map<String, FacetValue>> values = new EnumMap<>(Facet.class);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ProductFacetIndex() {
+        for (Facet facet : Facet.values()) {
+            values.put(facet, new HashMap<>());
+        }
+    }
+
+    @Override
+    public void rebuild(Collection<Product> products) {
+        lock.writeLock().lock();
+        try {
+            ordinals.clear();
+            productIds.clear();
+            memberships.clear();
+            freeOrdinals.clear();
+            live.clear();
+            values.values().forEach(Map::clear);
+            products.forEach(this::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(Product product) {
+        lock.writeLock().lock();
+        try {
+            unindex(product.getId());
+            add(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            unindex(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the products matching the selection. Facets without selected values
+     * do not restrict the result.
+     */
+    public List<String> filter(Map<Facet, ? extends Collection<String>> selection) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = matching(selection, null);
+            List<String> ids = new ArrayList<>(matches.cardinality());
+            matches.stream().forEach(ordinal -> ids.add(productIds.get(ordinal)));
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the products per value of each facet. The counts of a facet apply the selection of
+     * all other facets, so they show how many products each alternative value would yield.
+     */
+    public Map<Facet, Map<String, Integer>> counts(Map<Facet, ? extends Collection<String>> selection) {
+        lock.readLock().lock();
+        try {
+            Map<Facet, Map<String, Integer>> counts = new EnumMap<>(Facet.class);
+            for (Facet facet : Facet.values()) {
+                BitSet base = matching(selection, facet);
+                Map<String, Integer> facetCounts = new LinkedHashMap<>();
+                values.get(facet).values().stream()
+                        .sorted((a, b) -> a.label.compareToIgnoreCase(b.label))
+                        .forEach(value -> {
+                            BitSet hits = (BitSet) value.ordinals.clone();
+                            hits.and(base);
+                            if (!hits.isEmpty()) {
+                                facetCounts.put(value.label, hits.cardinality());
+                            }
+                        });
+                counts.put(facet, facetCounts);
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet matching(Map<Facet, ? extends Collection<String>> selection, Facet ignored) {
+        BitSet result = (BitSet) live.clone();
+        selection.forEach((facet, selected) -> {
+            if (facet == ignored || selected == null || selected.isEmpty()) {
+                return;
+            }
+            BitSet any = new BitSet();
+            selected.forEach(value -> {
+                FacetValue facetValue = values.get(facet).get(normalize(value));
+                if (facetValue != null) {
+                    any.or(facetValue.ordinals);
+                }
+            });
+            result.and(any);
+        });
+        return result;
+    }
+
+    private void add(Product product) {
+        Integer reused = freeOrdinals.poll();
+        int ordinal = reused != null ? reused : productIds.size();
+        if (reused != null) {
+            productIds.set(ordinal, product.getId());
+        } else {
+            productIds.add(product.getId());
+        }
+        ordinals.put(product.getId(), ordinal);
+        live.set(ordinal);
+        List<FacetValue> carried = new ArrayList<>(Facet.values().length);
+        for (Facet facet : Facet.values()) {
+            String value = facet.getter.apply(product);
+            if (value != null && !value.isBlank()) {
+                FacetValue facetValue = values.get(facet)
+                        .computeIfAbsent(normalize(value), key -> new FacetValue(facet, key, value.trim()));
+                facetValue.ordinals.set(ordinal);
+                carried.add(facetValue);
+            }
+        }
+        memberships.put(ordinal, carried);
+    }
+
+    private void unindex(String productId) {
+        Integer ordinal = ordinals.remove(productId);
+        if (ordinal == null) {
+            return;
+        }
+        live.clear(ordinal);
+        for (FacetValue value : memberships.remove(ordinal)) {
+            value.ordinals.clear(ordinal);
+            if (value.ordinals.isEmpty()) {
+                values.get(value.facet).remove(value.key);
+            }
+        }
+        productIds.set(ordinal, null);
+        freeOrdinals.push(ordinal);
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class FacetValue {
+        final Facet facet;
+        final String key;
+        final String label;
+        final BitSet ordinals = new BitSet();
+
+        FacetValue(Facet facet, String key, String label) {
+            this.facet = facet;
+            this.key = key;
+            this.label = label;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.shopservice.service;
+
+import org.shopservice.model.Product;
+
+import java.util.Collection;
+
+/**
+ * An in-memory structure derived from the product catalog.
+ * <p>
+ * Implementations are kept current by {@link ProductIndexMaintainer}, which rebuilds them on
+ * startup and forwards every product save and delete, including those seen on the product change
+ * stream. Stock changes are not forwarded, so an
+ * index must only depend on the descriptive fields of a product.
+ */
+public interface ProductIndex {
+
+    void rebuild(Collection<Product> products);
+
+    void put(Product product);
+
+    void remove(String productId);
+}
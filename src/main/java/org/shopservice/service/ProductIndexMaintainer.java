@@ -0,0 +1,88 @@
+package org.shopservice.service;
+
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.shopservice.model.Product;
+import org.shopservice.repository.ProductRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Feeds every {@link ProductIndex} from the mapping events that Spring Data emits for
+ * {@link Product} saves and deletes made by this instance.
+ * <p>
+ * Those events miss writes made by other instances and by raw updates. When the product change
+ * stream is enabled, {@link ProductChangeStreamListener} forwards those writes through
+ * {@link #put(Product)}, {@link #refresh(String)} and {@link #remove(String)}.
+ */
+@Component
+public class ProductIndexMaintainer extends AbstractMongoEventListener<Product> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductIndexMaintainer.class);
+
+    private final ProductRepo productRepo;
+    private final List<ProductIndex> indexes;
+
+    public ProductIndexMaintainer(ProductRepo productRepo, List<ProductIndex> indexes) {
+        this.productRepo = productRepo;
+        this.indexes = indexes;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        List<Product> products = productRepo.findAll();
+        indexes.forEach(index -> index.rebuild(products));
+        logger.info("Built {} product indexes over {} products", indexes.size(), products.size());
+    }
+
+    public void put(Product product) {
+        indexes.forEach(index -> index.put(product));
+    }
+
+    /**
+     * Reloads a product after an update whose new state is not known, and removes it from the
+     * indexes when it no longer exists.
+     */
+    public void refresh(String productId) {
+        productRepo.findById(productId).ifPresentOrElse(this::put, () -> remove(productId));
+    }
+
+    public void remove(String productId) {
+        indexes.forEach(index -> index.remove(productId));
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Product> event) {
+        put(event.getSource());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Product> event) {
+        // the event only carries the delete query
+        Document query = event.getSource();
+        Object id = query.get("_id");
+        if (query.isEmpty()) {
+            indexes.forEach(index -> index.rebuild(List.of()));
+        } else if (query.size() == 1 && id instanceof Document operator
+                && operator.size() == 1 && operator.get("$in") instanceof Collection<?> ids) {
+            ids.forEach(this::removeId);
+        } else if (query.size() == 1 && id != null && !(id instanceof Document)) {
+            removeId(id);
+        } else {
+            rebuild();
+        }
+    }
+
+    private void removeId(Object id) {
+        // ids that look like an ObjectId are stored as one by Spring Data
+        remove(id instanceof ObjectId objectId ? objectId.toHexString() : id.toString());
+    }
+}
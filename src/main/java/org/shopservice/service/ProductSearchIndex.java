@@ -0,0 +1,173 @@
+package org.shopservice.service;
+
+import org.shopservice.model.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Inverted index over the name, brand, description, color and size of every product.
+ * <p>
+ * Field values are split into lower-case alphanumeric tokens. A query matches a product when
+ * every query token is a prefix of one of its tokens; matches are ranked by a tf-idf score in
+ * which name and brand weigh more than the other fields and whole-token matches more than
+ * prefix matches. Only product ids are kept, callers load the products themselves.
+ */
+@Component
+public class ProductSearchIndex implements ProductIndex {
+
+    private static final Map<String, Function<Product, String>> FIELDS = Map.of(
+            "name", Product::getName,
+            "brand", Product::getBrand,
+            "description", Product::getDescription,
+            "color", Product::getColor,
+            "size", Product::getSize);
+    private static final Map<String, Double> FIELD_WEIGHTS = Map.of(
+            "name", 3.0,
+            "brand", 2.0,
+            "description", 1.0,
+            "color", 1.5,
+            "size", 1.0);
+    private static final double PREFIX_MATCH_FACTOR = 0.5;
+
+    // token -> product id -> weighted term frequency
+    private final NavigableMap<String, Map<String, Double>> postings = new TreeMap<>();
+    // product id -> its postings, to unindex a product without scanning all tokens
+    private final Map<String, Map<String, Double>> documents = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public void rebuild(Collection<Product> products) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            products.forEach(this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(Product product) {
+        lock.writeLock().lock();
+        try {
+            unindex(product.getId());
+            index(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            unindex(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the products matching {@code query}, best match first.
+     */
+    public Page<String> search(String query, Pageable pageable) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        lock.readLock().lock();
+        List<Map.Entry<String, Double>> ranked;
+        try {
+            Map<String, Double> scores = null;
+            for (String term : terms) {
+                Map<String, Double> termScores = score(term);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    // every term has to match
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((id, score) -> score + termScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return Page.empty(pageable);
+                }
+            }
+            ranked = new ArrayList<>(scores.entrySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        ranked.sort(Map.Entry.<String, Double>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+        int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), ranked.size()) : 0;
+        int to = pageable.isPaged() ? Math.min(from + pageable.getPageSize(), ranked.size()) : ranked.size();
+        List<String> page = ranked.subList(from, to).stream()
+                .map(Map.Entry::getKey)
+                .toList();
+        return new PageImpl<>(page, pageable, ranked.size());
+    }
+
+    private Map<String, Double> score(String term) {
+        Map<String, Double> scores = new HashMap<>();
+        double documentCount = documents.size();
+        for (var entry : postings.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+            Map<String, Double> frequencies = entry.getValue();
+            double idf = Math.log(1 + documentCount / frequencies.size());
+            double factor = entry.getKey().equals(term) ? 1.0 : PREFIX_MATCH_FACTOR;
+            frequencies.forEach((id, tf) -> scores.merge(id, tf * idf * factor, Double::sum));
+        }
+        return scores;
+    }
+
+    private void index(Product product) {
+        Map<String, Double> frequencies = new HashMap<>();
+        FIELDS.forEach((field, getter) -> {
+            double weight = FIELD_WEIGHTS.get(field);
+            tokenize(getter.apply(product)).forEach(token -> frequencies.merge(token, weight, Double::sum));
+        });
+        documents.put(product.getId(), frequencies);
+        frequencies.forEach((token, tf) ->
+                postings.computeIfAbsent(token, t -> new HashMap<>()).put(product.getId(), tf));
+    }
+
+    private void unindex(String productId) {
+        Map<String, Double> frequencies = documents.remove(productId);
+        if (frequencies == null) {
+            return;
+        }
+        frequencies.keySet().forEach(token -> {
+            Map<String, Double> ids = postings.get(token);
+            ids.remove(productId);
+            if (ids.isEmpty()) {
+                postings.remove(token);
+            }
+        });
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .toList();
+    }
+}
@@ -0,0 +1,212 @@
+package org.shopservice.service;
+
+import org.shopservice.model.Product;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Type-ahead suggestions for product names and brands.
+ * <p>
+ * Every distinct name and brand is a suggestion, weighted by the number of products that use
+ * it. Suggestions are stored in a trie under their lower-case text and under each of their
+ * later words, so "jea" finds "Slim Jeans". Each trie node caches the best {@link #MAX_SUGGESTIONS}
+ * suggestions of its subtree, so a lookup only walks the prefix and copies that list; writes
+ * refresh the caches along the paths they touch.
+ */
+@Component
+public class ProductSuggestIndex implements ProductIndex {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private final Node root = new Node();
+    // suggestion -> number of products using it
+    private final Map<String, Integer> weights = new HashMap<>();
+    // product id -> suggestions it contributes
+    private final Map<String, Set<String>> contributions = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Comparator<String> ranking = Comparator
+            .comparing((String suggestion) -> weights.getOrDefault(suggestion, 0)).reversed()
+            .thenComparing(Comparator.naturalOrder());
+
+    @Override
+    public void rebuild(Collection<Product> products) {
+        lock.writeLock().lock();
+        try {
+            root.children.clear();
+            root.suggestions.clear();
+            root.top = List.of();
+            weights.clear();
+            contributions.clear();
+            products.forEach(this::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(Product product) {
+        lock.writeLock().lock();
+        try {
+            removeContributions(product.getId());
+            add(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            removeContributions(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} suggestions starting with {@code prefix}, most used first.
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = prefix.trim().toLowerCase(Locale.ROOT);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            return node.top.subList(0, Math.min(limit, node.top.size()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(Product product) {
+        Set<String> suggestions = new LinkedHashSet<>();
+        for (String value : new String[]{product.getName(), product.getBrand()}) {
+            if (value != null && !value.isBlank()) {
+                suggestions.add(value.trim());
+            }
+        }
+        contributions.put(product.getId(), suggestions);
+        for (String suggestion : suggestions) {
+            int weight = weights.merge(suggestion, 1, Integer::sum);
+            keys(suggestion).forEach(key -> {
+                if (weight == 1) {
+                    insert(key, suggestion);
+                } else {
+                    refresh(key);
+                }
+            });
+        }
+    }
+
+    private void removeContributions(String productId) {
+        Set<String> suggestions = contributions.remove(productId);
+        if (suggestions == null) {
+            return;
+        }
+        for (String suggestion : suggestions) {
+            int weight = weights.merge(suggestion, -1, Integer::sum);
+            if (weight == 0) {
+                weights.remove(suggestion);
+                keys(suggestion).forEach(key -> delete(key, suggestion));
+            } else {
+                keys(suggestion).forEach(this::refresh);
+            }
+        }
+    }
+
+    private void insert(String key, String suggestion) {
+        List<Node> path = path(key, true);
+        path.get(path.size() - 1).suggestions.add(suggestion);
+        updateTop(path);
+    }
+
+    private void delete(String key, String suggestion) {
+        List<Node> path = path(key, false);
+        if (path.size() != key.length() + 1) {
+            return;
+        }
+        path.get(path.size() - 1).suggestions.remove(suggestion);
+        updateTop(path);
+        // prune branches that no longer lead to a suggestion
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node node = path.get(i);
+            if (!node.suggestions.isEmpty() || !node.children.isEmpty()) {
+                break;
+            }
+            path.get(i - 1).children.remove(key.charAt(i - 1));
+        }
+    }
+
+    private void refresh(String key) {
+        List<Node> path = path(key, false);
+        updateTop(path);
+    }
+
+    private List<Node> path(String key, boolean create) {
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            node = create
+                    ? node.children.computeIfAbsent(key.charAt(i), c -> new Node())
+                    : node.children.get(key.charAt(i));
+            if (node == null) {
+                break;
+            }
+            path.add(node);
+        }
+        return path;
+    }
+
+    private void updateTop(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            Set<String> candidates = new HashSet<>(node.suggestions);
+            node.children.values().forEach(child -> candidates.addAll(child.top));
+            node.top = candidates.stream()
+                    .sorted(ranking)
+                    .limit(MAX_SUGGESTIONS)
+                    .toList();
+        }
+    }
+
+    private static Set<String> keys(String suggestion) {
+        String text = suggestion.toLowerCase(Locale.ROOT);
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(text);
+        for (int i = 1; i < text.length(); i++) {
+            if (!Character.isLetterOrDigit(text.charAt(i - 1)) && Character.isLetterOrDigit(text.charAt(i))) {
+                keys.add(text.substring(i));
+            }
+        }
+        return keys;
+    }
+
+    private static final class Node {
+        final Map<Character, Node> children = new HashMap<>();
+        final Set<String> suggestions = new HashSet<>();
+        List<String> top = List.of();
+    }
+}
@@ -0,0 +1,75 @@
+package org.shopservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.shopservice.exception.OrderNotFoundException;
+import org.shopservice.exception.ProductNotFoundException;
+import org.shopservice.model.Order;
+import org.shopservice.model.OrderItem;
+import org.shopservice.model.Product;
+import org.shopservice.model.enums.OrderStatus;
+import org.shopservice.repository.ReactiveOrderRepo;
+import org.shopservice.repository.ReactiveProductRepo;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+/**
+ * Non-blocking variant of the order operations of {@link ShopService}, on the reactive Mongo
+ * driver. Reads run on the reactive driver. Orders and checkouts are handed to
+ * {@link ShopService} on the bounded elastic scheduler, so every stock write goes through the
+ * same group commit, sharded counters and inventory log writer, whichever endpoint it came in on.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReactiveShopService {
+    private final ReactiveOrderRepo orderRepo;
+    private final ReactiveProductRepo productRepo;
+    private final ShopService shopService;
+
+    // Order Management
+
+    public Mono<Order> getOrderById(String orderId) {
+        return orderRepo.findById(orderId)
+                .switchIfEmpty(Mono.error(() -> new OrderNotFoundException(orderId)));
+    }
+
+    /**
+     * Orders, optionally filtered by status, read from a cursor as fast as the subscriber
+     * requests them.
+     */
+    public Flux<Order> streamOrders(OrderStatus orderStatus) {
+        return orderStatus == null
+                ? orderRepo.findAllBy()
+                : orderRepo.findByStatus(orderStatus);
+    }
+
+    public Mono<Order> placeOrder(String id, List<OrderItem> items, OrderStatus orderStatus) {
+        return Mono.fromCallable(() -> shopService.placeOrder(id, items, orderStatus))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Turns a reserved cart into an order with the same id, see {@link ShopService#checkoutCart}.
+     */
+    public Mono<Order> checkoutCart(String cartId) {
+        return Mono.fromCallable(() -> shopService.checkoutCart(cartId))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // PRODUCTS
+
+    public Mono<Product> getProductById(String productId) {
+        return productRepo.findById(productId)
+                .switchIfEmpty(Mono.error(() -> new ProductNotFoundException(productId)));
+    }
+
+    /**
+     * All products, read from a cursor as fast as the subscriber requests them.
+     */
+    public Flux<Product> streamProducts() {
+        return productRepo.findAllBy();
+    }
+}
@@ -1,15 +1,22 @@
 package org.shopservice.service;
 
 import lombok.RequiredArgsConstructor;
+import org.shopservice.config.MongoRoundTrips;
+import org.shopservice.exception.CartNotFoundException;
 import org.shopservice.exception.InsufficientStockException;
 import org.shopservice.exception.OrderNotFoundException;
 import org.shopservice.exception.ProductNotFoundException;
 import org.shopservice.model.*;
 import org.shopservice.model.enums.OrderStatus;
 import org.shopservice.repository.CartRepo;
-import org.shopservice.repository.InventoryLogRepo;
 import org.shopservice.repository.OrderRepo;
 import org.shopservice.repository.ProductRepo;
+import org.shopservice.service.ProductFacetIndex.Facet;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,28 +24,76 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class ShopService {
     private final OrderRepo orderRepo;
     private final ProductRepo productRepo;
+    private final ProductCache productCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductFacetIndex productFacetIndex;
     private final CartRepo cartRepo;
-    private final InventoryLogRepo inventoryLogRepo;
+    private final CartExpirySweeper cartExpirySweeper;
+    private final InventoryLogWriter inventoryLogWriter;
+    // single-product and single-order stock writes, coalesced per stripe while the stripe's previous
+    // group is written; a request joins the stripe of its first product, so writes to products in
+    // other stripes never wait behind it
+    private final List<GroupCommit<StockRequest>> stockWrites = IntStream.range(0, STOCK_WRITE_STRIPES)
+            .mapToObj(stripe -> new GroupCommit<>(this::applyStockGroup, MAX_STOCK_GROUP))
+            .toList();
 
     private static final Logger logger = LoggerFactory.getLogger(ShopService.class);
 
+    static final int MAX_ORDER_BATCH = 10_000;
+    // bulk stock writes lost to concurrent writers before the contended products are given up
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+    static final int MAX_STOCK_SHARDS = 64;
+    static final int MAX_STOCK_GROUP = 500;
+    static final int STOCK_WRITE_STRIPES = 64;
+
     // Order Management
 
     public List<Order> getAllOrders() {
         return orderRepo.findAll();
     }
 
+    /**
+     * Returns up to {@code limit} orders with an id greater than {@code after} (or the first
+     * ones if it is {@code null}), ordered by id.
+     */
+    public List<Order> getOrders(String after, int limit) {
+        Pageable page = PageRequest.of(0, limit, Sort.by("id"));
+        return after == null
+                ? orderRepo.findAllBy(page)
+                : orderRepo.findByIdGreaterThan(after, page);
+    }
+
+    /**
+     * Streams orders, optionally filtered by status, from a database cursor.
+     * The caller must close the stream.
+     */
+    public Stream<Order> streamOrders(OrderStatus orderStatus) {
+        return orderStatus == null
+                ? orderRepo.streamAllBy()
+                : orderRepo.streamByStatus(orderStatus);
+    }
+
     public Order getOrderById(String orderId) {
         logger.info("Fetching order with ID: {}", orderId);
         return orderRepo.findById(orderId)
@@ -53,44 +108,185 @@ public class ShopService {
                             List<OrderItem> items,
                             OrderStatus orderStatus) {
         logger.info("Placing order {} with {} items", id, items.size());
-        // Validate each product exists and decrement its stock
+        // Validate every line, then decrement all stock in one bulk write
+        Map<String, Integer> quantities = new LinkedHashMap<>();
         for (OrderItem item : items) {
-            String pid = item.getProduct().getId();
-            Product product = productRepo.findById(pid)
-                    .orElseThrow(() -> new ProductNotFoundException(pid));
-
-            int newStock = product.getStock() - item.getQuantity();
-            if (newStock < 0) {
-                logger.error("Insufficient stock (have={}, need={}) for product {}",
-                        product.getStock(), item.getQuantity(), pid);
-                throw new IllegalStateException("Insufficient stock for product: " + pid);
-            }
-            product.setStock(newStock);
-            productRepo.save(product);
-            inventoryLogRepo.save(InventoryLog.builder()
-                    .delta(-item.getQuantity())
-                    .sourceType("PlaceOrder")
-                    .sourceId(id)
-                    .timestamp(Instant.now())
-                    .build());
+            requirePositive(item.getQuantity());
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
         }
+        Map<String, Product> products = decrementStockBatch(quantities);
+        // snapshot name and price from the catalog rather than trusting the request
+        List<OrderItem> lines = items.stream()
+                .map(item -> OrderItem.of(products.get(item.getProductId()), item.getQuantity()))
+                .toList();
+        inventoryLogWriter.submitAll(lines.stream()
+                .map(item -> InventoryLog.builder()
+                        .delta(-item.getQuantity())
+                        .sourceType("PlaceOrder")
+                        .sourceId(id)
+                        .timestamp(Instant.now())
+                        .build())
+                .toList());
 
         // Create and save the new order
         Order newOrder = new Order(
                 id,
-                items,
+                lines,
                 orderStatus,
                 Instant.now()
         );
         return orderRepo.save(newOrder);
     }
 
+    /**
+     * Places a batch of orders with one product read, one bulk stock write and one bulk insert.
+     * Orders are served in request order; an order that is invalid, already exists or cannot
+     * be served in full from the stock left by the orders before it is rejected on its own, as
+     * is one whose id is taken concurrently before the insert; its stock is returned.
+     * <p>
+     * The batch does not go through the stock group commit: it already is one bulk write, and
+     * like a group it only relies on the guarded updates to settle races with other writers.
+     */
+    public List<OrderResult> placeOrders(List<OrderRequest> requests) {
+        if (requests.size() > MAX_ORDER_BATCH) {
+            throw new IllegalArgumentException(
+                    "At most " + MAX_ORDER_BATCH + " orders per batch, was " + requests.size());
+        }
+        logger.info("Placing batch of {} orders", requests.size());
+        OrderResult[] results = new OrderResult[requests.size()];
+        Map<Integer, Map<String, Integer>> demands = new HashMap<>();
+        List<Integer> candidates = new ArrayList<>();
+
+        Set<String> existing = orderRepo.findIdsByIdIn(requests.stream()
+                        .map(OrderRequest::getId)
+                        .filter(Objects::nonNull)
+                        .toList())
+                .stream()
+                .map(Order::getId)
+                .collect(Collectors.toSet());
+        Set<String> seen = new HashSet<>();
+        Map<String, Integer> totalDemand = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            OrderRequest request = requests.get(i);
+            String problem = validate(request);
+            if (problem == null && !seen.add(request.getId())) {
+                problem = "Duplicate order id in batch: " + request.getId();
+            }
+            if (problem == null && existing.contains(request.getId())) {
+                problem = "Order already exists: " + request.getId();
+            }
+            if (problem != null) {
+                results[i] = OrderResult.rejected(request.getId(), problem);
+                continue;
+            }
+            Map<String, Integer> demand = new LinkedHashMap<>();
+            request.getItems().forEach(item -> demand.merge(item.getProductId(), item.getQuantity(), Integer::sum));
+            demand.forEach((productId, quantity) -> totalDemand.merge(productId, quantity, Integer::sum));
+            demands.put(i, demand);
+            candidates.add(i);
+        }
+
+        Map<String, Product> products = readForStockCheck(totalDemand);
+        Set<String> contended = new HashSet<>();
+        List<Integer> accepted;
+        for (int attempt = 1; ; attempt++) {
+            accepted = new ArrayList<>();
+            Map<String, Integer> remaining = new HashMap<>();
+            Map<String, Integer> totals = new LinkedHashMap<>();
+            for (int i : candidates) {
+                String problem = allocate(demands.get(i), products, remaining, contended);
+                if (problem != null) {
+                    results[i] = OrderResult.rejected(requests.get(i).getId(), problem);
+                } else {
+                    accepted.add(i);
+                    demands.get(i).forEach((productId, quantity) -> totals.merge(productId, quantity, Integer::sum));
+                }
+            }
+
+            Set<String> rejected = productRepo.decrementStockBulk(totals);
+            productCache.evictAll(totals.keySet());
+            if (rejected.isEmpty()) {
+                break;
+            }
+            // a concurrent writer got there between the read and the write: undo, re-read and allocate again
+            Map<String, Integer> applied = new LinkedHashMap<>(totals);
+            applied.keySet().removeAll(rejected);
+            productRepo.incrementStockBulk(applied);
+            rejected.forEach(products::remove);
+            products.putAll(productCache.reload(rejected));
+            logger.warn("Stock for products {} changed concurrently; reallocating batch (attempt {})", rejected, attempt);
+            if (attempt >= MAX_BATCH_ATTEMPTS) {
+                // stop competing for these products so the rest of the batch gets through
+                contended.addAll(rejected);
+            }
+        }
+
+        Instant now = Instant.now();
+        List<Order> orders = new ArrayList<>(accepted.size());
+        for (int i : accepted) {
+            OrderRequest request = requests.get(i);
+            List<OrderItem> lines = request.getItems().stream()
+                    .map(item -> OrderItem.of(products.get(item.getProductId()), item.getQuantity()))
+                    .toList();
+            orders.add(new Order(request.getId(), lines, request.getStatus(), now));
+        }
+        Set<String> taken;
+        try {
+            taken = orderRepo.insertUnlessExists(orders);
+        } catch (RuntimeException ex) {
+            // which orders were saved is unknown; return all their stock rather than keep it for none
+            returnStock(accepted, demands);
+            throw ex;
+        }
+        // ids taken by an order inserted concurrently after the existence check
+        List<Integer> unsaved = accepted.stream()
+                .filter(i -> taken.contains(requests.get(i).getId()))
+                .toList();
+        returnStock(unsaved, demands);
+
+        List<InventoryLog> logs = new ArrayList<>();
+        int placed = 0;
+        for (int k = 0; k < accepted.size(); k++) {
+            int i = accepted.get(k);
+            Order order = orders.get(k);
+            if (taken.contains(order.getId())) {
+                results[i] = OrderResult.rejected(order.getId(), "Order already exists: " + order.getId());
+                continue;
+            }
+            order.getItems().forEach(line -> logs.add(InventoryLog.builder()
+                    .delta(-line.getQuantity())
+                    .sourceType("PlaceOrder")
+                    .sourceId(order.getId())
+                    .timestamp(now)
+                    .build()));
+            results[i] = OrderResult.placed(order.getId());
+            placed++;
+        }
+        inventoryLogWriter.submitAll(logs);
+
+        logger.info("Placed {} of {} orders in batch", placed, requests.size());
+        return List.of(results);
+    }
+
+    // puts back the stock taken for orders of a batch that were not saved
+    private void returnStock(List<Integer> orders, Map<Integer, Map<String, Integer>> demands) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        orders.forEach(i -> demands.get(i).forEach((productId, quantity) ->
+                quantities.merge(productId, quantity, Integer::sum)));
+        if (quantities.isEmpty()) {
+            return;
+        }
+        logger.warn("{} orders of batch not saved; returning {} to available stock", orders.size(), quantities);
+        productRepo.incrementStockBulk(quantities);
+        productCache.evictAll(quantities.keySet());
+    }
 
     public Order updateOrderStatus(String orderId, OrderStatus newStatus) {
-        Order existing = orderRepo.findById(orderId)
-                .orElseThrow(() -> new NoSuchElementException("Order not found: " + orderId));
         logger.debug("Updating order {} status → {}", orderId, newStatus);
-        Order updated = orderRepo.save(existing.withOrderStatus(newStatus));
+        Order updated = orderRepo.updateStatus(orderId, newStatus);
+        if (updated == null) {
+            throw new NoSuchElementException("Order not found: " + orderId);
+        }
         logger.info("Order {} status updated to {}", orderId, newStatus);
         return updated;
     }
@@ -99,31 +295,21 @@ public class ShopService {
     public Order updateOrderItemQuantity(String orderId,
                                          String productId,
                                          int newQuantity) {
-        Order existing = orderRepo.findById(orderId)
-                .orElseThrow(() -> new NoSuchElementException("Order not found: " + orderId));
-
-        List<OrderItem> updatedItems = existing.getItems().stream()
-                .map(item -> item.getProduct().getId().equals(productId)
-                        ? item.withQuantity(newQuantity)
-                        : item)
-                .toList();
-
-        boolean found = updatedItems.stream()
-                .anyMatch(item -> item.getProduct().getId().equals(productId));
-
-        if (!found) {
+        Order updated = orderRepo.updateItemQuantity(orderId, productId, newQuantity);
+        if (updated == null) {
+            // nothing matched: tell a missing order apart from a missing line
+            if (!orderRepo.existsById(orderId)) {
+                throw new NoSuchElementException("Order not found: " + orderId);
+            }
             logger.warn("Tried to update quantity for product {} in order {} but item not found",
                     productId, orderId);
             throw new NoSuchElementException(
                     "Product not found in order: " + productId
             );
         }
-
-        Order updatedOrder = existing.withItems(updatedItems);
-        Order saved = orderRepo.save(updatedOrder);
         logger.info("Order {} item {} quantity set to {}",
                 orderId, productId, newQuantity);
-        return saved;
+        return updated;
     }
 
     public Order cancelOrder(String orderId) {
@@ -131,21 +317,7 @@ public class ShopService {
         Order existing = orderRepo.findById(orderId)
                 .orElseThrow(() -> new NoSuchElementException("Order not found: " + orderId));
 
-        // Restock each item
-        for (OrderItem item : existing.getItems()) {
-            String pid = item.getProduct().getId();
-            Product product = productRepo.findById(pid)
-                    .orElseThrow(() -> new ProductNotFoundException(pid));
-            product.setStock(product.getStock() + item.getQuantity());
-            productRepo.save(product);
-            logger.debug("Restocked {} units of product {}", item.getQuantity(), pid);
-            inventoryLogRepo.save(InventoryLog.builder()
-                    .delta(item.getQuantity())
-                    .sourceType("CancelOrder")
-                    .sourceId(orderId)
-                    .timestamp(Instant.now())
-                    .build());
-        }
+        restock(existing, "CancelOrder");
 
         // Mark order as canceled
         Order canceled = existing.withOrderStatus(OrderStatus.CANCELED);
@@ -170,19 +342,7 @@ public class ShopService {
         }
 
         // 3) Restock products
-        for (OrderItem item : existing.getItems()) {
-            String productId = item.getProduct().getId();
-            Product product = productRepo.findById(productId)
-                    .orElseThrow(() -> new ProductNotFoundException(productId));
-            product.setStock(product.getStock() + item.getQuantity());
-            productRepo.save(product);
-            inventoryLogRepo.save(InventoryLog.builder()
-                    .delta(item.getQuantity())
-                    .sourceType("RefundOrder")
-                    .sourceId(orderId)
-                    .timestamp(Instant.now())
-                    .build());
-        }
+        restock(existing, "RefundOrder");
 
         // 4) Mark refunded and save
         Order refunded = existing.withOrderStatus(OrderStatus.REFUNDED);
@@ -194,16 +354,33 @@ public class ShopService {
         return saved;
     }
 
+    /**
+     * Puts the units of every line of an order back on hand with one bulk write. Products
+     * deleted since the order was placed are skipped.
+     */
+    private void restock(Order order, String sourceType) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        order.getItems().forEach(item -> quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum));
+        productRepo.incrementStockBulk(quantities);
+        productCache.evictAll(quantities.keySet());
+        logger.debug("Restocked {} for order {}", quantities, order.getId());
+        Instant now = Instant.now();
+        inventoryLogWriter.submitAll(order.getItems().stream()
+                .map(item -> InventoryLog.builder()
+                        .delta(item.getQuantity())
+                        .sourceType(sourceType)
+                        .sourceId(order.getId())
+                        .timestamp(now)
+                        .build())
+                .toList());
+    }
+
     // STOCK MANAGEMENT
 
     public void goodsIn(String productId, int amount) {
-        Product product = productRepo.findById(productId)
-                .orElseThrow(() -> new ProductNotFoundException(productId));
-        int newStock = product.getStock() + amount;
-        product.setStock(newStock);
         logger.info("Increasing stock for product {} by {}", productId, amount);
-        productRepo.save(product);
-        inventoryLogRepo.save(InventoryLog.builder()
+        incrementStock(productId, amount);
+        inventoryLogWriter.submit(InventoryLog.builder()
                 .delta(amount)
                 .sourceType("GoodsIn")
                 .sourceId(productId)
@@ -212,18 +389,9 @@ public class ShopService {
     }
 
     public void goodsOut(String productId, int amount) {
-        Product product = productRepo.findById(productId)
-                .orElseThrow(() -> new ProductNotFoundException(productId));
-        int newStock = product.getStock() - amount;
-        if (newStock < 0) {
-            logger.error("Cannot remove {} units from product {} – only {} in stock",
-                    amount, productId, product.getStock());
-            throw new InsufficientStockException("Insufficient stock for product: " + productId);
-        }
-        product.setStock(newStock);
         logger.info("Decreasing stock for product {} by {}", productId, amount);
-        productRepo.save(product);
-        inventoryLogRepo.save(InventoryLog.builder()
+        decrementStock(productId, amount);
+        inventoryLogWriter.submit(InventoryLog.builder()
                 .delta(-amount)
                 .sourceType("GoodsOut")
                 .sourceId(productId)
@@ -233,12 +401,16 @@ public class ShopService {
 
     public void releaseReservedStock(String productId, int amount) {
         logger.info("Releasing {} units back to stock for product {}", amount, productId);
-        Product product = productRepo.findById(productId)
-                .orElseThrow(() -> new ProductNotFoundException(productId));
-
-        product.setStock(product.getStock() + amount);
-        productRepo.save(product);
-        inventoryLogRepo.save(InventoryLog.builder()
+        requirePositive(amount);
+        boolean applied = productRepo.releaseReserved(productId, amount);
+        productCache.evict(productId);
+        if (!applied) {
+            if (!productRepo.existsById(productId)) {
+                throw new ProductNotFoundException(productId);
+            }
+            throw new InsufficientStockException("Fewer than " + amount + " units reserved for product: " + productId);
+        }
+        inventoryLogWriter.submit(InventoryLog.builder()
                 .delta(amount)
                 .sourceType("ReleaseReservedStock")
                 .sourceId(productId)
@@ -246,46 +418,169 @@ public class ShopService {
                 .build());
     }
 
+    /**
+     * Spreads the available stock of a product over {@code shards} counters so that concurrent
+     * orders for it do not all write the same document; {@code 0} turns sharding off again.
+     * Meant for the few products that sell in bursts, as every read of a sharded product also
+     * reads its shards.
+     */
+    public Product configureStockShards(String productId, int shards) {
+        if (shards < 0 || shards > MAX_STOCK_SHARDS) {
+            throw new IllegalArgumentException(
+                    "Stock shards must be between 0 and " + MAX_STOCK_SHARDS + ", was " + shards);
+        }
+        if (!productRepo.configureStockShards(productId, shards)) {
+            throw new ProductNotFoundException(productId);
+        }
+        productCache.evict(productId);
+        logger.info("Stock of product {} now kept in {} shards", productId, shards);
+        return productRepo.findById(productId)
+                .orElseThrow(() -> new ProductNotFoundException(productId));
+    }
+
     // CART OPERATIONS
 
     public Cart reserveStockForCart(String cartId, List<CartItem> items) {
         logger.info("Reserving stock for cart {} ({} items)", cartId, items.size());
-        // Decrement stock for each item
+        // Validate every line, then decrement all stock in one bulk write
+        Map<String, Integer> quantities = new LinkedHashMap<>();
         for (CartItem item : items) {
-            String productId = item.getProductId();
-            Product product = productRepo.findById(productId)
-                    .orElseThrow(() -> new ProductNotFoundException(productId));
-
-            int remaining = product.getStock() - item.getQuantity();
-            if (remaining < 0) {
-                logger.warn("Insufficient stock for reservation: product {} needed {}, have {}",
-                        productId, item.getQuantity(), product.getStock());
-                throw new IllegalStateException("Insufficient stock for product: " + productId);
-            }
-            product.setStock(remaining);
-            productRepo.save(product);
-            inventoryLogRepo.save(InventoryLog.builder()
-                    .delta(-item.getQuantity())
-                    .sourceType("ReserveCart")
-                    .sourceId(cartId)
-                    .timestamp(Instant.now())
-                    .build());
+            requirePositive(item.getQuantity());
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
         }
+        reserveStockBatch(quantities);
+        inventoryLogWriter.submitAll(items.stream()
+                .map(item -> InventoryLog.builder()
+                        .delta(-item.getQuantity())
+                        .sourceType("ReserveCart")
+                        .sourceId(cartId)
+                        .timestamp(Instant.now())
+                        .build())
+                .toList());
 
         // Build and save the shopping cart
-        Cart cart = new Cart(cartId, items, Instant.now());
+        Instant now = Instant.now();
+        Cart cart = new Cart(cartId, items, now, cartExpirySweeper.expiryOf(now));
         Cart saved = cartRepo.save(cart);
-        logger.info("Stock reserved for cart {}; created at {}", saved.getId(), saved.getCreatedAt());
+        cartExpirySweeper.schedule(saved);
+        logger.info("Stock reserved for cart {}; created at {}, expires at {}",
+                saved.getId(), saved.getCreatedAt(), saved.getExpiresAt());
         return saved;
     }
 
+    /**
+     * Turns a reserved cart into an order with the same id. The stock was already set aside
+     * when the cart was reserved, so the lines are priced from one batched product read and
+     * the reserved units are taken off the on-hand and reserved counts in one bulk write.
+     * The units are committed before the order is inserted, so an order is never visible without
+     * its stock. A reservation released in the meantime is taken from the available stock; if
+     * that is short, the checkout fails with {@link InsufficientStockException}. If the lines or
+     * the commit fail the cart is put back; if the order cannot be inserted after the commit,
+     * the units are returned to the available stock.
+     */
+    public Order checkoutCart(String cartId) {
+        logger.info("Checking out cart {}", cartId);
+        // claiming the cart by removing it keeps the expiry sweeper from releasing its stock
+        Cart cart = cartRepo.remove(cartId);
+        if (cart == null) {
+            throw new CartNotFoundException(cartId);
+        }
+        cartExpirySweeper.cancel(cartId);
+        List<OrderItem> lines;
+        try {
+            Map<String, Product> products = productCache.findAllById(cart.getItems().stream()
+                    .map(CartItem::getProductId)
+                    .collect(Collectors.toSet()));
+            lines = cart.getItems().stream()
+                    .map(item -> {
+                        Product product = products.get(item.getProductId());
+                        if (product == null) {
+                            throw new ProductNotFoundException(item.getProductId());
+                        }
+                        return OrderItem.of(product, item.getQuantity());
+                    })
+                    .toList();
+            commitReservation(cart);
+        } catch (RuntimeException ex) {
+            cartRepo.save(cart);
+            cartExpirySweeper.schedule(cart);
+            throw ex;
+        }
+        Order order;
+        try {
+            order = orderRepo.insert(new Order(cartId, lines, OrderStatus.PROCESSING, Instant.now()));
+        } catch (RuntimeException ex) {
+            returnCheckedOutStock(cart);
+            throw ex;
+        }
+        logger.info("Cart {} checked out as order {}", cartId, order.getId());
+        return order;
+    }
+
+    private void commitReservation(Cart cart) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        cart.getItems().forEach(item -> quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum));
+        Set<String> unreserved = productRepo.commitReservedBulk(quantities);
+        productCache.evictAll(quantities.keySet());
+        if (unreserved.isEmpty()) {
+            return;
+        }
+        // the reservation was released by hand in the meantime: sell from the available stock instead
+        Map<String, Integer> rest = new LinkedHashMap<>(quantities);
+        rest.keySet().retainAll(unreserved);
+        Set<String> oversold = productRepo.decrementStockBulk(rest);
+        if (!oversold.isEmpty()) {
+            // put back what was taken; the cart is restored and holds its reservation again
+            Map<String, Integer> committed = new LinkedHashMap<>(quantities);
+            committed.keySet().removeAll(unreserved);
+            Map<String, Integer> taken = new LinkedHashMap<>(rest);
+            taken.keySet().removeAll(oversold);
+            productRepo.restoreReservedBulk(committed);
+            productRepo.incrementStockBulk(taken);
+            productCache.evictAll(quantities.keySet());
+            throw new InsufficientStockException("Insufficient stock for product: " + oversold.iterator().next());
+        }
+        logger.warn("Reservation of cart {} no longer held for products {}; took them from available stock",
+                cart.getId(), unreserved);
+        // the release logged these units as returned; log taking them again
+        inventoryLogWriter.submitAll(rest.entrySet().stream()
+                .map(line -> InventoryLog.builder()
+                        .delta(-line.getValue())
+                        .sourceType("CheckoutUnreserved")
+                        .sourceId(cart.getId())
+                        .timestamp(Instant.now())
+                        .build())
+                .toList());
+    }
+
+    private void returnCheckedOutStock(Cart cart) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        cart.getItems().forEach(item -> quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum));
+        logger.warn("Order for cart {} could not be placed; returning {} to available stock", cart.getId(), quantities);
+        productRepo.incrementStockBulk(quantities);
+        productCache.evictAll(quantities.keySet());
+        inventoryLogWriter.submitAll(cart.getItems().stream()
+                .map(item -> InventoryLog.builder()
+                        .delta(item.getQuantity())
+                        .sourceType("CheckoutFailed")
+                        .sourceId(cart.getId())
+                        .timestamp(Instant.now())
+                        .build())
+                .toList());
+    }
+
     public BigDecimal calculateCartTotal(List<CartItem> items) {
         logger.debug("Calculating cart total for {} items", items.size());
 
+        Map<String, Product> products = productCache.findAllById(items.stream()
+                .map(CartItem::getProductId)
+                .collect(Collectors.toSet()));
         BigDecimal total = items.stream()
                 .map(item -> {
-                    Product product = productRepo.findById(item.getProductId())
-                            .orElseThrow(() -> new ProductNotFoundException(item.getProductId()));
+                    Product product = products.get(item.getProductId());
+                    if (product == null) {
+                        throw new ProductNotFoundException(item.getProductId());
+                    }
                     BigDecimal lineTotal = product.getPrice()
                             .multiply(BigDecimal.valueOf(item.getQuantity()));
                     logger.debug("Line item: productId={}, price={}, quantity={}, lineTotal={}",
@@ -304,16 +599,304 @@ public class ShopService {
     // PRODUCT SEARCH
 
     public List<Product> searchProducts(String keyword) {
+        return searchProducts(keyword, Pageable.unpaged()).getContent();
+    }
+
+    public Page<Product> searchProducts(String keyword, Pageable pageable) {
         String kw = keyword.trim();
         logger.info("Searching products with keyword='{}'", kw);
 
-        List<Product> results = productRepo
-                .findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase(kw, kw, kw, kw, kw);
+        Page<String> ids = productSearchIndex.search(kw, pageable);
+        Map<String, Product> products = productCache.findAllById(ids.getContent());
+        List<Product> content = ids.getContent().stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .toList();
+        Page<Product> results = new PageImpl<>(content, pageable, ids.getTotalElements());
 
-        logger.info("Found {} products matching '{}'", results.size(), kw);
+        logger.info("Found {} products matching '{}'", results.getTotalElements(), kw);
         return results;
     }
 
+    // PRODUCT FILTERING
+
+    public List<Product> filterProducts(Map<Facet, List<String>> selection) {
+        List<String> ids = productFacetIndex.filter(selection);
+        Map<String, Product> products = productCache.findAllById(ids);
+        logger.debug("Facet selection {} matched {} products", selection, ids.size());
+        return ids.stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    public Map<Facet, Map<String, Integer>> countFacets(Map<Facet, List<String>> selection) {
+        return productFacetIndex.counts(selection);
+    }
+
+    // STOCK MUTATIONS
+
+    /**
+     * Removes {@code quantity} units from a product, failing instead of letting the stock go
+     * negative.
+     */
+    private void decrementStock(String productId, int quantity) {
+        requirePositive(quantity);
+        decrementStockBatch(Map.of(productId, quantity));
+    }
+
+    /**
+     * Checks all lines against the stock and removes it, together with the stock writes of
+     * concurrent requests (see {@link #applyStockGroup}). If any line fails, no stock is
+     * changed. Returns the products as read before the write.
+     */
+    private Map<String, Product> decrementStockBatch(Map<String, Integer> quantities) {
+        return writeStock(new StockRequest(StockRequest.Kind.TAKE, quantities));
+    }
+
+    /**
+     * Like {@link #decrementStockBatch}, but moves the units to the reserved count instead
+     * of removing them.
+     */
+    private Map<String, Product> reserveStockBatch(Map<String, Integer> quantities) {
+        return writeStock(new StockRequest(StockRequest.Kind.RESERVE, quantities));
+    }
+
+    private Map<String, Product> writeStock(StockRequest request) {
+        if (request.quantities.isEmpty()) {
+            // an order or cart without lines takes no stock
+            return Map.of();
+        }
+        if (request.quantities.keySet().stream().anyMatch(productRepo::hasShardedStock)) {
+            // a sharded product takes each request from a random shard; the combined demand of a
+            // group would outgrow a shard and fall back to the product document
+            applyStockGroup(List.of(request));
+        } else {
+            String first = Collections.min(request.quantities.keySet());
+            stockWrites.get(Math.floorMod(first.hashCode(), STOCK_WRITE_STRIPES)).submit(request);
+        }
+        if (request.failure != null) {
+            throw request.failure;
+        }
+        return request.products;
+    }
+
+    /**
+     * Applies the stock requests of concurrent callers with one product read and one bulk
+     * write per kind of request, in which each product is updated once for the combined
+     * demand of the group. Requests are checked in arrival order against what the ones before
+     * them left, so one that asks for too much fails on its own. If a concurrent writer takes
+     * a product between the read and the write, the requests needing it fail and the units of
+     * their other products are put back. If a write throws, the writes already applied for the
+     * group are undone before the group fails.
+     */
+    private void applyStockGroup(List<StockRequest> group) {
+        // the leader writes for every request of the group; count the writes towards each of them
+        List<MongoRoundTrips.Recording> recordings = group.stream()
+                .map(request -> request.recording)
+                .filter(Objects::nonNull)
+                .toList();
+        try (MongoRoundTrips.Recording ignored = recordings.isEmpty() ? null : MongoRoundTrips.start(recordings)) {
+            applyStockRequests(group);
+        }
+    }
+
+    private void applyStockRequests(List<StockRequest> group) {
+        Map<String, Integer> demand = new LinkedHashMap<>();
+        group.forEach(request -> request.quantities.forEach((productId, quantity) ->
+                demand.merge(productId, quantity, Integer::sum)));
+        Map<String, Product> products = readForStockCheck(demand);
+
+        Map<String, Integer> remaining = new HashMap<>();
+        Map<StockRequest.Kind, Map<String, Integer>> totals = new EnumMap<>(StockRequest.Kind.class);
+        List<StockRequest> accepted = new ArrayList<>();
+        for (StockRequest request : group) {
+            request.failure = checkStock(request.quantities, products, remaining);
+            if (request.failure == null) {
+                request.products = products;
+                accepted.add(request);
+                request.quantities.forEach((productId, quantity) -> totals
+                        .computeIfAbsent(request.kind, kind -> new LinkedHashMap<>())
+                        .merge(productId, quantity, Integer::sum));
+            }
+        }
+        if (totals.isEmpty()) {
+            return;
+        }
+
+        Map<StockRequest.Kind, Set<String>> rejected = new EnumMap<>(StockRequest.Kind.class);
+        Set<String> written = new HashSet<>();
+        totals.values().forEach(quantities -> written.addAll(quantities.keySet()));
+        try {
+            totals.forEach((kind, quantities) -> rejected.put(kind, kind == StockRequest.Kind.TAKE
+                    ? productRepo.decrementStockBulk(quantities)
+                    : productRepo.reserveStockBulk(quantities)));
+        } catch (RuntimeException ex) {
+            rejected.forEach((kind, lost) -> {
+                Map<String, Integer> applied = new LinkedHashMap<>(totals.get(kind));
+                applied.keySet().removeAll(lost);
+                putBack(kind, applied);
+            });
+            throw ex;
+        } finally {
+            productCache.evictAll(written);
+        }
+        if (rejected.values().stream().allMatch(Set::isEmpty)) {
+            return;
+        }
 
+        // a concurrent writer got there between the read and the write: put back what was applied for the losers
+        Map<StockRequest.Kind, Map<String, Integer>> putBack = new EnumMap<>(StockRequest.Kind.class);
+        for (StockRequest request : accepted) {
+            Set<String> lost = rejected.get(request.kind);
+            String first = request.quantities.keySet().stream().filter(lost::contains).findFirst().orElse(null);
+            if (first == null) {
+                continue;
+            }
+            request.failure = new InsufficientStockException("Insufficient stock for product: " + first);
+            request.products = null;
+            request.quantities.forEach((productId, quantity) -> {
+                if (!lost.contains(productId)) {
+                    putBack.computeIfAbsent(request.kind, kind -> new LinkedHashMap<>())
+                            .merge(productId, quantity, Integer::sum);
+                }
+            });
+        }
+        putBack.forEach(this::putBack);
+        logger.warn("Stock for products {} changed concurrently; requests needing them rolled back", rejected);
+    }
 
+    private void putBack(StockRequest.Kind kind, Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        if (kind == StockRequest.Kind.TAKE) {
+            productRepo.incrementStockBulk(quantities);
+        } else {
+            productRepo.releaseReservedBulk(quantities);
+        }
+    }
+
+    /**
+     * Takes one request's demand out of {@code remaining} if all of it can be served.
+     *
+     * @return why the request cannot be served, or {@code null} if it was allocated
+     */
+    private static RuntimeException checkStock(Map<String, Integer> quantities,
+                                               Map<String, Product> products,
+                                               Map<String, Integer> remaining) {
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            String productId = line.getKey();
+            Product product = products.get(productId);
+            if (product == null) {
+                return new ProductNotFoundException(productId);
+            }
+            int available = remaining.getOrDefault(productId, product.availableStock());
+            if (available < line.getValue()) {
+                logger.error("Insufficient stock (available={}, need={}) for product {}",
+                        available, line.getValue(), productId);
+                return new InsufficientStockException("Insufficient stock for product: " + productId);
+            }
+        }
+        quantities.forEach((productId, quantity) -> remaining.put(productId,
+                remaining.getOrDefault(productId, products.get(productId).availableStock()) - quantity));
+        return null;
+    }
+
+    /**
+     * Reads the products through the cache. A cached product may be stale, so the ones that
+     * look missing or short for the given demand are re-read before anyone is rejected.
+     */
+    private Map<String, Product> readForStockCheck(Map<String, Integer> demand) {
+        Map<String, Product> products = new HashMap<>(productCache.findAllById(demand.keySet()));
+        List<String> suspects = demand.entrySet().stream()
+                .filter(e -> !products.containsKey(e.getKey())
+                        || products.get(e.getKey()).availableStock() < e.getValue())
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!suspects.isEmpty()) {
+            products.putAll(productCache.reload(suspects));
+        }
+        return products;
+    }
+
+    private void incrementStock(String productId, int quantity) {
+        requirePositive(quantity);
+        boolean applied = productRepo.incrementStock(productId, quantity);
+        productCache.evict(productId);
+        if (!applied) {
+            throw new ProductNotFoundException(productId);
+        }
+    }
+
+    private static String validate(OrderRequest request) {
+        if (request.getId() == null || request.getId().isBlank()) {
+            return "Order id is required";
+        }
+        if (request.getStatus() == null) {
+            return "Order status is required";
+        }
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            return "Order has no items";
+        }
+        for (OrderItem item : request.getItems()) {
+            if (item.getProductId() == null) {
+                return "Order line without product id";
+            }
+            if (item.getQuantity() <= 0) {
+                return "Quantity must be positive, was " + item.getQuantity();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes the demand of one order out of {@code remaining} if all of it can be served.
+     *
+     * @return why the order cannot be served, or {@code null} if it was allocated
+     */
+    private static String allocate(Map<String, Integer> demand,
+                                   Map<String, Product> products,
+                                   Map<String, Integer> remaining,
+                                   Set<String> contended) {
+        for (Map.Entry<String, Integer> line : demand.entrySet()) {
+            String productId = line.getKey();
+            if (contended.contains(productId)) {
+                return "Stock for product changed concurrently: " + productId;
+            }
+            Product product = products.get(productId);
+            if (product == null) {
+                return "Product not found: " + productId;
+            }
+            if (remaining.getOrDefault(productId, product.availableStock()) < line.getValue()) {
+                return "Insufficient stock for product: " + productId;
+            }
+        }
+        demand.forEach((productId, quantity) -> remaining.put(productId,
+                remaining.getOrDefault(productId, products.get(productId).availableStock()) - quantity));
+        return null;
+    }
+
+    private static void requirePositive(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive, was " + quantity);
+        }
+    }
+
+    private static final class StockRequest {
+        enum Kind { TAKE, RESERVE }
+
+        final Kind kind;
+        final Map<String, Integer> quantities;
+        // round trips of the caller, which may be sent by another caller leading the group
+        final MongoRoundTrips.Recording recording = MongoRoundTrips.current();
+        // outcome, set by whichever caller applies the group
+        Map<String, Product> products;
+        RuntimeException failure;
+
+        StockRequest(Kind kind, Map<String, Integer> quantities) {
+            this.kind = kind;
+            this.quantities = quantities;
+        }
+    }
 }
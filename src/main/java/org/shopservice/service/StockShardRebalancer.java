@@ -0,0 +1,62 @@
+package org.shopservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.shopservice.config.StockShardProperties;
+import org.shopservice.repository.ProductRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically evens out the stock shards of sharded products.
+ * <p>
+ * Orders take from a random shard, so shards drain unevenly, and goods returned to a product
+ * whose shards are not known yet land on the product document. Either leaves orders falling
+ * back to slower multi-counter takes until the units are spread again.
+ */
+@Component
+public class StockShardRebalancer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockShardRebalancer.class);
+
+    private final ProductRepo productRepo;
+    private final StockShardProperties properties;
+
+    private Thread worker;
+    private volatile boolean running;
+
+    public StockShardRebalancer(ProductRepo productRepo, StockShardProperties properties) {
+        this.productRepo = productRepo;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        worker = new Thread(this::run, "stock-shard-rebalancer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(properties.rebalanceInterval().toMillis());
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(properties.rebalanceInterval().toMillis());
+                productRepo.rebalanceStockShards();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                logger.error("Stock shard rebalance failed", ex);
+            }
+        }
+    }
+}
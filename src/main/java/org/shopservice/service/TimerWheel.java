@@ -0,0 +1,82 @@
+package org.shopservice.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashed timer wheel: a ring of slots, each holding the keys whose deadline falls on a tick
+ * that maps to it. Scheduling and cancelling are O(1); advancing only visits the slots of
+ * the ticks that passed, and in each slot skips the keys that are due on a later rotation.
+ * Keys expire up to one tick after their deadline.
+ */
+final class TimerWheel<K> {
+
+    private final long tickMillis;
+    private final List<Map<K, Long>> slots;
+    // key -> slot it sits in, to cancel or reschedule without a search
+    private final Map<K, Integer> slotOf = new HashMap<>();
+    private long currentTick;
+
+    TimerWheel(Duration tick, int size, Instant start) {
+        if (tick.toMillis() <= 0 || size <= 0) {
+            throw new IllegalArgumentException("Tick and size must be positive");
+        }
+        this.tickMillis = tick.toMillis();
+        this.slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(new HashMap<>());
+        }
+        this.currentTick = start.toEpochMilli() / tickMillis;
+    }
+
+    /**
+     * Schedules {@code key} to expire at {@code deadline}, replacing an earlier schedule.
+     * A deadline in the past expires on the next advance.
+     */
+    synchronized void schedule(K key, Instant deadline) {
+        cancel(key);
+        long deadlineMillis = deadline.toEpochMilli();
+        long tick = Math.max(Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis), currentTick + 1);
+        int slot = (int) (tick % slots.size());
+        slots.get(slot).put(key, deadlineMillis);
+        slotOf.put(key, slot);
+    }
+
+    synchronized boolean cancel(K key) {
+        Integer slot = slotOf.remove(key);
+        return slot != null && slots.get(slot).remove(key) != null;
+    }
+
+    synchronized int size() {
+        return slotOf.size();
+    }
+
+    /**
+     * Moves the wheel to {@code now} and returns the keys whose deadline has passed.
+     */
+    synchronized List<K> advance(Instant now) {
+        long nowMillis = now.toEpochMilli();
+        long targetTick = nowMillis / tickMillis;
+        List<K> expired = new ArrayList<>();
+        // after a full rotation every slot has been visited once; more ticks add nothing
+        long firstTick = Math.max(currentTick + 1, targetTick - slots.size() + 1);
+        for (long tick = firstTick; tick <= targetTick; tick++) {
+            Iterator<Map.Entry<K, Long>> entries = slots.get((int) (tick % slots.size())).entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<K, Long> entry = entries.next();
+                if (entry.getValue() <= nowMillis) {
+                    expired.add(entry.getKey());
+                    slotOf.remove(entry.getKey());
+                    entries.remove();
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, targetTick);
+        return expired;
+    }
+}
@@ -0,0 +1,41 @@
+package org.shopservice;
+
+import org.shopservice.config.MongoRoundTrips;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Assertions on the number of Mongo commands a piece of code sends on the test thread, to fail
+ * tests when a change adds a round trip per item:
+ * <pre>
+ *     Order order = DbRoundTrips.assertAtMost(3, () -> shopService.placeOrder(id, fiftyLines, PROCESSING));
+ * </pre>
+ */
+public final class DbRoundTrips {
+
+    private DbRoundTrips() {
+    }
+
+    /**
+     * Runs {@code action} and fails if it sent more than {@code max} commands.
+     *
+     * @return what {@code action} returned
+     */
+    public static <T> T assertAtMost(int max, Supplier<T> action) {
+        try (MongoRoundTrips.Recording recording = MongoRoundTrips.start()) {
+            T result = action.get();
+            assertTrue(recording.count() <= max, () -> "Expected at most " + max + " database commands but got "
+                    + recording.count() + ": " + recording.commands());
+            return result;
+        }
+    }
+
+    public static void assertAtMost(int max, Runnable action) {
+        assertAtMost(max, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
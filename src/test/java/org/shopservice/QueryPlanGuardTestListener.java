@@ -0,0 +1,48 @@
+package org.shopservice;
+
+import org.shopservice.config.QueryPlanGuard;
+import org.springframework.test.context.TestContext;
+import org.springframework.test.context.support.AbstractTestExecutionListener;
+
+import java.util.List;
+
+/**
+ * Fails every Spring test during which a query scanned a whole collection, as recorded by the
+ * {@link QueryPlanGuard}. Queries sent while the context started up are not held against the
+ * test. Registered for all tests in {@code META-INF/spring.factories}.
+ */
+public class QueryPlanGuardTestListener extends AbstractTestExecutionListener {
+
+    @Override
+    public int getOrder() {
+        return LOWEST_PRECEDENCE;
+    }
+
+    @Override
+    public void beforeTestMethod(TestContext testContext) {
+        QueryPlanGuard guard = guard(testContext);
+        if (guard != null) {
+            guard.clear();
+        }
+    }
+
+    @Override
+    public void afterTestMethod(TestContext testContext) {
+        QueryPlanGuard guard = guard(testContext);
+        if (guard == null) {
+            return;
+        }
+        List<String> violations = guard.violations();
+        guard.clear();
+        if (!violations.isEmpty()) {
+            throw new AssertionError("Queries scanned a whole collection; declare an index for them:\n  "
+                    + String.join("\n  ", violations));
+        }
+    }
+
+    private static QueryPlanGuard guard(TestContext testContext) {
+        return testContext.hasApplicationContext()
+                ? testContext.getApplicationContext().getBeanProvider(QueryPlanGuard.class).getIfAvailable()
+                : null;
+    }
+}
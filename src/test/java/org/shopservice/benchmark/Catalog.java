@@ -0,0 +1,78 @@
+package org.shopservice.benchmark;
+
+import org.shopservice.model.CartItem;
+import org.shopservice.model.OrderItem;
+import org.shopservice.model.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generated product catalog and order lines for the JMH benchmarks. Generation is seeded, so
+ * every run and every fork works on the same data.
+ */
+final class Catalog {
+
+    // enough units that no benchmark iteration runs out
+    static final int STOCK = 1_000_000_000;
+    static final String SEARCH_KEYWORD = "linen shirt";
+
+    private static final String[] NAMES = {"shirt", "sneaker", "jacket", "hoodie", "jeans", "scarf", "cap", "dress"};
+    private static final String[] MATERIALS = {"linen", "cotton", "wool", "denim", "leather", "fleece"};
+    private static final String[] BRANDS = {"Acme", "Kicks", "Northwind", "Umbra", "Tern", "Halden"};
+    private static final String[] COLORS = {"red", "blue", "black", "white", "green", "grey"};
+    private static final String[] SIZES = {"XS", "S", "M", "L", "XL"};
+
+    private Catalog() {
+    }
+
+    static List<Product> products(int size) {
+        Random random = new Random(42);
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String material = pick(random, MATERIALS);
+            String name = pick(random, NAMES);
+            products.add(new Product(id(i), material + " " + name, pick(random, BRANDS),
+                    "A " + material + " " + name + " for every day", pick(random, COLORS), pick(random, SIZES),
+                    BigDecimal.valueOf(500 + random.nextInt(20_000), 2), STOCK));
+        }
+        return products;
+    }
+
+    /**
+     * {@code lines} order lines for distinct products spread over the catalog.
+     */
+    static List<OrderItem> orderLines(int catalogSize, int lines) {
+        return productIds(catalogSize, lines).stream()
+                .map(id -> new OrderItem(id, null, null, 1))
+                .toList();
+    }
+
+    static List<CartItem> cartLines(int catalogSize, int lines) {
+        return productIds(catalogSize, lines).stream()
+                .map(id -> new CartItem(id, 1))
+                .toList();
+    }
+
+    private static List<String> productIds(int catalogSize, int lines) {
+        if (lines > catalogSize) {
+            throw new IllegalArgumentException("More lines than products: " + lines + " > " + catalogSize);
+        }
+        List<String> ids = new ArrayList<>(lines);
+        int step = catalogSize / lines;
+        for (int i = 0; i < lines; i++) {
+            ids.add(id(i * step));
+        }
+        return ids;
+    }
+
+    private static String id(int i) {
+        return "P" + i;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,133 @@
+package org.shopservice.benchmark;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.shopservice.ShopServiceApplication;
+import org.shopservice.model.Order;
+import org.shopservice.model.enums.OrderStatus;
+import org.shopservice.repository.OrderRepo;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Requests per second and latency of {@code GET /orders/{id}} with every Mongo command
+ * delayed to simulate a slow database, once on Tomcat's platform thread pool and once on
+ * virtual threads. Both runs share the same concurrency limit and Mongo pool size, so the
+ * difference is the 200 request threads Tomcat has by default. Excluded from the default
+ * build; run it with {@code mvn test -Pbenchmark -Dtest=ExecutionModeBenchmarkTest},
+ * optionally with {@code -Dbenchmark.clients}, {@code -Dbenchmark.seconds},
+ * {@code -Dbenchmark.dbLatencyMs} and {@code -Dbenchmark.pool}.
+ */
+@Tag("benchmark")
+class ExecutionModeBenchmarkTest {
+
+    private static final String ORDER_ID = "benchmark-order";
+
+    @Test
+    void getOrder_throughputByExecutionMode() throws Exception {
+        int clients = Integer.getInteger("benchmark.clients", 800);
+        int seconds = Integer.getInteger("benchmark.seconds", 10);
+        int dbLatencyMs = Integer.getInteger("benchmark.dbLatencyMs", 50);
+        int pool = Integer.getInteger("benchmark.pool", 500);
+
+        List<String> rows = new ArrayList<>();
+        for (String mode : List.of("platform", "virtual")) {
+            try (ConfigurableApplicationContext context = start(mode, pool, dbLatencyMs)) {
+                context.getBean(OrderRepo.class).save(new Order(ORDER_ID, List.of(), OrderStatus.PROCESSING, Instant.now()));
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                Result result = run(URI.create("http://localhost:" + port + "/orders/" + ORDER_ID), clients, seconds);
+                assertTrue(result.ok() > 0, "no request succeeded in " + mode + " mode");
+                rows.add(String.format("%8s | %10.0f | %8.1f | %8.1f | %8d", mode, result.ok() / (double) seconds,
+                        result.latencies().percentileMillis(50), result.latencies().percentileMillis(99),
+                        result.rejected()));
+            }
+        }
+
+        System.out.printf("%nGET /orders/{id}, %d clients, %d ms per Mongo command, pool and limit %d, %d s per run%n",
+                clients, dbLatencyMs, pool, seconds);
+        System.out.println("    mode | requests/s | p50 (ms) | p99 (ms) |      503");
+        rows.forEach(System.out::println);
+    }
+
+    private static ConfigurableApplicationContext start(String mode, int pool, int dbLatencyMs) {
+        CommandListener slowDatabase = new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                try {
+                    Thread.sleep(dbLatencyMs);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        // registered programmatically: a @Configuration here would be picked up by every other test context
+        return new SpringApplicationBuilder(ShopServiceApplication.class)
+                .initializers(context -> ((GenericApplicationContext) context).registerBean(
+                        MongoClientSettingsBuilderCustomizer.class, () -> builder -> builder
+                                .addCommandListener(slowDatabase)
+                                .applyToConnectionPoolSettings(settings -> settings.maxSize(pool))))
+                .properties(
+                        "server.port=0",
+                        "spring.data.mongodb.database=shop-service-benchmark",
+                        "shop.execution.mode=" + mode,
+                        "shop.execution.max-concurrent-requests=" + pool,
+                        "logging.level.org.shopservice=WARN")
+                .run();
+    }
+
+    private static Result run(URI uri, int clients, int seconds) throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+        Latencies latencies = new Latencies();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                executor.submit(() -> {
+                    start.await();
+                    while (System.nanoTime() < deadline) {
+                        long sent = System.nanoTime();
+                        int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        if (status == 200) {
+                            latencies.record(System.nanoTime() - sent);
+                        } else if (status == 503) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+        return new Result(latencies, rejected.get());
+    }
+
+    private record Result(Latencies latencies, int rejected) {
+
+        int ok() {
+            return latencies.count();
+        }
+    }
+}
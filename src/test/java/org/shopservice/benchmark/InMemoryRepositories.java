@@ -0,0 +1,116 @@
+package org.shopservice.benchmark;
+
+import org.shopservice.model.InventoryLog;
+import org.shopservice.model.Order;
+import org.shopservice.model.Product;
+import org.shopservice.repository.CartRepo;
+import org.shopservice.repository.InventoryLogRepo;
+import org.shopservice.repository.OrderRepo;
+import org.shopservice.repository.ProductRepo;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map-backed stand-ins for the repositories, implementing only the methods the benchmarked
+ * paths call, so a benchmark measures the service's own CPU and allocation cost. Any other
+ * method throws.
+ */
+final class InMemoryRepositories {
+
+    final Map<String, Product> products = new ConcurrentHashMap<>();
+    final Map<String, Order> orders = new ConcurrentHashMap<>();
+
+    final ProductRepo productRepo = proxy(ProductRepo.class, (proxy, method, args) -> switch (method.getName()) {
+        case "findById" -> Optional.ofNullable(products.get((String) args[0]));
+        case "findAllById" -> {
+            List<Product> found = new ArrayList<>();
+            ((Iterable<?>) args[0]).forEach(id -> {
+                Product product = products.get((String) id);
+                if (product != null) {
+                    found.add(product);
+                }
+            });
+            yield found;
+        }
+        case "findAll" -> List.copyOf(products.values());
+        // the catalog keeps all stock on the product documents
+        case "hasShardedStock" -> false;
+        case "decrementStockBulk" -> take(cast(args[0]));
+        case "incrementStockBulk" -> {
+            this.<Map<String, Integer>>cast(args[0]).forEach((id, quantity) ->
+                    products.computeIfPresent(id, (key, product) -> {
+                        product.setStock(product.getStock() + quantity);
+                        return product;
+                    }));
+            yield null;
+        }
+        default -> unsupported(ProductRepo.class, method.getName());
+    });
+
+    final OrderRepo orderRepo = proxy(OrderRepo.class, (proxy, method, args) -> switch (method.getName()) {
+        case "save" -> {
+            Order order = (Order) args[0];
+            orders.put(order.getId(), order);
+            yield order;
+        }
+        case "findById" -> Optional.ofNullable(orders.get((String) args[0]));
+        default -> unsupported(OrderRepo.class, method.getName());
+    });
+
+    final CartRepo cartRepo = proxy(CartRepo.class, (proxy, method, args) -> unsupported(CartRepo.class, method.getName()));
+
+    final InventoryLogRepo inventoryLogRepo = proxy(InventoryLogRepo.class, (proxy, method, args) -> {
+        if (method.getName().equals("insert")) {
+            // the audit trail is not what is measured; drop it
+            return args[0];
+        }
+        return unsupported(InventoryLogRepo.class, method.getName());
+    });
+
+    InMemoryRepositories(Collection<Product> catalog) {
+        catalog.forEach(product -> products.put(product.getId(), product));
+    }
+
+    // like the guarded bulk write: each decrement whose guard holds is applied
+    private Set<String> take(Map<String, Integer> quantities) {
+        Set<String> rejected = new HashSet<>();
+        quantities.forEach((id, quantity) -> {
+            Product product = products.get(id);
+            if (product != null && product.availableStock() >= quantity) {
+                product.setStock(product.getStock() - quantity);
+            } else {
+                rejected.add(id);
+            }
+        });
+        return rejected;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cast(Object value) {
+        return (T) value;
+    }
+
+    private static Object unsupported(Class<?> repository, String method) {
+        throw new UnsupportedOperationException(repository.getSimpleName() + "." + method + " is not faked");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        InvocationHandler withObjectMethods = (proxy, method, args) -> switch (method.getName()) {
+            case "toString" -> "InMemory" + type.getSimpleName();
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> handler.invoke(proxy, method, args);
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, withObjectMethods);
+    }
+}
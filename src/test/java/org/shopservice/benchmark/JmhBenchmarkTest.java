@@ -0,0 +1,71 @@
+package org.shopservice.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs the JMH benchmarks ({@link ShopServiceBenchmark} on in-memory repositories,
+ * {@link ShopServiceMongoBenchmark} on embedded MongoDB) twice: once for throughput in ops/s
+ * with the gc profiler's allocation rate per op, once for sample-time latency percentiles.
+ * Results are written as JSON to {@code target/jmh}. Excluded from the default build; run it with
+ * {@code mvn test -Pbenchmark -Dtest=JmhBenchmarkTest}, optionally with
+ * {@code -Djmh.include=<regex>}, {@code -Djmh.lines=1,10}, {@code -Djmh.catalogSize=1000},
+ * {@code -Djmh.forks}, {@code -Djmh.iterations} and {@code -Djmh.seconds}.
+ */
+@Tag("benchmark")
+class JmhBenchmarkTest {
+
+    @Test
+    void throughput() throws Exception {
+        assertFalse(new Runner(options("throughput", Mode.Throughput, TimeUnit.SECONDS)
+                .addProfiler(GCProfiler.class)
+                .build()).run().isEmpty());
+    }
+
+    @Test
+    void latency() throws Exception {
+        assertFalse(new Runner(options("latency", Mode.SampleTime, TimeUnit.MICROSECONDS)
+                .build()).run().isEmpty());
+    }
+
+    private static ChainedOptionsBuilder options(String name, Mode mode, TimeUnit unit) throws IOException {
+        Path results = Files.createDirectories(Path.of("target", "jmh")).resolve(name + ".json");
+        int seconds = Integer.getInteger("jmh.seconds", 2);
+        int iterations = Integer.getInteger("jmh.iterations", 5);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(System.getProperty("jmh.include", ShopServiceBenchmark.class.getPackageName() + ".ShopService.*Benchmark"))
+                .mode(mode)
+                .timeUnit(unit)
+                .forks(Integer.getInteger("jmh.forks", 1))
+                .warmupIterations(iterations)
+                .warmupTime(TimeValue.seconds(seconds))
+                .measurementIterations(iterations)
+                .measurementTime(TimeValue.seconds(seconds))
+                .result(results.toString())
+                .resultFormat(ResultFormatType.JSON);
+        param(options, "lines");
+        param(options, "catalogSize");
+        return options;
+    }
+
+    private static void param(ChainedOptionsBuilder options, String name) {
+        String values = System.getProperty("jmh." + name);
+        if (values != null) {
+            options.param(name, values.split(","));
+        }
+    }
+}
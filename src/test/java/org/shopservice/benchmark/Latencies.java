@@ -0,0 +1,35 @@
+package org.shopservice.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Latencies of one kind of request, recorded concurrently by the load-driving clients.
+ */
+final class Latencies {
+
+    private final List<Long> nanos = new ArrayList<>();
+
+    synchronized void record(long elapsedNanos) {
+        nanos.add(elapsedNanos);
+    }
+
+    synchronized int count() {
+        return nanos.size();
+    }
+
+    /**
+     * @param percentile e.g. {@code 50}, {@code 99} or {@code 99.9}
+     * @return the latency in milliseconds that this share of the requests stayed within
+     */
+    synchronized double percentileMillis(double percentile) {
+        if (nanos.isEmpty()) {
+            return 0;
+        }
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))] / 1_000_000.0;
+    }
+}
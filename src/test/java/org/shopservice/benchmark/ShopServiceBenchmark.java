@@ -0,0 +1,97 @@
+package org.shopservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.shopservice.config.CartReservationProperties;
+import org.shopservice.config.InventoryLogProperties;
+import org.shopservice.config.ProductCacheProperties;
+import org.shopservice.model.CartItem;
+import org.shopservice.model.Order;
+import org.shopservice.model.OrderItem;
+import org.shopservice.model.Product;
+import org.shopservice.model.enums.OrderStatus;
+import org.shopservice.service.CartExpirySweeper;
+import org.shopservice.service.InventoryLogWriter;
+import org.shopservice.service.ProductCache;
+import org.shopservice.service.ProductFacetIndex;
+import org.shopservice.service.ProductSearchIndex;
+import org.shopservice.service.ShopService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * CPU and allocation cost of the {@link ShopService} hot paths, on {@link InMemoryRepositories}
+ * instead of a database. Run through {@link JmhBenchmarkTest}.
+ */
+@State(Scope.Benchmark)
+public class ShopServiceBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int lines;
+
+    @Param({"1000", "100000"})
+    public int catalogSize;
+
+    private ShopService shopService;
+    private List<OrderItem> orderLines;
+    private List<CartItem> cartLines;
+    private Order order;
+    private final Pageable firstPage = PageRequest.of(0, 20);
+    private long orderSequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // without Spring, logback logs everything to the console; like the Mongo benchmark, keep the service quiet
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("org.shopservice"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+        List<Product> catalog = Catalog.products(catalogSize);
+        InMemoryRepositories repositories = new InMemoryRepositories(catalog);
+        ProductCache productCache = new ProductCache(repositories.productRepo,
+                new ProductCacheProperties(catalogSize, Duration.ofMinutes(5), false));
+        ProductSearchIndex searchIndex = new ProductSearchIndex();
+        searchIndex.rebuild(catalog);
+        ProductFacetIndex facetIndex = new ProductFacetIndex();
+        facetIndex.rebuild(catalog);
+        // not started: records are inserted synchronously into the discarding fake
+        InventoryLogWriter inventoryLogWriter = new InventoryLogWriter(repositories.inventoryLogRepo,
+                new ObjectMapper(), new InventoryLogProperties(true, 10_000, 500, Duration.ofMillis(200), ""));
+        CartExpirySweeper cartExpirySweeper = new CartExpirySweeper(repositories.cartRepo, repositories.productRepo,
+                productCache, inventoryLogWriter,
+                new CartReservationProperties(Duration.ofMinutes(30), Duration.ofSeconds(1), 512, 500));
+        shopService = new ShopService(repositories.orderRepo, repositories.productRepo, productCache,
+                searchIndex, facetIndex, repositories.cartRepo, cartExpirySweeper, inventoryLogWriter);
+
+        orderLines = Catalog.orderLines(catalogSize, lines);
+        cartLines = Catalog.cartLines(catalogSize, lines);
+        order = new Order("priced", orderLines.stream()
+                .map(line -> OrderItem.of(repositories.products.get(line.getProductId()), line.getQuantity()))
+                .toList(), OrderStatus.PROCESSING, Instant.now());
+    }
+
+    @Benchmark
+    public Order placeOrder() {
+        return shopService.placeOrder("o" + orderSequence++, orderLines, OrderStatus.PROCESSING);
+    }
+
+    @Benchmark
+    public BigDecimal calculateCartTotal() {
+        return shopService.calculateCartTotal(cartLines);
+    }
+
+    @Benchmark
+    public Page<Product> searchProducts() {
+        return shopService.searchProducts(Catalog.SEARCH_KEYWORD, firstPage);
+    }
+
+    @Benchmark
+    public BigDecimal orderTotalPrice() {
+        return order.totalPrice();
+    }
+}
@@ -0,0 +1,36 @@
+package org.shopservice.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Calls every {@link ShopServiceBenchmark} method once in the default build, so that a service
+ * change the {@link InMemoryRepositories} do not fake breaks the build rather than the next
+ * benchmark run.
+ */
+class ShopServiceBenchmarkTest {
+
+    @Test
+    void everyBenchmark_shouldRunOnTheInMemoryRepositories() throws Exception {
+        // GIVEN
+        ShopServiceBenchmark benchmark = new ShopServiceBenchmark();
+        benchmark.lines = 10;
+        benchmark.catalogSize = 1000;
+        benchmark.setUp();
+        List<Method> benchmarks = Arrays.stream(ShopServiceBenchmark.class.getMethods())
+                .filter(method -> method.isAnnotationPresent(Benchmark.class))
+                .toList();
+
+        // WHEN & THEN
+        assertFalse(benchmarks.isEmpty());
+        for (Method method : benchmarks) {
+            assertNotNull(method.invoke(benchmark), method.getName());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.shopservice.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.shopservice.ShopServiceApplication;
+import org.shopservice.model.CartItem;
+import org.shopservice.model.Order;
+import org.shopservice.model.OrderItem;
+import org.shopservice.model.Product;
+import org.shopservice.model.enums.OrderStatus;
+import org.shopservice.repository.OrderRepo;
+import org.shopservice.repository.ProductRepo;
+import org.shopservice.service.ProductCache;
+import org.shopservice.service.ShopService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * End-to-end cost of the {@link ShopService} hot paths on embedded MongoDB, started once per
+ * fork. Run through {@link JmhBenchmarkTest}.
+ */
+@State(Scope.Benchmark)
+public class ShopServiceMongoBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int lines;
+
+    @Param({"1000", "10000"})
+    public int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private ShopService shopService;
+    private List<OrderItem> orderLines;
+    private List<CartItem> cartLines;
+    private final Pageable firstPage = PageRequest.of(0, 20);
+    private long orderSequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(ShopServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.data.mongodb.database=shop-service-jmh",
+                        "logging.level.org.shopservice=WARN")
+                .run();
+        ProductRepo productRepo = context.getBean(ProductRepo.class);
+        context.getBean(OrderRepo.class).deleteAll();
+        productRepo.deleteAll();
+        // saved through the repository so the search index picks the products up
+        productRepo.saveAll(Catalog.products(catalogSize));
+        shopService = context.getBean(ShopService.class);
+        orderLines = Catalog.orderLines(catalogSize, lines);
+        cartLines = Catalog.cartLines(catalogSize, lines);
+    }
+
+    @Setup(Level.Iteration)
+    public void coldCache() {
+        // every iteration starts from the same cache state, whatever the one before did
+        context.getBean(ProductCache.class).evictAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Order placeOrder() {
+        return shopService.placeOrder("o" + orderSequence++, orderLines, OrderStatus.PROCESSING);
+    }
+
+    @Benchmark
+    public BigDecimal calculateCartTotal() {
+        return shopService.calculateCartTotal(cartLines);
+    }
+
+    @Benchmark
+    public Page<Product> searchProducts() {
+        return shopService.searchProducts(Catalog.SEARCH_KEYWORD, firstPage);
+    }
+}
@@ -0,0 +1,330 @@
+package org.shopservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.shopservice.ShopServiceApplication;
+import org.shopservice.exception.InsufficientStockException;
+import org.shopservice.model.CartItem;
+import org.shopservice.model.InventoryLog;
+import org.shopservice.model.OrderItem;
+import org.shopservice.model.OrderRequest;
+import org.shopservice.model.Product;
+import org.shopservice.model.StockShard;
+import org.shopservice.model.enums.OrderStatus;
+import org.shopservice.repository.CartRepo;
+import org.shopservice.repository.InventoryLogRepo;
+import org.shopservice.repository.OrderRepo;
+import org.shopservice.repository.ProductRepo;
+import org.shopservice.service.InventoryLogWriter;
+import org.shopservice.service.ProductCache;
+import org.shopservice.service.ShopService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives orders, batches, cancellations, goods in and out, cart reservations and checkouts
+ * from many concurrent clients against embedded MongoDB, on a small catalog so that they
+ * compete for the same stock, and reports throughput and p50/p99/p999 latency per endpoint.
+ * <p>
+ * It then checks that no stock was lost or invented: a sampler asserts throughout the run
+ * that no counter ever goes negative and that no product has more units reserved than on
+ * hand, and at the end, once every cart has expired, the stock of the catalog must equal its
+ * initial stock plus the sum of all {@link InventoryLog} deltas. Log records do not name
+ * their product for orders, so the balance is checked over the whole catalog.
+ * <p>
+ * Excluded from the default build; run it with {@code mvn test -Pbenchmark -Dtest=StockLoadTest},
+ * optionally with {@code -Dload.clients}, {@code -Dload.seconds}, {@code -Dload.products},
+ * {@code -Dload.stock} and {@code -Dload.shardedProducts}.
+ */
+@Tag("benchmark")
+class StockLoadTest {
+
+    private static final Duration CART_TTL = Duration.ofSeconds(2);
+    private static final Duration TICK = Duration.ofMillis(250);
+
+    private final int clients = Integer.getInteger("load.clients", 64);
+    private final int seconds = Integer.getInteger("load.seconds", 30);
+    private final int productCount = Integer.getInteger("load.products", 20);
+    private final int initialStock = Integer.getInteger("load.stock", 1000);
+    private final int shardedProducts = Integer.getInteger("load.shardedProducts", 2);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final Map<String, Latencies> latencies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> rejections = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+    private final Queue<String> placedOrders = new ConcurrentLinkedQueue<>();
+    private final Queue<String> reservedCarts = new ConcurrentLinkedQueue<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final List<String> violations = new ArrayList<>();
+
+    private ShopService shopService;
+    private String baseUrl;
+
+    @Test
+    void stockStaysConsistentUnderConcurrentLoad() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ShopServiceApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.data.mongodb.database=shop-service-load",
+                        "shop.cart-reservation.ttl=" + CART_TTL.toMillis() + "ms",
+                        "shop.cart-reservation.tick=" + TICK.toMillis() + "ms",
+                        "logging.level.org.shopservice=WARN")
+                .run()) {
+            shopService = context.getBean(ShopService.class);
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            List<String> productIds = seed(context);
+            long initial = (long) productIds.size() * initialStock;
+
+            Thread sampler = Thread.ofPlatform().daemon().start(() -> sampleCounters(context.getBean(MongoTemplate.class)));
+            drive(productIds);
+            sampler.interrupt();
+            sampler.join();
+
+            settle(context, productIds);
+            List<Product> products = context.getBean(ProductRepo.class).findAllById(productIds);
+            long finalStock = products.stream().mapToLong(Product::getStock).sum();
+            long deltas = context.getBean(InventoryLogRepo.class).findAll().stream()
+                    .mapToLong(InventoryLog::getDelta)
+                    .sum();
+
+            report();
+            System.out.printf("stock: initial %d + logged deltas %d = %d, final %d%n",
+                    initial, deltas, initial + deltas, finalStock);
+            synchronized (violations) {
+                assertEquals(List.of(), violations, "counters went negative during the run");
+            }
+            products.forEach(product -> {
+                assertTrue(product.getStock() >= 0, "negative stock: " + product);
+                assertEquals(0, product.getReserved(), "units still reserved after every cart expired: " + product);
+            });
+            assertEquals(initial + deltas, finalStock, "stock does not match the inventory log");
+            failures.forEach((endpoint, count) -> assertEquals(0, count.get(), "server errors on " + endpoint));
+        }
+    }
+
+    // starts from an empty database: whatever the demo runner wrote is removed before the baseline is taken
+    private List<String> seed(ConfigurableApplicationContext context) throws InterruptedException {
+        context.getBean(CartRepo.class).deleteAll();
+        // let a sweep that claimed a demo cart before the delete finish releasing it
+        Thread.sleep(2 * TICK.toMillis());
+        context.getBean(InventoryLogWriter.class).flush();
+        context.getBean(InventoryLogRepo.class).deleteAll();
+        context.getBean(OrderRepo.class).deleteAll();
+        ProductRepo productRepo = context.getBean(ProductRepo.class);
+        productRepo.deleteAll();
+        context.getBean(MongoTemplate.class).remove(new Query(), StockShard.class);
+        context.getBean(ProductCache.class).evictAll();
+
+        List<String> productIds = new ArrayList<>();
+        for (int i = 0; i < productCount; i++) {
+            String id = "load-" + i;
+            productRepo.save(new Product(id, "Item " + i, "Acme", "Load test item", "black", "M",
+                    BigDecimal.valueOf(10 + i), initialStock));
+            productIds.add(id);
+        }
+        productIds.subList(0, Math.min(shardedProducts, productCount))
+                .forEach(id -> shopService.configureStockShards(id, 4));
+        return productIds;
+    }
+
+    private void drive(List<String> productIds) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                executor.submit(() -> {
+                    start.await();
+                    while (System.nanoTime() < deadline) {
+                        step(productIds);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+    }
+
+    private void step(List<String> productIds) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int action = random.nextInt(100);
+        if (action < 35) {
+            String orderId = "order-" + ids.incrementAndGet();
+            int status = send("POST /orders", post("/orders?id=" + orderId + "&status=PROCESSING", orderLines(productIds)));
+            if (status == 201) {
+                placedOrders.add(orderId);
+            }
+        } else if (action < 40) {
+            List<OrderRequest> batch = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                batch.add(new OrderRequest("batch-" + ids.incrementAndGet(), OrderStatus.PROCESSING, orderLines(productIds)));
+            }
+            // accepted orders are not tracked for cancellation; their stock stays sold
+            send("POST /orders/batch", post("/orders/batch", batch));
+        } else if (action < 50) {
+            String orderId = placedOrders.poll();
+            if (orderId != null) {
+                send("DELETE /orders/{id}", HttpRequest.newBuilder(uri("/orders/" + orderId)).DELETE().build());
+            }
+        } else if (action < 60) {
+            send("POST /inventory/in", post("/inventory/in?productId=" + pick(productIds) + "&amount=" + (1 + random.nextInt(5)), null));
+        } else if (action < 70) {
+            send("POST /inventory/out", post("/inventory/out?productId=" + pick(productIds) + "&amount=" + (1 + random.nextInt(3)), null));
+        } else if (action < 85) {
+            String cartId = "cart-" + ids.incrementAndGet();
+            List<CartItem> items = orderLines(productIds).stream()
+                    .map(line -> new CartItem(line.getProductId(), line.getQuantity()))
+                    .toList();
+            long sent = System.nanoTime();
+            try {
+                // there is no cart endpoint; reservations go straight to the service
+                shopService.reserveStockForCart(cartId, items);
+                reservedCarts.add(cartId);
+            } catch (InsufficientStockException ex) {
+                rejections.computeIfAbsent("reserveStockForCart", key -> new AtomicInteger()).incrementAndGet();
+            } catch (RuntimeException ex) {
+                failures.computeIfAbsent("reserveStockForCart", key -> new AtomicInteger()).incrementAndGet();
+            }
+            latencies.computeIfAbsent("reserveStockForCart", key -> new Latencies()).record(System.nanoTime() - sent);
+        } else {
+            String cartId = reservedCarts.poll();
+            if (cartId != null) {
+                // carts that expired in the meantime answer 404
+                int status = send("POST /orders/checkout/{cartId}", post("/orders/checkout/" + cartId, null));
+                if (status == 201) {
+                    placedOrders.add(cartId);
+                }
+            }
+        }
+    }
+
+    private int send(String endpoint, HttpRequest request) throws Exception {
+        long sent = System.nanoTime();
+        int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        latencies.computeIfAbsent(endpoint, key -> new Latencies()).record(System.nanoTime() - sent);
+        if (status >= 500) {
+            failures.computeIfAbsent(endpoint, key -> new AtomicInteger()).incrementAndGet();
+        } else if (status >= 400) {
+            rejections.computeIfAbsent(endpoint, key -> new AtomicInteger()).incrementAndGet();
+        }
+        return status;
+    }
+
+    /**
+     * Checks the stored counters, not the products as read, because a read of a sharded product
+     * may miss units while they move between its counters.
+     */
+    private void sampleCounters(MongoTemplate mongoTemplate) {
+        while (!Thread.currentThread().isInterrupted()) {
+            for (Document product : mongoTemplate.find(new Query(), Document.class, "products")) {
+                int stock = product.getInteger("stock", 0);
+                int reserved = product.getInteger("reserved", 0);
+                if (stock < 0 || reserved < 0 || reserved > stock) {
+                    violation("product " + product.get("_id") + ": stock " + stock + ", reserved " + reserved);
+                }
+            }
+            for (StockShard shard : mongoTemplate.findAll(StockShard.class)) {
+                if (shard.getStock() < 0) {
+                    violation("shard " + shard.getId() + ": stock " + shard.getStock());
+                }
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    private void violation(String message) {
+        synchronized (violations) {
+            violations.add(message);
+        }
+    }
+
+    // waits for every open cart to expire, flushes the audit log and folds the shards back in
+    private void settle(ConfigurableApplicationContext context, List<String> productIds) throws InterruptedException {
+        CartRepo cartRepo = context.getBean(CartRepo.class);
+        long deadline = System.nanoTime() + CART_TTL.plusSeconds(30).toNanos();
+        while (cartRepo.count() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(TICK.toMillis());
+        }
+        assertEquals(0, cartRepo.count(), "carts left after their reservations expired");
+        // the sweep that removed the last carts may still be releasing them
+        Thread.sleep(2 * TICK.toMillis());
+        context.getBean(InventoryLogWriter.class).flush();
+        productIds.subList(0, Math.min(shardedProducts, productCount))
+                .forEach(id -> shopService.configureStockShards(id, 0));
+    }
+
+    private void report() {
+        System.out.printf("%n%d clients, %d s, %d products of %d units (%d sharded)%n",
+                clients, seconds, productCount, initialStock, Math.min(shardedProducts, productCount));
+        System.out.println("endpoint                        | requests |    req/s | p50 (ms) | p99 (ms) | p999 (ms) |    4xx |    5xx");
+        new TreeMap<>(latencies).forEach((endpoint, recorded) -> System.out.printf(
+                "%-31s | %8d | %8.0f | %8.2f | %8.2f | %9.2f | %6d | %6d%n",
+                endpoint, recorded.count(), recorded.count() / (double) seconds,
+                recorded.percentileMillis(50), recorded.percentileMillis(99), recorded.percentileMillis(99.9),
+                count(rejections, endpoint), count(failures, endpoint)));
+    }
+
+    private static int count(Map<String, AtomicInteger> counts, String endpoint) {
+        AtomicInteger count = counts.get(endpoint);
+        return count == null ? 0 : count.get();
+    }
+
+    private List<OrderItem> orderLines(List<String> productIds) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int lines = 1 + random.nextInt(3);
+        List<OrderItem> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            items.add(new OrderItem(pick(productIds), null, null, 1 + random.nextInt(3)));
+        }
+        return items;
+    }
+
+    private HttpRequest post(String path, Object body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(path));
+        if (body == null) {
+            return request.POST(HttpRequest.BodyPublishers.noBody()).build();
+        }
+        return request.header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static String pick(List<String> values) {
+        return values.get(ThreadLocalRandom.current().nextInt(values.size()));
+    }
+}
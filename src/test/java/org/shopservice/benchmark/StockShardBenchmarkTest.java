@@ -0,0 +1,105 @@
+package org.shopservice.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.shopservice.exception.InsufficientStockException;
+import org.shopservice.model.OrderItem;
+import org.shopservice.model.Product;
+import org.shopservice.model.enums.OrderStatus;
+import org.shopservice.repository.OrderRepo;
+import org.shopservice.repository.ProductRepo;
+import org.shopservice.service.ShopService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput of single-unit orders for one hot product with its stock in 0 (one counter on
+ * the product document) to 16 shards. Excluded from the default build; run it with
+ * {@code mvn test -Pbenchmark}, optionally with {@code -Dbenchmark.threads} and
+ * {@code -Dbenchmark.seconds}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@TestPropertySource(properties = "spring.data.mongodb.database=shop-service-benchmark")
+class StockShardBenchmarkTest {
+
+    private static final String PRODUCT_ID = "hot-sku";
+    private static final int INITIAL_STOCK = 10_000_000;
+    private static final int[] SHARD_COUNTS = {0, 1, 2, 4, 8, 16};
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private OrderRepo orderRepo;
+
+    @Test
+    void placeOrder_throughputByShardCount() throws Exception {
+        int threads = Integer.getInteger("benchmark.threads", 32);
+        int seconds = Integer.getInteger("benchmark.seconds", 10);
+
+        List<String> rows = new ArrayList<>();
+        for (int shards : SHARD_COUNTS) {
+            orderRepo.deleteAll();
+            productRepo.save(new Product(PRODUCT_ID, "Sneaker", "Kicks", "Limited drop", "White", "42",
+                    BigDecimal.valueOf(199), INITIAL_STOCK));
+            shopService.configureStockShards(PRODUCT_ID, shards);
+
+            int placed = run(shards, threads, seconds);
+
+            // no unit may be lost or sold twice, whatever the number of shards
+            Product merged = shopService.configureStockShards(PRODUCT_ID, 0);
+            assertEquals(INITIAL_STOCK - placed, merged.getStock());
+            rows.add(String.format("%6d | %10d | %10.0f", shards, placed, placed / (double) seconds));
+        }
+
+        System.out.printf("%nplaceOrder on one product, %d threads, %d s per run%n", threads, seconds);
+        System.out.println("shards |     orders |   orders/s");
+        rows.forEach(System.out::println);
+    }
+
+    private int run(int shards, int threads, int seconds) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicInteger placed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            workers.add(pool.submit(() -> {
+                start.await();
+                List<OrderItem> items = List.of(new OrderItem(PRODUCT_ID, null, null, 1));
+                for (int i = 0; System.nanoTime() < deadline; i++) {
+                    try {
+                        shopService.placeOrder(shards + "-" + worker + "-" + i, items, OrderStatus.PROCESSING);
+                        placed.incrementAndGet();
+                    } catch (InsufficientStockException ex) {
+                        // lost a race for the last units of a shard; counts as not placed
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : workers) {
+            f.get();
+        }
+        pool.shutdown();
+        return placed.get();
+    }
+}
@@ -0,0 +1,96 @@
+package org.shopservice.config;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MongoRoundTripsTest {
+
+    private final MongoRoundTrips listener = new MongoRoundTrips();
+
+    @Test
+    void recording_shouldCountCommands_byNameAndCollection() {
+        // GIVEN
+        try (MongoRoundTrips.Recording recording = MongoRoundTrips.start()) {
+
+            // WHEN
+            send("find", new BsonDocument("find", new BsonString("products")));
+            send("getMore", new BsonDocument("getMore", new BsonInt64(1)).append("collection", new BsonString("products")));
+            send("ping", new BsonDocument("ping", new BsonInt64(1)));
+
+            // THEN
+            assertEquals(3, recording.count());
+            assertEquals(List.of("find products", "getMore products", "ping"), recording.commands());
+        }
+    }
+
+    @Test
+    void recording_shouldNest_andStopCountingOnceClosed() {
+        // GIVEN
+        MongoRoundTrips.Recording outer = MongoRoundTrips.start();
+        MongoRoundTrips.Recording inner = MongoRoundTrips.start();
+
+        // WHEN
+        send("find", new BsonDocument("find", new BsonString("orders")));
+        inner.close();
+        send("update", new BsonDocument("update", new BsonString("orders")));
+        outer.close();
+        send("insert", new BsonDocument("insert", new BsonString("orders")));
+
+        // THEN
+        assertEquals(1, inner.count());
+        assertEquals(2, outer.count());
+        assertNull(MongoRoundTrips.current());
+    }
+
+    @Test
+    void recording_shouldNotCountCommandsOfOtherThreads() throws InterruptedException {
+        // GIVEN
+        try (MongoRoundTrips.Recording recording = MongoRoundTrips.start()) {
+
+            // WHEN
+            Thread other = Thread.ofVirtual().start(() -> send("find", new BsonDocument("find", new BsonString("carts"))));
+            other.join();
+
+            // THEN
+            assertEquals(0, recording.count());
+        }
+    }
+
+    @Test
+    void recording_shouldCountCommandsSentOnItsBehalf_byAnotherThread() throws InterruptedException {
+        // GIVEN: a request whose work is done by a leader that has its own recording open
+        try (MongoRoundTrips.Recording waiting = MongoRoundTrips.start()) {
+            MongoRoundTrips.Recording[] leaderOwn = new MongoRoundTrips.Recording[1];
+
+            // WHEN
+            Thread leader = Thread.ofVirtual().start(() -> {
+                leaderOwn[0] = MongoRoundTrips.start();
+                try (MongoRoundTrips.Recording ignored = MongoRoundTrips.start(List.of(waiting, leaderOwn[0]))) {
+                    send("update", new BsonDocument("update", new BsonString("products")));
+                }
+                leaderOwn[0].close();
+            });
+            leader.join();
+
+            // THEN: counted once for each, although the leader's recording is reached twice
+            assertEquals(List.of("update products"), waiting.commands());
+            assertEquals(List.of("update products"), leaderOwn[0].commands());
+        }
+    }
+
+    private void send(String name, BsonDocument command) {
+        ConnectionDescription connection = new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+        listener.commandStarted(new CommandStartedEvent(null, 1, connection, "shop", name, command));
+    }
+}
@@ -0,0 +1,67 @@
+package org.shopservice.config;
+
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryPlanGuardTest {
+
+    @Test
+    void explainable_shouldKeepThePlanShapingFields_ofAFilteredFind() {
+        // GIVEN
+        BsonDocument find = BsonDocument.parse("""
+                { find: 'orders', filter: { status: 'PROCESSING' }, sort: { _id: 1 }, batchSize: 100,
+                  $db: 'shop', lsid: { id: 1 } }""");
+
+        // WHEN
+        BsonDocument explained = QueryPlanGuard.explainable("find", find);
+
+        // THEN
+        assertEquals(BsonDocument.parse("{ find: 'orders', filter: { status: 'PROCESSING' }, sort: { _id: 1 } }"),
+                explained);
+    }
+
+    @Test
+    void explainable_shouldSkipQueriesThatReadEverything() {
+        assertNull(QueryPlanGuard.explainable("find", BsonDocument.parse("{ find: 'orders', filter: {} }")));
+        assertNull(QueryPlanGuard.explainable("count", BsonDocument.parse("{ count: 'orders' }")));
+        assertNull(QueryPlanGuard.explainable("aggregate",
+                BsonDocument.parse("{ aggregate: 'products', pipeline: [ { $changeStream: {} } ], cursor: {} }")));
+        assertNull(QueryPlanGuard.explainable("update", BsonDocument.parse("{ update: 'orders', updates: [] }")));
+        assertNotNull(QueryPlanGuard.explainable("aggregate",
+                BsonDocument.parse("{ aggregate: 'orders', pipeline: [ { $match: { status: 'NEW' } } ], cursor: {} }")));
+    }
+
+    @Test
+    void shape_shouldLeaveOutTheValues_soThatEachQueryIsExplainedOnce() {
+        // GIVEN
+        BsonDocument first = BsonDocument.parse("""
+                { find: 'orders', filter: { _id: { $in: [ 'a', 'b' ] }, status: 'NEW' }, limit: 1 }""");
+        BsonDocument second = BsonDocument.parse("""
+                { find: 'orders', filter: { _id: { $in: [ 'c' ] }, status: 'PAID' }, limit: 5 }""");
+        BsonDocument other = BsonDocument.parse("""
+                { find: 'orders', filter: { _id: { $in: [ 'a' ] }, status: { $ne: 'NEW' } }, limit: 1 }""");
+
+        // THEN
+        assertEquals(QueryPlanGuard.shape(first), QueryPlanGuard.shape(second));
+        assertNotEquals(QueryPlanGuard.shape(first), QueryPlanGuard.shape(other));
+    }
+
+    @Test
+    void scansCollection_shouldLookAtTheWinningPlanOnly() {
+        // GIVEN
+        BsonDocument indexed = BsonDocument.parse("""
+                { queryPlanner: {
+                    winningPlan: { stage: 'FETCH', inputStage: { stage: 'IXSCAN', indexName: 'status' } },
+                    rejectedPlans: [ { stage: 'COLLSCAN' } ] } }""");
+        BsonDocument scanned = BsonDocument.parse("""
+                { stages: [
+                    { $cursor: { queryPlanner: { winningPlan: { queryPlan: { stage: 'COLLSCAN' } } } } },
+                    { $group: {} } ] }""");
+
+        // THEN
+        assertFalse(QueryPlanGuard.scansCollection(indexed));
+        assertTrue(QueryPlanGuard.scansCollection(scanned));
+    }
+}
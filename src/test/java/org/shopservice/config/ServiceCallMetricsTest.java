@@ -0,0 +1,98 @@
+package org.shopservice.config;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionId;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.shopservice.exception.OrderNotFoundException;
+import org.shopservice.model.Order;
+import org.shopservice.repository.OrderRepo;
+import org.shopservice.service.ShopService;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ServiceCallMetricsTest {
+
+    @Mock private OrderRepo orderRepo;
+
+    @InjectMocks private ShopService shopService;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void invoke_shouldTimeEachCall_perMethod() {
+        // GIVEN
+        when(orderRepo.findById("O1")).thenReturn(Optional.of(mock(Order.class)));
+        ShopService service = instrumented();
+
+        // WHEN
+        service.getOrderById("O1");
+        service.getOrderById("O1");
+
+        // THEN
+        assertEquals(2, registry.get("shop.service")
+                .tags("class", "ShopService", "method", "getOrderById").timer().count());
+        assertTrue(registry.find("shop.service.errors").counters().isEmpty());
+    }
+
+    @Test
+    void invoke_shouldCountErrors_byExceptionType() {
+        // GIVEN
+        when(orderRepo.findById("missing")).thenReturn(Optional.empty());
+        ShopService service = instrumented();
+
+        // WHEN
+        assertThrows(OrderNotFoundException.class, () -> service.getOrderById("missing"));
+
+        // THEN
+        assertEquals(1, registry.get("shop.service.errors")
+                .tags("method", "getOrderById", "exception", "OrderNotFoundException").counter().count());
+        assertEquals(1, registry.get("shop.service").tag("method", "getOrderById").timer().count());
+    }
+
+    @Test
+    void poolWaitMetrics_shouldTimeCheckouts_byOutcome() {
+        // GIVEN
+        MongoPoolWaitMetrics listener = new MongoPoolWaitMetrics(registry);
+        ServerId server = new ServerId(new ClusterId(), new ServerAddress());
+
+        // WHEN
+        listener.connectionCheckOutStarted(new ConnectionCheckOutStartedEvent(server));
+        listener.connectionCheckedOut(new ConnectionCheckedOutEvent(new ConnectionId(server)));
+        listener.connectionCheckOutStarted(new ConnectionCheckOutStartedEvent(server));
+        listener.connectionCheckOutFailed(new ConnectionCheckOutFailedEvent(server,
+                ConnectionCheckOutFailedEvent.Reason.TIMEOUT));
+        // completes a checkout started on another thread, so there is nothing to measure
+        listener.connectionCheckedOut(new ConnectionCheckedOutEvent(new ConnectionId(server)));
+
+        // THEN
+        assertEquals(1, registry.get("mongodb.driver.pool.checkout").tag("outcome", "success").timer().count());
+        assertEquals(1, registry.get("mongodb.driver.pool.checkout").tag("outcome", "failure").timer().count());
+    }
+
+    private ShopService instrumented() {
+        DefaultListableBeanFactory beans = new DefaultListableBeanFactory();
+        beans.registerSingleton("meterRegistry", registry);
+        ServiceCallMetrics metrics = new ServiceCallMetrics(beans.getBeanProvider(MeterRegistry.class), ShopService.class);
+        ProxyFactory factory = new ProxyFactory(shopService);
+        factory.setProxyTargetClass(true);
+        factory.addAdvisor(metrics.advisor());
+        return (ShopService) factory.getProxy();
+    }
+}
@@ -0,0 +1,79 @@
+package org.shopservice.controller;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitFilterTest {
+
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, Duration.ofMillis(10));
+
+    @Test
+    void doFilter_shouldReleaseTheSlot_whenTheRequestIsDone() throws Exception {
+        // GIVEN
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // WHEN
+        filter.doFilter(new MockHttpServletRequest("GET", "/orders"), response,
+                (req, res) -> assertEquals(0, filter.availableSlots()));
+
+        // THEN
+        assertEquals(200, response.getStatus());
+        assertEquals(1, filter.availableSlots());
+    }
+
+    @Test
+    void doFilter_shouldReject_whenNoSlotFreesUpInTime() throws Exception {
+        // GIVEN
+        AtomicReference<MockHttpServletResponse> rejected = new AtomicReference<>();
+        FilterChain whileBusy = (req, res) -> {
+            MockHttpServletResponse second = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", "/products"), second,
+                    (r, s) -> fail("second request must not get a slot"));
+            rejected.set(second);
+        };
+
+        // WHEN
+        filter.doFilter(new MockHttpServletRequest("GET", "/orders"), new MockHttpServletResponse(), whileBusy);
+
+        // THEN
+        assertEquals(503, rejected.get().getStatus());
+        assertEquals("1", rejected.get().getHeader("Retry-After"));
+        assertEquals(1, filter.availableSlots());
+    }
+
+    @Test
+    void doFilter_shouldHoldTheSlot_untilAStreamedResponseCompletes() throws Exception {
+        // GIVEN
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/orders/stream");
+        request.setAsyncSupported(true);
+
+        // WHEN
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+
+        // THEN
+        assertEquals(0, filter.availableSlots());
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+        assertEquals(1, filter.availableSlots());
+    }
+
+    @Test
+    void doFilter_shouldNotHoldASlot_forActuatorEndpoints() throws Exception {
+        // GIVEN
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // WHEN
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/prometheus"), response,
+                (req, res) -> assertEquals(1, filter.availableSlots()));
+
+        // THEN
+        assertEquals(200, response.getStatus());
+    }
+}
@@ -0,0 +1,166 @@
+package org.shopservice.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shopservice.DbRoundTrips;
+import org.shopservice.config.MongoRoundTrips;
+import org.shopservice.model.CartItem;
+import org.shopservice.model.Order;
+import org.shopservice.model.OrderItem;
+import org.shopservice.model.Product;
+import org.shopservice.model.enums.OrderStatus;
+import org.shopservice.repository.CartRepo;
+import org.shopservice.repository.OrderRepo;
+import org.shopservice.repository.ProductRepo;
+import org.shopservice.service.ProductCache;
+import org.shopservice.service.ShopService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Database round trips of the paths that handle many lines at once: their command count must
+ * not grow with the number of lines.
+ */
+@AutoConfigureMockMvc
+@SpringBootTest
+@TestPropertySource(properties = {
+        "spring.data.mongodb.database=shop-service-test",
+        "logging.level.org.shopservice.controller.DbRoundTripFilter=DEBUG"
+})
+class DbRoundTripTest {
+
+    private static final int LINES = 50;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private ProductRepo productRepository;
+
+    @Autowired
+    private OrderRepo orderRepository;
+
+    @Autowired
+    private CartRepo cartRepository;
+
+    @Autowired
+    private ProductCache productCache;
+
+    private List<Product> products;
+
+    @BeforeEach
+    void beforeEach() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        cartRepository.deleteAll();
+        productCache.evictAll();
+        products = productRepository.saveAll(IntStream.range(0, LINES)
+                .mapToObj(i -> new Product("rt-" + i, "Item " + i, "Acme", "Round trip test item", "grey", "M",
+                        BigDecimal.valueOf(10 + i), 100))
+                .toList());
+    }
+
+    @Test
+    void placeOrder_issuesAFixedNumberOfCommands_whateverTheLineCount() {
+        List<OrderItem> lines = products.stream().map(product -> OrderItem.of(product, 1)).toList();
+
+        // one product read, one bulk stock write, one order save
+        DbRoundTrips.assertAtMost(3, () -> shopService.placeOrder("rt-order", lines, OrderStatus.PROCESSING));
+    }
+
+    @Test
+    void reserveAndCheckoutCart_issueAFixedNumberOfCommands_whateverTheLineCount() {
+        List<CartItem> items = products.stream().map(product -> new CartItem(product.getId(), 1)).toList();
+
+        // one product read, one bulk reservation, one cart save
+        DbRoundTrips.assertAtMost(3, () -> shopService.reserveStockForCart("rt-cart", items));
+        // cart removal, one product read, order insert, one bulk commit of the reservation
+        DbRoundTrips.assertAtMost(4, () -> shopService.checkoutCart("rt-cart"));
+    }
+
+    @Test
+    void calculateCartTotal_readsAllProductsAtOnce() {
+        List<CartItem> items = products.stream().map(product -> new CartItem(product.getId(), 2)).toList();
+
+        DbRoundTrips.assertAtMost(1, () -> shopService.calculateCartTotal(items));
+        // served from the product cache the second time
+        DbRoundTrips.assertAtMost(0, () -> shopService.calculateCartTotal(items));
+    }
+
+    @Test
+    void cancelOrder_restocksInOneBulkWrite() {
+        orderRepository.save(new Order("rt-cancel",
+                products.stream().map(product -> OrderItem.of(product, 1)).toList(),
+                OrderStatus.PROCESSING, Instant.now()));
+
+        // order read, one bulk stock write, order save
+        DbRoundTrips.assertAtMost(3, () -> shopService.cancelOrder("rt-cancel"));
+    }
+
+    @Test
+    void refundOrder_restocksInOneBulkWrite() {
+        orderRepository.save(new Order("rt-refund",
+                products.stream().map(product -> OrderItem.of(product, 1)).toList(),
+                OrderStatus.COMPLETED, Instant.now()));
+
+        // order read, one bulk stock write, order save
+        DbRoundTrips.assertAtMost(3, () -> shopService.refundOrder("rt-refund"));
+    }
+
+    @Test
+    void stockWrite_isCountedForTheRequest_whenAnotherRequestLeadsItsGroup() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> counts = IntStream.range(0, threads)
+                    .mapToObj(i -> executor.submit(() -> {
+                        start.await();
+                        try (MongoRoundTrips.Recording recording = MongoRoundTrips.start()) {
+                            shopService.goodsOut(products.get(0).getId(), 1);
+                            return recording.count();
+                        }
+                    }))
+                    .toList();
+            start.countDown();
+
+            // every request sees at least its bulk stock write, whichever thread sent it
+            for (Future<Integer> count : counts) {
+                assertTrue(count.get(10, TimeUnit.SECONDS) >= 1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void getOrderById_reportsItsCommandsInAHeader_inDebugMode() throws Exception {
+        orderRepository.save(new Order("rt-get", List.of(OrderItem.of(products.get(0), 1)),
+                OrderStatus.PROCESSING, Instant.now()));
+
+        mvc.perform(get("/orders/rt-get"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(DbRoundTripHeaderAdvice.HEADER, "1"));
+    }
+}
@@ -17,6 +17,7 @@ import java.math.BigDecimal;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @AutoConfigureMockMvc
@@ -117,4 +118,24 @@ class InventoryControllerTest {
                 )
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    @DirtiesContext
+    void importStock_shouldApplyCsvAndReportRejectedLines() throws Exception {
+        productRepo.save(new Product("p3", "Widget", "Acme", "Standard widget", "red", "M",
+                BigDecimal.valueOf(9.99), 10));
+
+        mvc.perform(post("/inventory/import")
+                        .contentType("text/csv")
+                        .content("productId,delta\np3,5\nmissing,2\np3,-3\np3,abc\n")
+                        .with(csrf())
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.linesApplied").value(2))
+                .andExpect(jsonPath("$.linesRejected").value(2))
+                .andExpect(jsonPath("$.rejections[0].reason").value("Delta is not an integer: abc"))
+                .andExpect(jsonPath("$.rejections[1].productId").value("missing"));
+
+        assertThat(productRepo.findById("p3").orElseThrow().getStock()).isEqualTo(12);
+    }
 }
@@ -3,12 +3,16 @@ package org.shopservice.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.shopservice.model.CartItem;
 import org.shopservice.model.Order;
 import org.shopservice.model.OrderItem;
+import org.shopservice.model.OrderRequest;
 import org.shopservice.model.Product;
 import org.shopservice.model.enums.OrderStatus;
+import org.shopservice.repository.CartRepo;
 import org.shopservice.repository.OrderRepo;
 import org.shopservice.repository.ProductRepo;
+import org.shopservice.service.ShopService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -16,6 +20,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -23,6 +28,7 @@ import java.util.List;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -43,6 +49,12 @@ class OrderControllerTest {
     @Autowired
     private ProductRepo productRepository;
 
+    @Autowired
+    private CartRepo cartRepository;
+
+    @Autowired
+    private ShopService shopService;
+
     private ObjectMapper objectMapper;
 
     @BeforeEach
@@ -50,6 +62,7 @@ class OrderControllerTest {
         // completely wipe out between tests
         orderRepository.deleteAll();
         productRepository.deleteAll();
+        cartRepository.deleteAll();
         objectMapper = new ObjectMapper().findAndRegisterModules();
     }
 
@@ -67,7 +80,7 @@ class OrderControllerTest {
     }
 
     private OrderItem sampleItem() {
-        return new OrderItem(sampleProduct(), 3);
+        return OrderItem.of(sampleProduct(), 3);
     }
 
     @Test
@@ -84,10 +97,10 @@ class OrderControllerTest {
         Product p2 = new Product("P2", "Jeans",   "DenimCo",     "Slim-fit", "Blue","32", BigDecimal.valueOf(49.99),30);
         productRepository.saveAll(List.of(p1, p2));
 
-        Order o1 = new Order("order1", List.of(new OrderItem(p1, 2)), OrderStatus.CANCELED, Instant.now());
+        Order o1 = new Order("order1", List.of(OrderItem.of(p1, 2)), OrderStatus.CANCELED, Instant.now());
         Order o2 = new Order("order2", List.of(
-                new OrderItem(p1, 1),
-                new OrderItem(p2, 5)
+                OrderItem.of(p1, 1),
+                OrderItem.of(p2, 5)
         ), OrderStatus.REFUNDED, Instant.now());
         orderRepository.saveAll(List.of(o1, o2));
 
@@ -98,6 +111,48 @@ class OrderControllerTest {
                 .andExpect(jsonPath("$[1].id", is("order2")));
     }
 
+    @Test
+    void getAllOrders_withLimit_returnsKeysetPagesLinkedByNextHeader() throws Exception {
+        productRepository.save(sampleProduct());
+        orderRepository.saveAll(List.of(
+                new Order("k1", List.of(sampleItem()), OrderStatus.PROCESSING, Instant.now()),
+                new Order("k2", List.of(sampleItem()), OrderStatus.PROCESSING, Instant.now()),
+                new Order("k3", List.of(sampleItem()), OrderStatus.PROCESSING, Instant.now())));
+
+        mvc.perform(get("/orders").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[1].id", is("k2")))
+                .andExpect(header().string("Link", containsString("after=k2&limit=2")));
+
+        mvc.perform(get("/orders").param("after", "k2").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].id", is("k3")))
+                .andExpect(header().doesNotExist("Link"));
+    }
+
+    @Test
+    void streamOrders_writesOneJsonDocumentPerLine() throws Exception {
+        productRepository.save(sampleProduct());
+        orderRepository.saveAll(List.of(
+                new Order("s1", List.of(sampleItem()), OrderStatus.PROCESSING, Instant.now()),
+                new Order("s2", List.of(sampleItem()), OrderStatus.CANCELED, Instant.now())));
+
+        MvcResult started = mvc.perform(get("/orders/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("s1", objectMapper.readTree(lines[0]).get("id").asText());
+        assertEquals("s2", objectMapper.readTree(lines[1]).get("id").asText());
+    }
+
     @Test
     void getOrdersByStatus_filtersByStatus() throws Exception {
         productRepository.save(sampleProduct());
@@ -146,12 +201,52 @@ class OrderControllerTest {
                 .andExpect(jsonPath("$.id", is("new-order")))
                 .andExpect(jsonPath("$.status", is("PROCESSING")))
                 .andExpect(jsonPath("$.items[0].quantity", is(3)))
-                .andExpect(jsonPath("$.items[0].product.id", is("prod-1")));
+                .andExpect(jsonPath("$.items[0].productId", is("prod-1")))
+                .andExpect(jsonPath("$.items[0].name", is("Gizmo")))
+                .andExpect(jsonPath("$.items[0].unitPrice", is(19.95)))
+                .andExpect(jsonPath("$.items[0].product").doesNotExist());
 
         // verify in DB
         assert(orderRepository.existsById("new-order"));
     }
 
+    @Test
+    void placeOrders_placesWhatStockAllowsAndReportsEachOrder() throws Exception {
+        productRepository.save(sampleProduct());
+
+        List<OrderRequest> body = List.of(
+                new OrderRequest("b1", OrderStatus.PROCESSING, List.of(OrderItem.of(sampleProduct(), 40))),
+                new OrderRequest("b2", OrderStatus.PROCESSING, List.of(OrderItem.of(sampleProduct(), 5))),
+                new OrderRequest("b3", OrderStatus.PROCESSING, List.of(OrderItem.of(sampleProduct(), 2))));
+        mvc.perform(post("/orders/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(body)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].placed", is(true)))
+                .andExpect(jsonPath("$[1].placed", is(false)))
+                .andExpect(jsonPath("$[1].error", is("Insufficient stock for product: prod-1")))
+                .andExpect(jsonPath("$[2].placed", is(true)));
+
+        assertEquals(0, productRepository.findById("prod-1").orElseThrow().getStock());
+        assertEquals(2, orderRepository.count());
+    }
+
+    @Test
+    void checkoutCart_turnsReservationIntoOrderWithoutTakingStockAgain() throws Exception {
+        productRepository.save(sampleProduct());
+        shopService.reserveStockForCart("cart-1", List.of(new CartItem("prod-1", 2)));
+
+        mvc.perform(post("/orders/checkout/{cartId}", "cart-1"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is("cart-1")))
+                .andExpect(jsonPath("$.items[0].quantity", is(2)));
+
+        assertEquals(40, productRepository.findById("prod-1").orElseThrow().getStock());
+        assertFalse(cartRepository.existsById("cart-1"));
+        mvc.perform(post("/orders/checkout/{cartId}", "cart-1"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void updateOrderStatus_changesStatus() throws Exception {
         productRepository.save(sampleProduct());
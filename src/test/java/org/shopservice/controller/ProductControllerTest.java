@@ -16,6 +16,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.math.BigDecimal;
 import java.util.List;
 
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -193,10 +194,119 @@ class ProductControllerTest {
         assertFalse(productRepo.existsById("p6"));
     }
 
+    @Test
+    void getCacheStats_shouldCountHit_whenProductReadTwice() throws Exception {
+        Product p = new Product(
+                "p7",
+                "Cached",
+                "BrandC",
+                "Read twice",
+                "grey",
+                "M",
+                BigDecimal.valueOf(7.77),
+                7
+        );
+        productRepo.save(p);
+
+        mvc.perform(get("/products/{id}", "p7")).andExpect(status().isOk());
+        mvc.perform(get("/products/{id}", "p7")).andExpect(status().isOk());
+
+        mvc.perform(get("/products/cache/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hits", greaterThanOrEqualTo(1)))
+                .andExpect(jsonPath("$.misses", greaterThanOrEqualTo(1)));
+    }
+
+    @Test
+    void suggest_shouldReturnNamesAndBrands_afterCreateAndDelete() throws Exception {
+        Product p = new Product(
+                "p8",
+                "Slim Jeans",
+                "DenimCo",
+                "Blue slim-fit denim jeans",
+                "Blue",
+                "32",
+                BigDecimal.valueOf(49.99),
+                30
+        );
+        mvc.perform(post("/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(p)))
+                .andExpect(status().isCreated());
+
+        mvc.perform(get("/products/suggest").param("prefix", "jea"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[\"Slim Jeans\"]"));
+        mvc.perform(get("/products/suggest").param("prefix", "Deni"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[\"DenimCo\"]"));
+
+        mvc.perform(delete("/products/{id}", "p8"))
+                .andExpect(status().isNoContent());
+
+        mvc.perform(get("/products/suggest").param("prefix", "jea"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+    }
+
+    @Test
+    void getAllProducts_shouldFilterByFacets_andCountFacetValues() throws Exception {
+        productRepo.saveAll(List.of(
+                new Product("f1", "Slim Jeans", "DenimCo", "Slim", "Blue", "32", BigDecimal.valueOf(49.99), 30),
+                new Product("f2", "Wide Jeans", "DenimCo", "Wide", "Black", "32", BigDecimal.valueOf(59.99), 10),
+                new Product("f3", "T-Shirt", "ACME", "Crew neck", "Blue", "M", BigDecimal.valueOf(19.99), 50)));
+
+        mvc.perform(get("/products")
+                        .param("color", "blue")
+                        .param("size", "32")
+                        .param("brand", "DenimCo"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].id", is("f1")));
+
+        mvc.perform(get("/products/facets").param("color", "Blue"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.color.Blue", is(2)))
+                .andExpect(jsonPath("$.color.Black", is(1)))
+                .andExpect(jsonPath("$.size['32']", is(1)))
+                .andExpect(jsonPath("$.brand.ACME", is(1)));
+    }
+
     @Test
     void deleteProduct_shouldReturnNotFound_whenNotExists() throws Exception {
         mvc.perform(delete("/products/{id}", "gone"))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string("Product with id 'gone' not found."));
     }
+
+    @Test
+    void configureStockShards_shouldKeepStock_andServeGoodsOutFromShards() throws Exception {
+        productRepo.save(new Product("s1", "Sneaker", "Kicks", "Limited drop", "White", "42",
+                BigDecimal.valueOf(199.00), 100));
+
+        mvc.perform(put("/products/{id}/stock-shards", "s1").param("count", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stockShards", is(4)))
+                .andExpect(jsonPath("$.stock", is(100)));
+
+        mvc.perform(post("/inventory/out").param("productId", "s1").param("amount", "30"))
+                .andExpect(status().isNoContent());
+        mvc.perform(post("/inventory/out").param("productId", "s1").param("amount", "71"))
+                .andExpect(status().isBadRequest());
+
+        mvc.perform(put("/products/{id}/stock-shards", "s1").param("count", "0"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stockShards", is(0)))
+                .andExpect(jsonPath("$.stock", is(70)));
+        assertEquals(70, productRepo.findById("s1").orElseThrow().getStock());
+    }
+
+    @Test
+    void configureStockShards_shouldRejectTooManyShards() throws Exception {
+        productRepo.save(new Product("s2", "Sneaker", "Kicks", "Limited drop", "White", "43",
+                BigDecimal.valueOf(199.00), 10));
+
+        mvc.perform(put("/products/{id}/stock-shards", "s2").param("count", "65"))
+                .andExpect(status().isBadRequest());
+    }
 }
@@ -0,0 +1,122 @@
+package org.shopservice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shopservice.model.Order;
+import org.shopservice.model.OrderItem;
+import org.shopservice.model.Product;
+import org.shopservice.model.enums.OrderStatus;
+import org.shopservice.repository.OrderRepo;
+import org.shopservice.repository.ProductRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@AutoConfigureMockMvc
+@SpringBootTest
+@TestPropertySource(properties = {
+        // point at an in-memory test database
+        "spring.data.mongodb.database=shop-service-test"
+})
+class ReactiveOrderControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private OrderRepo orderRepository;
+
+    @Autowired
+    private ProductRepo productRepository;
+
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void beforeEach() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+    }
+
+    private Product sampleProduct() {
+        return new Product("prod-1", "Gizmo", "Acme", "A very useful gizmo", "blue", "L",
+                BigDecimal.valueOf(19.95), 42);
+    }
+
+    @Test
+    void placeOrder_takesStockAndReturnsNewOrder() throws Exception {
+        productRepository.save(sampleProduct());
+
+        MvcResult started = mvc.perform(post("/reactive/orders")
+                        .param("id", "new-order")
+                        .param("status", "PROCESSING")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(OrderItem.of(sampleProduct(), 3)))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is("new-order")))
+                .andExpect(jsonPath("$.items[0].name", is("Gizmo")));
+
+        assertEquals(39, productRepository.findById("prod-1").orElseThrow().getStock());
+    }
+
+    @Test
+    void placeOrder_withInsufficientStock_returnsBadRequestAndKeepsStock() throws Exception {
+        productRepository.save(sampleProduct());
+
+        MvcResult started = mvc.perform(post("/reactive/orders")
+                        .param("id", "too-big")
+                        .param("status", "PROCESSING")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(OrderItem.of(sampleProduct(), 43)))))
+                .andReturn();
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("prod-1")));
+
+        assertEquals(42, productRepository.findById("prod-1").orElseThrow().getStock());
+        assertEquals(0, orderRepository.count());
+    }
+
+    @Test
+    void getOrderById_whenMissing_returnsNotFound() throws Exception {
+        MvcResult started = mvc.perform(get("/reactive/orders/missing")).andReturn();
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void streamOrders_writesOneJsonDocumentPerLine() throws Exception {
+        orderRepository.saveAll(List.of(
+                new Order("s1", List.of(OrderItem.of(sampleProduct(), 1)), OrderStatus.PROCESSING, Instant.now()),
+                new Order("s2", List.of(OrderItem.of(sampleProduct(), 1)), OrderStatus.CANCELED, Instant.now())));
+
+        MvcResult started = mvc.perform(get("/reactive/orders/stream").param("status", "CANCELED"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(1, lines.length);
+        assertEquals("s2", objectMapper.readTree(lines[0]).get("id").asText());
+    }
+}
@@ -0,0 +1,72 @@
+package org.shopservice.repository;
+
+import com.mongodb.bulk.BulkWriteError;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.shopservice.model.Order;
+import org.shopservice.model.enums.OrderStatus;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderRepoCustomImplTest {
+
+    @Mock private MongoTemplate mongoTemplate;
+    @Mock private BulkOperations bulk;
+
+    private OrderRepoCustomImpl repo;
+    private final List<Order> orders = List.of(
+            new Order("a", List.of(), OrderStatus.PROCESSING, Instant.now()),
+            new Order("b", List.of(), OrderStatus.PROCESSING, Instant.now()));
+
+    @BeforeEach
+    void setUp() {
+        repo = new OrderRepoCustomImpl(mongoTemplate);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.class)).thenReturn(bulk);
+        when(bulk.insert(orders)).thenReturn(bulk);
+    }
+
+    @Test
+    void insertUnlessExists_shouldReturnTheIdsAlreadyTaken() {
+        // GIVEN
+        BulkOperationException failure = bulkFailure(11000);
+        when(bulk.execute()).thenThrow(failure);
+
+        // WHEN
+        Set<String> existing = repo.insertUnlessExists(orders);
+
+        // THEN
+        assertEquals(Set.of("b"), existing);
+    }
+
+    @Test
+    void insertUnlessExists_shouldRethrow_otherWriteErrors() {
+        // GIVEN
+        BulkOperationException failure = bulkFailure(50);
+        when(bulk.execute()).thenThrow(failure);
+
+        // THEN
+        assertSame(failure, assertThrows(BulkOperationException.class, () -> repo.insertUnlessExists(orders)));
+    }
+
+    // the second order fails with the given code
+    private static BulkOperationException bulkFailure(int code) {
+        BulkWriteError error = mock(BulkWriteError.class);
+        when(error.getCode()).thenReturn(code);
+        lenient().when(error.getIndex()).thenReturn(1);
+        BulkOperationException failure = mock(BulkOperationException.class);
+        when(failure.getErrors()).thenReturn(List.of(error));
+        return failure;
+    }
+}
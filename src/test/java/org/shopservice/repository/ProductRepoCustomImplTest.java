@@ -0,0 +1,115 @@
+package org.shopservice.repository;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.shopservice.model.Product;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductRepoCustomImplTest {
+
+    @Mock private MongoTemplate mongoTemplate;
+    @Mock private BulkOperations bulk;
+
+    private ProductRepoCustomImpl repo;
+    private final Map<String, Integer> quantities = new LinkedHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        repo = new ProductRepoCustomImpl(mongoTemplate);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulk);
+        quantities.put("P1", 1);
+        quantities.put("P2", 2);
+        quantities.put("P3", 3);
+    }
+
+    @Test
+    void commitReservedBulk_shouldSendGuardedPipelineUpdates_withoutUpserts() {
+        // GIVEN
+        BulkWriteResult result = result(3);
+        when(bulk.execute()).thenReturn(result);
+
+        // WHEN
+        Set<String> rejected = repo.commitReservedBulk(quantities);
+
+        // THEN
+        assertEquals(Set.of(), rejected);
+        ArgumentCaptor<UpdateDefinition> updates = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(bulk, times(3)).updateOne(any(Query.class), updates.capture());
+        verify(bulk, never()).upsert(any(Query.class), any(UpdateDefinition.class));
+        String pipeline = ((AggregationUpdate) updates.getValue()).toPipeline(Aggregation.DEFAULT_CONTEXT).toString();
+        assertTrue(pipeline.contains("$cond") && pipeline.contains("$toInt"), pipeline);
+        assertEquals(1, ((AggregationUpdate) updates.getValue()).toPipeline(Aggregation.DEFAULT_CONTEXT).size());
+        assertTrue(pipeline.contains("stock") && pipeline.contains("reserved"), pipeline);
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Document.class), anyString());
+    }
+
+    @Test
+    void commitReservedBulk_shouldReject_failedGuardsAndMissingProducts() {
+        // GIVEN: P2's guard fails, P3 does not exist
+        BulkOperationException failure = bulkFailure(241, 1, 1);
+        when(bulk.execute()).thenThrow(failure);
+        when(mongoTemplate.getCollectionName(Product.class)).thenReturn("products");
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("products")))
+                .thenReturn(List.of(new Document("_id", "P1")));
+
+        // WHEN
+        Set<String> rejected = repo.commitReservedBulk(quantities);
+
+        // THEN
+        assertEquals(Set.of("P2", "P3"), rejected);
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(Product.class));
+    }
+
+    @Test
+    void commitReservedBulk_shouldRethrow_otherWriteErrors() {
+        // GIVEN
+        BulkOperationException failure = bulkFailure(50, 0, 2);
+        when(bulk.execute()).thenThrow(failure);
+
+        // THEN
+        assertThrows(BulkOperationException.class, () -> repo.commitReservedBulk(quantities));
+    }
+
+    private static BulkWriteResult result(int matched) {
+        BulkWriteResult result = mock(BulkWriteResult.class);
+        when(result.getMatchedCount()).thenReturn(matched);
+        return result;
+    }
+
+    // the update at {@code index} fails with {@code code}; {@code matched} of the others matched
+    private static BulkOperationException bulkFailure(int code, int index, int matched) {
+        BulkWriteError error = mock(BulkWriteError.class);
+        when(error.getCode()).thenReturn(code);
+        lenient().when(error.getIndex()).thenReturn(index);
+        BulkWriteResult result = mock(BulkWriteResult.class);
+        lenient().when(result.getMatchedCount()).thenReturn(matched);
+        BulkOperationException failure = mock(BulkOperationException.class);
+        when(failure.getErrors()).thenReturn(List.of(error));
+        lenient().when(failure.getResult()).thenReturn(result);
+        return failure;
+    }
+}
@@ -0,0 +1,78 @@
+package org.shopservice.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.shopservice.model.Product;
+import org.shopservice.model.StockShard;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShardedStockLoaderTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ProductRepo productRepo;
+
+    @Test
+    void findAll_shouldReadTheShardsOfAPageInOneQuery() {
+        // GIVEN
+        Product plain = product("P1", 0);
+        Product sharded = product("P2", 2);
+        Product other = product("P3", 1);
+        when(productRepo.findAll()).thenReturn(List.of(plain, sharded, other));
+        when(mongoTemplate.find(any(Query.class), eq(StockShard.class))).thenReturn(List.of(
+                new StockShard("P2#0", "P2", 0, 4),
+                new StockShard("P2#1", "P2", 1, 3),
+                new StockShard("P3#0", "P3", 0, 1)));
+
+        // WHEN
+        List<Product> products = proxy().findAll();
+
+        // THEN
+        verify(mongoTemplate).find(argThat((Query query) -> query.getQueryObject().toJson()
+                .equals("{\"_id\": {\"$in\": [\"P2#0\", \"P2#1\", \"P3#0\"]}}")), eq(StockShard.class));
+        assertEquals(List.of(10, 17, 11), products.stream().map(Product::getStock).toList());
+        assertEquals(7, sharded.getShardedStock());
+    }
+
+    @Test
+    void findById_shouldNotQueryShards_forAnUnshardedProduct() {
+        // GIVEN
+        when(productRepo.findById("P1")).thenReturn(Optional.of(product("P1", 0)));
+
+        // WHEN
+        Optional<Product> product = proxy().findById("P1");
+
+        // THEN
+        assertEquals(10, product.orElseThrow().getStock());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private ProductRepo proxy() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("mongoTemplate", mongoTemplate);
+        ProxyFactory factory = new ProxyFactory(productRepo);
+        factory.addInterface(ProductRepo.class);
+        factory.addAdvisor(new ShardedStockLoader(beanFactory.getBeanProvider(MongoTemplate.class)).advisor());
+        return (ProductRepo) factory.getProxy();
+    }
+
+    private static Product product(String id, int shards) {
+        return new Product(id, "Name", "Brand", "Desc", "red", "M", BigDecimal.ONE, 10, 0, shards);
+    }
+}
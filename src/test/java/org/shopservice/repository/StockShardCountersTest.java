@@ -0,0 +1,234 @@
+package org.shopservice.repository;
+
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.shopservice.model.Product;
+import org.shopservice.model.StockShard;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockShardCountersTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulk;
+
+    // an in-memory stand-in for the shard documents and the product document of P1
+    private final Map<String, Integer> shards = new TreeMap<>();
+    private int stock;
+    private int reserved;
+    // what the next read of the product document returns, if it differs from what is stored
+    private Integer staleStock;
+
+    private StockShardCounters counters;
+
+    @BeforeEach
+    void setUp() {
+        counters = new StockShardCounters(mongoTemplate);
+        lenient().when(mongoTemplate.getCollectionName(Product.class)).thenReturn("products");
+        lenient().when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(StockShard.class)))
+                .thenAnswer(inv -> updateShard(inv.getArgument(0), inv.getArgument(1)));
+        lenient().when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Product.class)))
+                .thenAnswer(inv -> updateProduct(inv.getArgument(1)));
+        lenient().when(mongoTemplate.findOne(any(Query.class), eq(Document.class), eq("products")))
+                .thenAnswer(inv -> new Document("_id", "P1")
+                        .append("stock", staleStock != null ? staleStock : stock)
+                        .append("reserved", reserved));
+        lenient().when(mongoTemplate.find(any(Query.class), eq(StockShard.class))).thenAnswer(inv -> {
+            List<?> ids = inv.<Query>getArgument(0).getQueryObject().get("_id", Document.class).getList("$in", Object.class);
+            return shards.entrySet().stream()
+                    .filter(entry -> ids.contains(entry.getKey()))
+                    .map(entry -> new StockShard(entry.getKey(), "P1", shardOf(entry.getKey()), entry.getValue()))
+                    .toList();
+        });
+        lenient().when(mongoTemplate.findAndRemove(any(Query.class), eq(StockShard.class))).thenAnswer(inv -> {
+            String id = inv.<Query>getArgument(0).getQueryObject().getString("_id");
+            Integer removed = shards.remove(id);
+            return removed == null ? null : new StockShard(id, "P1", shardOf(id), removed);
+        });
+        lenient().when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockShard.class)).thenReturn(bulk);
+        lenient().when(bulk.upsert(any(Query.class), any(Update.class))).thenAnswer(inv -> {
+            shards.putIfAbsent(inv.<Query>getArgument(0).getQueryObject().getString("_id"), 0);
+            return bulk;
+        });
+    }
+
+    @Test
+    void take_shouldTakeFromOneShard_whenItHasEnough() {
+        // GIVEN
+        shards.put("P1#0", 5);
+
+        // WHEN
+        boolean taken = counters.take("P1", 1, 3);
+
+        // THEN
+        assertTrue(taken);
+        assertEquals(Map.of("P1#0", 2), shards);
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(Product.class));
+    }
+
+    @Test
+    void take_shouldCombineShardsAndProduct_whenNoSingleCounterHasEnough() {
+        // GIVEN: 5 units in the shards and 2 spare on the product
+        shards.put("P1#0", 2);
+        shards.put("P1#1", 3);
+        stock = 4;
+        reserved = 2;
+
+        // WHEN
+        boolean taken = counters.take("P1", 2, 6);
+
+        // THEN: the fullest shards are emptied first and the rest comes from the product
+        assertTrue(taken);
+        assertEquals(Map.of("P1#0", 0, "P1#1", 0), shards);
+        assertEquals(3, stock);
+    }
+
+    @Test
+    void take_shouldTakeNothing_whenAllCountersTogetherHaveTooFew() {
+        // GIVEN
+        shards.put("P1#0", 2);
+        shards.put("P1#1", 1);
+        stock = 1;
+
+        // WHEN
+        boolean taken = counters.take("P1", 2, 5);
+
+        // THEN
+        assertFalse(taken);
+        assertEquals(Map.of("P1#0", 2, "P1#1", 1), shards);
+        assertEquals(1, stock);
+    }
+
+    @Test
+    void take_shouldHandBackTakenUnits_whenARaceLeavesTooFew() {
+        // GIVEN: the product read still shows units another writer has just taken
+        shards.put("P1#0", 2);
+        staleStock = 10;
+
+        // WHEN
+        boolean taken = counters.take("P1", 1, 5);
+
+        // THEN: the units taken from the shard end up on the product, none are lost
+        assertFalse(taken);
+        assertEquals(Map.of("P1#0", 0), shards);
+        assertEquals(2, stock);
+    }
+
+    @Test
+    void drain_shouldMoveShardUnitsToTheProduct_andRemoveTheShards() {
+        // GIVEN
+        shards.put("P1#0", 1);
+        shards.put("P1#1", 4);
+        shards.put("P1#2", 0);
+
+        // WHEN
+        counters.drain("P1", 1, 3);
+
+        // THEN
+        assertEquals(Map.of("P1#0", 1), shards);
+        assertEquals(4, stock);
+    }
+
+    @Test
+    void rebalance_shouldCreateShards_andSpreadTheSpareUnits() {
+        // GIVEN
+        stock = 12;
+        reserved = 2;
+
+        // WHEN
+        counters.rebalance("P1", 2);
+
+        // THEN
+        assertEquals(Map.of("P1#0", 5, "P1#1", 5), shards);
+        assertEquals(2, stock);
+    }
+
+    @Test
+    void rebalance_shouldMoveSurplusBetweenShards() {
+        // GIVEN
+        shards.put("P1#0", 9);
+        shards.put("P1#1", 1);
+
+        // WHEN
+        counters.rebalance("P1", 2);
+
+        // THEN
+        assertEquals(Map.of("P1#0", 5, "P1#1", 5), shards);
+        assertEquals(0, stock);
+    }
+
+    @Test
+    void rebalance_shouldWriteNothing_whileEveryShardHoldsHalfItsShare() {
+        // GIVEN
+        shards.put("P1#0", 4);
+        shards.put("P1#1", 2);
+
+        // WHEN
+        counters.rebalance("P1", 2);
+
+        // THEN
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), any(Class.class));
+    }
+
+    @Test
+    void shares_shouldSplitEvenly_andGiveTheRemainderToTheFirstShards() {
+        assertArrayEquals(new int[]{3, 3, 2, 2}, StockShardCounters.shares(10, 4));
+        assertArrayEquals(new int[]{25, 25, 25, 25}, StockShardCounters.shares(100, 4));
+    }
+
+    @Test
+    void shares_shouldLeaveShardsEmpty_whenFewerUnitsThanShards() {
+        assertArrayEquals(new int[]{1, 1, 0, 0, 0}, StockShardCounters.shares(2, 5));
+        assertArrayEquals(new int[]{0, 0}, StockShardCounters.shares(0, 2));
+    }
+
+    private UpdateResult updateShard(Query query, Update update) {
+        Document filter = query.getQueryObject();
+        String id = filter.getString("_id");
+        Integer current = shards.get(id);
+        Document min = filter.get("stock", Document.class);
+        if (current == null || (min != null && current < min.getInteger("$gte"))) {
+            return UpdateResult.acknowledged(0, 0L, null);
+        }
+        shards.put(id, current + inc(update));
+        return UpdateResult.acknowledged(1, 1L, null);
+    }
+
+    // the guard on the product is an $expr; only its outcome is modelled
+    private UpdateResult updateProduct(Update update) {
+        int delta = inc(update);
+        if (delta < 0 && stock - reserved < -delta) {
+            return UpdateResult.acknowledged(0, 0L, null);
+        }
+        stock += delta;
+        staleStock = null;
+        return UpdateResult.acknowledged(1, 1L, null);
+    }
+
+    private static int inc(Update update) {
+        return update.getUpdateObject().get("$inc", Document.class).getInteger("stock");
+    }
+
+    private static int shardOf(String id) {
+        return Integer.parseInt(id.substring(id.indexOf('#') + 1));
+    }
+}
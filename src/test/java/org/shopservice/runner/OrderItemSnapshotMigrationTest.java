@@ -0,0 +1,47 @@
+package org.shopservice.runner;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderItemSnapshotMigrationTest {
+
+    @Test
+    void snapshot_shouldKeepOnlyIdNamePriceAndQuantity() {
+        Document legacy = new Document("product", new Document("_id", "P1")
+                .append("name", "T-Shirt")
+                .append("brand", "ACME Apparel")
+                .append("description", "100% cotton crew neck")
+                .append("price", "19.99")
+                .append("stock", 48))
+                .append("quantity", 2);
+
+        Document snapshot = OrderItemSnapshotMigration.snapshot(legacy);
+
+        assertEquals(new Document("productId", "P1")
+                .append("name", "T-Shirt")
+                .append("unitPrice", "19.99")
+                .append("quantity", 2), snapshot);
+    }
+
+    @Test
+    void snapshot_shouldStoreObjectIdProductIdsAsHexString() {
+        ObjectId id = new ObjectId();
+        Document legacy = new Document("product", new Document("_id", id).append("price", "1.00"))
+                .append("quantity", 1);
+
+        assertEquals(id.toHexString(), OrderItemSnapshotMigration.snapshot(legacy).get("productId"));
+    }
+
+    @Test
+    void snapshot_shouldLeaveCompactLinesUnchanged() {
+        Document compact = new Document("productId", "P1")
+                .append("name", "T-Shirt")
+                .append("unitPrice", "19.99")
+                .append("quantity", 2);
+
+        assertSame(compact, OrderItemSnapshotMigration.snapshot(compact));
+    }
+}
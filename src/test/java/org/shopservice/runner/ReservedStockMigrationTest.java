@@ -0,0 +1,115 @@
+package org.shopservice.runner;
+
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.shopservice.model.Cart;
+import org.shopservice.model.CartItem;
+import org.shopservice.model.Product;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.shopservice.runner.ReservedStockMigration.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReservedStockMigrationTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulk;
+
+    @InjectMocks
+    private ReservedStockMigration migration;
+
+    @Test
+    void migrate_shouldTagEachProductUpdate_andMarkDoneLast() {
+        // GIVEN
+        Cart cart = new Cart("c1", List.of(new CartItem("P1", 2), new CartItem("P1", 1)), Instant.now(), Instant.now());
+        when(mongoTemplate.stream(any(Query.class), eq(Cart.class))).thenReturn(Stream.of(cart));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulk);
+
+        // WHEN
+        migration.migrate();
+
+        // THEN: a product already tagged by an interrupted run is not matched again
+        verify(bulk).updateOne(argThat((Query query) -> query.getQueryObject().equals(
+                        new Document("_id", "P1").append(APPLIED, new Document("$ne", MIGRATION_ID)))),
+                argThat((Update update) -> update.getUpdateObject().equals(new Document()
+                        .append("$inc", new Document("stock", 3).append("reserved", 3))
+                        .append("$addToSet", new Document(APPLIED, MIGRATION_ID)))));
+        InOrder inOrder = inOrder(mongoTemplate, bulk);
+        inOrder.verify(mongoTemplate).insert(argThat((Document lock) -> STARTED.equals(lock.get("state"))), eq(MIGRATIONS));
+        inOrder.verify(bulk).execute();
+        inOrder.verify(mongoTemplate).updateFirst(any(Query.class),
+                argThat((Update update) -> DONE.equals(update.getUpdateObject().get("$set", Document.class).get("state"))),
+                eq(MIGRATIONS));
+    }
+
+    @Test
+    void migrate_shouldWaitForAnotherInstance_untilItIsDone() {
+        // GIVEN: the lock is held, and is released as done on the second look
+        when(mongoTemplate.insert(any(Document.class), eq(MIGRATIONS))).thenThrow(new DuplicateKeyException("held"));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(MIGRATIONS)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        when(mongoTemplate.findById(MIGRATION_ID, Document.class, MIGRATIONS))
+                .thenReturn(new Document("_id", MIGRATION_ID).append("state", STARTED))
+                .thenReturn(new Document("_id", MIGRATION_ID).append("state", DONE));
+
+        // WHEN
+        migration.migrate();
+
+        // THEN
+        verify(mongoTemplate, times(2)).findById(MIGRATION_ID, Document.class, MIGRATIONS);
+        verify(mongoTemplate, never()).stream(any(Query.class), eq(Cart.class));
+    }
+
+    @Test
+    void migrate_shouldRedoTheWork_whenTheLockIsStale() {
+        // GIVEN
+        when(mongoTemplate.insert(any(Document.class), eq(MIGRATIONS))).thenThrow(new DuplicateKeyException("held"));
+        when(mongoTemplate.updateFirst(argThat((Query query) -> query.getQueryObject().containsKey("startedAt")),
+                any(Update.class), eq(MIGRATIONS))).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(mongoTemplate.stream(any(Query.class), eq(Cart.class))).thenReturn(Stream.empty());
+
+        // WHEN
+        migration.migrate();
+
+        // THEN
+        verify(mongoTemplate, never()).findById(any(), any(), any());
+        verify(mongoTemplate).updateFirst(argThat((Query query) -> !query.getQueryObject().containsKey("startedAt")),
+                any(Update.class), eq(MIGRATIONS));
+    }
+
+    @Test
+    void migrate_shouldSkip_whenRecordedBeforeTheLockExisted() {
+        // GIVEN
+        when(mongoTemplate.insert(any(Document.class), eq(MIGRATIONS))).thenThrow(new DuplicateKeyException("held"));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(MIGRATIONS)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        when(mongoTemplate.findById(MIGRATION_ID, Document.class, MIGRATIONS))
+                .thenReturn(new Document("_id", MIGRATION_ID).append("appliedAt", new Date()));
+
+        // WHEN
+        migration.migrate();
+
+        // THEN
+        verify(mongoTemplate, never()).stream(any(Query.class), eq(Cart.class));
+    }
+}
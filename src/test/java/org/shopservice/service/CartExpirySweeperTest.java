@@ -0,0 +1,116 @@
+package org.shopservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.shopservice.config.CartReservationProperties;
+import org.shopservice.model.Cart;
+import org.shopservice.model.CartItem;
+import org.shopservice.model.InventoryLog;
+import org.shopservice.repository.CartRepo;
+import org.shopservice.repository.ProductRepo;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartExpirySweeperTest {
+
+    @Mock private CartRepo cartRepo;
+    @Mock private ProductRepo productRepo;
+    @Mock private ProductCache productCache;
+    @Mock private InventoryLogWriter inventoryLogWriter;
+
+    private CartExpirySweeper sweeper;
+    private Instant now;
+
+    @BeforeEach
+    void setUp() {
+        CartReservationProperties properties =
+                new CartReservationProperties(Duration.ofMinutes(30), Duration.ofSeconds(1), 64, 2);
+        sweeper = new CartExpirySweeper(cartRepo, productRepo, productCache, inventoryLogWriter, properties);
+        now = Instant.now();
+    }
+
+    private Cart cart(String id, Instant expiresAt, CartItem... items) {
+        return new Cart(id, List.of(items), expiresAt.minus(Duration.ofMinutes(30)), expiresAt);
+    }
+
+    @Test
+    void sweep_shouldReleaseOnlyDueCartsInBulk() {
+        // GIVEN
+        Cart c1 = cart("c1", now.plusSeconds(5), new CartItem("P1", 2), new CartItem("P2", 1));
+        Cart c2 = cart("c2", now.plusSeconds(5), new CartItem("P1", 3));
+        Cart later = cart("c3", now.plusSeconds(60), new CartItem("P1", 1));
+        List.of(c1, c2, later).forEach(sweeper::schedule);
+        when(cartRepo.removeExpired(any(), any())).thenReturn(List.of(c1, c2));
+
+        // WHEN
+        sweeper.sweep(now.plusSeconds(10));
+
+        // THEN
+        verify(cartRepo).removeExpired(argThat(ids -> ids.size() == 2 && ids.containsAll(List.of("c1", "c2"))),
+                eq(now.plusSeconds(10)));
+        verify(productRepo).releaseReservedBulk(Map.of("P1", 5, "P2", 1));
+        verify(inventoryLogWriter).submitAll(argThat((List<InventoryLog> logs) -> logs.size() == 3
+                && logs.stream().allMatch(log -> log.getSourceType().equals("ExpireCart"))));
+    }
+
+    @Test
+    void sweep_shouldSkipCancelledCartsAndCartsClaimedElsewhere() {
+        // GIVEN
+        sweeper.schedule(cart("c1", now.plusSeconds(5), new CartItem("P1", 2)));
+        sweeper.schedule(cart("c2", now.plusSeconds(5), new CartItem("P1", 2)));
+        sweeper.cancel("c1");
+        when(cartRepo.removeExpired(List.of("c2"), now.plusSeconds(10))).thenReturn(List.of());
+
+        // WHEN
+        sweeper.sweep(now.plusSeconds(10));
+
+        // THEN
+        verify(productRepo, never()).releaseReservedBulk(any());
+        verify(inventoryLogWriter, never()).submitAll(any());
+    }
+
+    @Test
+    void sweep_shouldRetryUnclaimedCarts_whenRemovalFails() {
+        // GIVEN
+        Cart c1 = cart("c1", now.plusSeconds(5), new CartItem("P1", 2));
+        sweeper.schedule(c1);
+        when(cartRepo.removeExpired(any(), any()))
+                .thenThrow(new IllegalStateException("connection lost"))
+                .thenReturn(List.of(c1));
+
+        // WHEN
+        assertThrows(IllegalStateException.class, () -> sweeper.sweep(now.plusSeconds(10)));
+        sweeper.sweep(now.plusSeconds(12));
+
+        // THEN
+        verify(productRepo).releaseReservedBulk(Map.of("P1", 2));
+    }
+
+    @Test
+    void rebuild_shouldBackfillAndScheduleStoredCarts() {
+        // GIVEN
+        Cart stored = cart("c1", now.minusSeconds(5), new CartItem("P1", 2));
+        when(cartRepo.streamExpiriesBy()).thenReturn(Stream.of(stored));
+        when(cartRepo.removeExpired(List.of("c1"), now.plusSeconds(2))).thenReturn(List.of(stored));
+
+        // WHEN
+        sweeper.rebuild();
+        sweeper.sweep(now.plusSeconds(2));
+
+        // THEN
+        verify(cartRepo).backfillExpiry(Duration.ofMinutes(30));
+        verify(productRepo).releaseReservedBulk(Map.of("P1", 2));
+    }
+}
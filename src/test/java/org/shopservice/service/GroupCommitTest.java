@@ -0,0 +1,108 @@
+package org.shopservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitTest {
+
+    private final List<List<String>> groups = new CopyOnWriteArrayList<>();
+    private final CountDownLatch firstGroupStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstGroup = new CountDownLatch(1);
+
+    // blocks the first group until released, so that the next requests have to queue up
+    private void apply(List<String> group) {
+        groups.add(group);
+        if (groups.size() == 1) {
+            firstGroupStarted.countDown();
+            await(releaseFirstGroup);
+        }
+        if (group.contains("fail")) {
+            throw new IllegalStateException("write failed");
+        }
+    }
+
+    @Test
+    void submit_shouldApplyAlone_whenIdle() {
+        GroupCommit<String> commit = new GroupCommit<>(groups::add, 10);
+
+        commit.submit("a");
+        commit.submit("b");
+
+        assertEquals(List.of(List.of("a"), List.of("b")), groups);
+    }
+
+    @Test
+    void submit_shouldGroupRequestsQueuedWhileAGroupIsApplied() throws Exception {
+        GroupCommit<String> commit = new GroupCommit<>(this::apply, 10);
+
+        CompletableFuture<Void> a = submitAndWait(commit, "a", () -> firstGroupStarted.getCount() == 0);
+        CompletableFuture<Void> b = submitAndWait(commit, "b", () -> commit.waiting() == 1);
+        CompletableFuture<Void> c = submitAndWait(commit, "c", () -> commit.waiting() == 2);
+        releaseFirstGroup.countDown();
+        CompletableFuture.allOf(a, b, c).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(List.of("a"), List.of("b", "c")), groups);
+    }
+
+    @Test
+    void submit_shouldSplitQueueIntoGroupsOfMaxSize() throws Exception {
+        GroupCommit<String> commit = new GroupCommit<>(this::apply, 2);
+
+        CompletableFuture<Void> a = submitAndWait(commit, "a", () -> firstGroupStarted.getCount() == 0);
+        CompletableFuture<Void> b = submitAndWait(commit, "b", () -> commit.waiting() == 1);
+        CompletableFuture<Void> c = submitAndWait(commit, "c", () -> commit.waiting() == 2);
+        CompletableFuture<Void> d = submitAndWait(commit, "d", () -> commit.waiting() == 3);
+        releaseFirstGroup.countDown();
+        CompletableFuture.allOf(a, b, c, d).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(List.of("a"), List.of("b", "c"), List.of("d")), groups);
+    }
+
+    @Test
+    void submit_shouldThrowGroupFailureToEveryRequestInIt() throws Exception {
+        GroupCommit<String> commit = new GroupCommit<>(this::apply, 10);
+
+        CompletableFuture<Void> a = submitAndWait(commit, "a", () -> firstGroupStarted.getCount() == 0);
+        CompletableFuture<Void> b = submitAndWait(commit, "b", () -> commit.waiting() == 1);
+        CompletableFuture<Void> failing = submitAndWait(commit, "fail", () -> commit.waiting() == 2);
+        releaseFirstGroup.countDown();
+
+        a.get(5, TimeUnit.SECONDS);
+        assertInstanceOf(IllegalStateException.class,
+                assertThrows(ExecutionException.class, () -> b.get(5, TimeUnit.SECONDS)).getCause());
+        assertInstanceOf(IllegalStateException.class,
+                assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS)).getCause());
+        // the failed group handed leadership on
+        commit.submit("d");
+        assertEquals(List.of("d"), groups.get(groups.size() - 1));
+    }
+
+    // submits from a new thread and waits until the request is being applied or queued
+    private static CompletableFuture<Void> submitAndWait(GroupCommit<String> commit, String request,
+                                                         BooleanSupplier queued) throws InterruptedException {
+        CompletableFuture<Void> done = CompletableFuture.runAsync(() -> commit.submit(request),
+                runnable -> new Thread(runnable).start());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!queued.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        return done;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
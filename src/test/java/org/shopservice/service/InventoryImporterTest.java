@@ -0,0 +1,127 @@
+package org.shopservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.shopservice.model.InventoryImportResult;
+import org.shopservice.model.InventoryImportResult.Rejection;
+import org.shopservice.model.InventoryLog;
+import org.shopservice.model.Product;
+import org.shopservice.repository.ProductRepo;
+import org.shopservice.service.InventoryImporter.Format;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryImporterTest {
+
+    @Mock private ProductRepo productRepo;
+    @Mock private ProductCache productCache;
+    @Mock private InventoryLogWriter inventoryLogWriter;
+
+    private InventoryImporter importer;
+
+    @BeforeEach
+    void setUp() {
+        importer = new InventoryImporter(productRepo, productCache, inventoryLogWriter, new ObjectMapper());
+    }
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void existing(String... ids) {
+        when(productRepo.findIdsByIdIn(any())).thenAnswer(inv -> ((Collection<String>) inv.getArgument(0)).stream()
+                .filter(Set.of(ids)::contains)
+                .map(id -> new Product(id, null, null, null, null, null, null, 0))
+                .toList());
+    }
+
+    @Test
+    void importStock_shouldApplyNetDeltaPerProductInBulk() throws Exception {
+        // GIVEN
+        existing("P1", "P2");
+        when(productRepo.decrementStockBulk(Map.of("P2", 3))).thenReturn(Set.of());
+
+        // WHEN
+        InventoryImportResult result = importer.importStock(body("""
+                productId,delta
+                P1,10
+                P2,-5
+                P1,5
+
+                P2,2
+                """), Format.CSV);
+
+        // THEN
+        verify(productRepo).incrementStockBulk(Map.of("P1", 15));
+        verify(productRepo).decrementStockBulk(Map.of("P2", 3));
+        verify(productRepo, never()).incrementStock(any(), anyInt());
+        verify(productCache).evictAll(List.of("P1", "P2"));
+        verify(inventoryLogWriter).submitAll(argThat((List<InventoryLog> logs) -> logs.size() == 2
+                && logs.get(0).getDelta() == 15 && logs.get(1).getDelta() == -3));
+        assertEquals(6, result.getLinesRead());
+        assertEquals(4, result.getLinesApplied());
+        assertEquals(0, result.getLinesRejected());
+        assertEquals(2, result.getProductsUpdated());
+    }
+
+    @Test
+    void importStock_shouldReportMalformedLinesAndUnusableProducts() throws Exception {
+        // GIVEN
+        existing("P1", "P2");
+        when(productRepo.decrementStockBulk(Map.of("P2", 4))).thenReturn(Set.of("P2"));
+
+        // WHEN
+        InventoryImportResult result = importer.importStock(body("""
+                {"productId": "P1", "delta": 3}
+                {"productId": "P2", "delta": -4}
+                {"productId": "GONE", "delta": 1}
+                {"productId": "P1", "delta": 1.5}
+                not json
+                {"productId": "GONE", "delta": 2}
+                """), Format.NDJSON);
+
+        // THEN
+        verify(productRepo).incrementStockBulk(Map.of("P1", 3));
+        assertEquals(1, result.getLinesApplied());
+        assertEquals(5, result.getLinesRejected());
+        assertEquals(1, result.getProductsUpdated());
+        assertEquals(List.of(
+                new Rejection(4, null, "Expected {\"productId\": ..., \"delta\": ...}"),
+                new Rejection(5, null, "Malformed JSON"),
+                new Rejection(3, "GONE", "Product not found"),
+                new Rejection(2, "P2", "Insufficient stock for net goods out of 4")), result.getRejections());
+    }
+
+    @Test
+    void importStock_shouldWriteInChunks() throws Exception {
+        // GIVEN
+        existing();
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < InventoryImporter.CHUNK_SIZE + 1; i++) {
+            csv.append("P").append(i).append(",1\n");
+        }
+
+        // WHEN
+        InventoryImportResult result = importer.importStock(body(csv.toString()), Format.CSV);
+
+        // THEN
+        verify(productRepo, times(2)).findIdsByIdIn(any());
+        assertEquals(InventoryImporter.CHUNK_SIZE + 1, result.getLinesRejected());
+        assertEquals(InventoryImporter.MAX_REPORTED_REJECTIONS, result.getRejections().size());
+    }
+}
@@ -0,0 +1,165 @@
+package org.shopservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.shopservice.config.InventoryLogProperties;
+import org.shopservice.model.InventoryLog;
+import org.shopservice.repository.InventoryLogRepo;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class InventoryLogWriterTest {
+
+    private final InventoryLogRepo inventoryLogRepo = mock(InventoryLogRepo.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path tempDir;
+
+    private InventoryLogWriter writer(boolean writeBehind, String spillFile) {
+        return new InventoryLogWriter(inventoryLogRepo, objectMapper,
+                new InventoryLogProperties(writeBehind, 100, 10, Duration.ofHours(1), spillFile));
+    }
+
+    private static InventoryLog log(int delta) {
+        return new InventoryLog(null, Instant.now(), delta, "GoodsIn", "P1");
+    }
+
+    @Test
+    void submit_shouldInsertSynchronously_whenWriteBehindDisabled() throws Exception {
+        // GIVEN
+        InventoryLogWriter writer = writer(false, "");
+        writer.start();
+
+        // WHEN
+        writer.submit(log(5));
+
+        // THEN
+        verify(inventoryLogRepo).insert(argThat((List<InventoryLog> logs) ->
+                logs.size() == 1 && logs.get(0).getId() != null));
+    }
+
+    @Test
+    void flush_shouldInsertQueuedRecordsInOneBatch() throws Exception {
+        // GIVEN
+        InventoryLogWriter writer = writer(true, "");
+        writer.start();
+        writer.submitAll(List.of(log(1), log(2), log(3)));
+
+        // WHEN
+        writer.flush();
+
+        // THEN
+        verify(inventoryLogRepo).insert(argThat((List<InventoryLog> logs) -> logs.size() == 3));
+        writer.stop();
+    }
+
+    @Test
+    void flush_shouldRetryFailedBatch() throws Exception {
+        // GIVEN
+        InventoryLogWriter writer = writer(true, "");
+        writer.start();
+        when(inventoryLogRepo.insert(anyList())).thenThrow(new IllegalStateException("db down"));
+        writer.submit(log(1));
+
+        // WHEN
+        writer.flush();
+        writer.flush();
+
+        // THEN
+        verify(inventoryLogRepo).saveAll(argThat((List<InventoryLog> logs) -> logs.size() == 1));
+        writer.stop();
+    }
+
+    @Test
+    void start_shouldReplaySpillFileLeftByPreviousRun() throws Exception {
+        // GIVEN: a run that queued records but never flushed them
+        Path spillFile = tempDir.resolve("inventory-log.ndjson");
+        InventoryLogWriter crashed = writer(true, spillFile.toString());
+        crashed.start();
+        crashed.submitAll(List.of(log(1), log(2)));
+        assertEquals(2, Files.readAllLines(spillFile).size());
+
+        // WHEN
+        InventoryLogWriter restarted = writer(true, spillFile.toString());
+        restarted.start();
+
+        // THEN
+        verify(inventoryLogRepo).saveAll(argThat((List<InventoryLog> logs) -> logs.size() == 2));
+        assertEquals(0, Files.size(spillFile));
+        restarted.stop();
+    }
+
+    @Test
+    void flush_shouldDropTheSpilledRecordsItWrote_whileTheQueueKeepsFilling() throws Exception {
+        // GIVEN
+        Path spillFile = tempDir.resolve("inventory-log.ndjson");
+        InventoryLogWriter writer = writer(true, spillFile.toString());
+        writer.start();
+        writer.submitAll(List.of(log(1), log(2)));
+
+        // WHEN
+        writer.flush();
+        writer.submit(log(3));
+
+        // THEN: only the record queued after the flush is left on disk
+        assertEquals(1, Files.readAllLines(spillFile).size());
+        try (var files = Files.list(tempDir)) {
+            assertEquals(List.of(spillFile), files.toList());
+        }
+        writer.stop();
+    }
+
+    @Test
+    void start_shouldReplaySealedSegments_whenAFlushFailedBeforeTheCrash() throws Exception {
+        // GIVEN
+        Path spillFile = tempDir.resolve("inventory-log.ndjson");
+        InventoryLogWriter crashed = writer(true, spillFile.toString());
+        crashed.start();
+        when(inventoryLogRepo.insert(anyList())).thenThrow(new IllegalStateException("db down"));
+        crashed.submitAll(List.of(log(1), log(2)));
+        crashed.flush();
+        crashed.submit(log(3));
+
+        // WHEN
+        InventoryLogWriter restarted = writer(true, spillFile.toString());
+        restarted.start();
+
+        // THEN
+        verify(inventoryLogRepo).saveAll(argThat((List<InventoryLog> logs) -> logs.size() == 3));
+        try (var files = Files.list(tempDir)) {
+            assertEquals(List.of(spillFile), files.toList());
+        }
+        restarted.stop();
+    }
+
+    @Test
+    void submit_shouldWaitForRoom_whenTheQueueIsFullAndCannotBeFlushed() throws Exception {
+        // GIVEN: room for one record, and the retry of a failed batch fails once more
+        InventoryLogWriter writer = new InventoryLogWriter(inventoryLogRepo, objectMapper,
+                new InventoryLogProperties(true, 1, 10, Duration.ofMillis(10), ""));
+        writer.start();
+        when(inventoryLogRepo.insert(anyList())).thenThrow(new IllegalStateException("db down")).thenReturn(List.of());
+        when(inventoryLogRepo.saveAll(anyList())).thenThrow(new IllegalStateException("db down")).thenReturn(List.of());
+        writer.submit(log(1));
+        writer.flush();
+        writer.submit(log(2));
+
+        // WHEN
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> writer.submit(log(3)));
+
+        // THEN
+        writer.stop();
+        verify(inventoryLogRepo, atLeast(2)).saveAll(anyList());
+    }
+}
@@ -0,0 +1,118 @@
+package org.shopservice.service;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.shopservice.model.Product;
+import org.shopservice.repository.ProductRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+        // change streams need a replica set: run the embedded mongod as a single-node one
+        "de.flapdoodle.mongodb.embedded.storage.repl-set-name=rs0",
+        "shop.product-cache.change-stream=true"
+})
+class ProductChangeStreamListenerTest {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Test
+    void remoteWrite_shouldEvictCachedProduct() throws Exception {
+        // GIVEN: a product this node has cached
+        productRepo.save(new Product("cs-1", "Streamed", "Acme", "Desc", "red", "M", BigDecimal.ONE, 10));
+        assertEquals(10, productCache.findById("cs-1").orElseThrow().getStock());
+
+        // WHEN: another instance writes the document behind this node's back
+        // THEN: the change stream evicts it and the next read sees the new stock
+        long deadline = System.currentTimeMillis() + 10_000;
+        int stock = productCache.findById("cs-1").orElseThrow().getStock();
+        while (stock != 3 && System.currentTimeMillis() < deadline) {
+            // repeated, because the stream may still be opening when the first write lands
+            mongoTemplate.updateFirst(query(where("_id").is("cs-1")), new Update().set("stock", 3), Product.class);
+            Thread.sleep(200);
+            stock = productCache.findById("cs-1").orElseThrow().getStock();
+        }
+        assertEquals(3, stock);
+    }
+
+    @Test
+    void remoteWrite_shouldStillEvict_afterADocumentWithAForeignIdType() throws Exception {
+        // GIVEN: a document whose _id is not a string, which no product id can match
+        productRepo.save(new Product("cs-3", "Streamed", "Acme", "Desc", "red", "M", BigDecimal.ONE, 10));
+        assertEquals(10, productCache.findById("cs-3").orElseThrow().getStock());
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Product.class))
+                .insertOne(new Document("_id", 42).append("name", "Foreign"));
+
+        // WHEN
+        long deadline = System.currentTimeMillis() + 10_000;
+        int stock = productCache.findById("cs-3").orElseThrow().getStock();
+        while (stock != 4 && System.currentTimeMillis() < deadline) {
+            mongoTemplate.updateFirst(query(where("_id").is("cs-3")), new Update().set("stock", 4), Product.class);
+            Thread.sleep(200);
+            stock = productCache.findById("cs-3").orElseThrow().getStock();
+        }
+
+        // THEN: the listener is still following the stream
+        assertEquals(4, stock);
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Product.class)).deleteOne(new Document("_id", 42));
+    }
+
+    @Test
+    void remoteRename_shouldReachTheSearchIndex() throws Exception {
+        // GIVEN
+        productRepo.save(new Product("cs-4", "Streamed", "Acme", "Desc", "red", "M", BigDecimal.ONE, 1));
+
+        // WHEN: a raw update, which emits no mapping event on any instance
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!renamed() && System.currentTimeMillis() < deadline) {
+            mongoTemplate.updateFirst(query(where("_id").is("cs-4")), new Update().set("name", "Quasar"), Product.class);
+            Thread.sleep(200);
+        }
+
+        // THEN
+        assertTrue(renamed());
+    }
+
+    private boolean renamed() {
+        return productSearchIndex.search("quasar", PageRequest.of(0, 10)).getContent().contains("cs-4");
+    }
+
+    @Test
+    void resumeToken_shouldBePersisted() throws Exception {
+        // WHEN
+        productRepo.save(new Product("cs-2", "Streamed", "Acme", "Desc", "red", "M", BigDecimal.ONE, 1));
+
+        // THEN
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!hasStoredToken() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(200);
+        }
+        assertTrue(hasStoredToken());
+    }
+
+    private boolean hasStoredToken() {
+        return mongoTemplate.getCollection(ProductChangeStreamListener.TOKEN_COLLECTION)
+                .countDocuments(new Document("_id", ProductChangeStreamListener.SUBSCRIPTION_ID)) > 0;
+    }
+}
@@ -0,0 +1,60 @@
+package org.shopservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shopservice.model.Product;
+import org.shopservice.service.ProductFacetIndex.Facet;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductFacetIndexTest {
+
+    private final ProductFacetIndex index = new ProductFacetIndex();
+
+    private static Product product(String id, String color, String size, String brand) {
+        return new Product(id, "Name", brand, "Desc", color, size, BigDecimal.ONE, 1);
+    }
+
+    @BeforeEach
+    void setUp() {
+        index.rebuild(List.of(
+                product("P1", "Blue", "32", "DenimCo"),
+                product("P2", "Black", "32", "DenimCo"),
+                product("P3", "Blue", "M", "ACME"),
+                product("P4", "Red", "M", "ACME")));
+    }
+
+    @Test
+    void filter_shouldIntersectFacetsAndUniteValues() {
+        assertEquals(List.of("P1"), index.filter(Map.of(Facet.COLOR, List.of("blue"), Facet.SIZE, List.of("32"))));
+        assertEquals(List.of("P1", "P2", "P3"), index.filter(Map.of(Facet.COLOR, List.of("Blue", "Black"))));
+        assertEquals(List.of("P1", "P2", "P3", "P4"), index.filter(Map.of()));
+        assertTrue(index.filter(Map.of(Facet.BRAND, List.of("Nobody"))).isEmpty());
+    }
+
+    @Test
+    void counts_shouldApplySelectionOfOtherFacetsOnly() {
+        Map<Facet, Map<String, Integer>> counts = index.counts(Map.of(Facet.COLOR, List.of("Blue")));
+
+        assertEquals(Map.of("Black", 1, "Blue", 2, "Red", 1), counts.get(Facet.COLOR));
+        assertEquals(Map.of("32", 1, "M", 1), counts.get(Facet.SIZE));
+        assertEquals(Map.of("ACME", 1, "DenimCo", 1), counts.get(Facet.BRAND));
+    }
+
+    @Test
+    void putAndRemove_shouldMaintainBitmapsAndReuseOrdinals() {
+        index.put(product("P1", "Red", "32", "DenimCo"));
+        assertEquals(List.of("P1", "P4"), index.filter(Map.of(Facet.COLOR, List.of("red"))));
+
+        index.remove("P2");
+        assertFalse(index.counts(Map.of()).get(Facet.COLOR).containsKey("Black"));
+
+        index.put(product("P5", "Green", "S", "Nova"));
+        assertEquals(List.of("P5"), index.filter(Map.of(Facet.COLOR, List.of("green"))));
+        assertEquals(4, index.filter(Map.of()).size());
+    }
+}
@@ -0,0 +1,62 @@
+package org.shopservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shopservice.model.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSearchIndexTest {
+
+    private final ProductSearchIndex index = new ProductSearchIndex();
+
+    @BeforeEach
+    void setUp() {
+        index.rebuild(List.of(
+                new Product("P1", "T-Shirt", "ACME Apparel", "100% cotton crew neck t-shirt", "Red", "M", BigDecimal.ONE, 1),
+                new Product("P2", "Slim Jeans", "DenimCo", "Blue slim-fit denim jeans", "Blue", "32", BigDecimal.ONE, 1),
+                new Product("P3", "Baseball Cap", "HeadGear", "Classic cap with blue stitching", "Navy", "One-Size", BigDecimal.ONE, 1)));
+    }
+
+    @Test
+    void search_shouldMatchAllFields() {
+        assertEquals(List.of("P2"), index.search("denimco", PageRequest.of(0, 10)).getContent());
+        assertEquals(List.of("P3"), index.search("navy", PageRequest.of(0, 10)).getContent());
+        assertEquals(List.of("P2"), index.search("32", PageRequest.of(0, 10)).getContent());
+    }
+
+    @Test
+    void search_shouldRankFieldMatchesAboveDescriptionMatches() {
+        // P2 is blue by color and description, P3 only mentions it in the description
+        assertEquals(List.of("P2", "P3"), index.search("Blue", PageRequest.of(0, 10)).getContent());
+    }
+
+    @Test
+    void search_shouldRequireEveryTermAndMatchPrefixes() {
+        assertEquals(List.of("P2"), index.search("blue jea", PageRequest.of(0, 10)).getContent());
+        assertTrue(index.search("blue shirt", PageRequest.of(0, 10)).isEmpty());
+    }
+
+    @Test
+    void search_shouldPaginate() {
+        Page<String> second = index.search("blue", PageRequest.of(1, 1));
+
+        assertEquals(List.of("P3"), second.getContent());
+        assertEquals(2, second.getTotalElements());
+    }
+
+    @Test
+    void putAndRemove_shouldUpdateIndexIncrementally() {
+        index.put(new Product("P1", "Hoodie", "ACME Apparel", "Warm hoodie", "Blue", "L", BigDecimal.ONE, 1));
+        assertTrue(index.search("shirt", PageRequest.of(0, 10)).isEmpty());
+        assertEquals(3, index.search("blue", PageRequest.of(0, 10)).getTotalElements());
+
+        index.remove("P2");
+        assertEquals(List.of("P1", "P3"), index.search("blue", PageRequest.of(0, 10)).getContent());
+    }
+}
@@ -0,0 +1,55 @@
+package org.shopservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shopservice.model.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSuggestIndexTest {
+
+    private final ProductSuggestIndex index = new ProductSuggestIndex();
+
+    private static Product product(String id, String name, String brand) {
+        return new Product(id, name, brand, "Desc", "Red", "M", BigDecimal.ONE, 1);
+    }
+
+    @BeforeEach
+    void setUp() {
+        index.rebuild(List.of(
+                product("P1", "T-Shirt", "ACME Apparel"),
+                product("P2", "Slim Jeans", "DenimCo"),
+                product("P3", "Tank Top", "ACME Apparel"),
+                product("P4", "Tote Bag", "Totes")));
+    }
+
+    @Test
+    void suggest_shouldMatchPhraseAndWordPrefixes() {
+        assertEquals(List.of("Slim Jeans"), index.suggest("jea", 10));
+        assertEquals(List.of("Slim Jeans"), index.suggest("SLIM j", 10));
+        assertEquals(List.of("T-Shirt"), index.suggest("shi", 10));
+    }
+
+    @Test
+    void suggest_shouldRankByNumberOfProductsThenAlphabetically() {
+        assertEquals(List.of("ACME Apparel"), index.suggest("a", 10));
+        assertEquals(List.of("T-Shirt", "Tank Top", "Tote Bag", "Totes"), index.suggest("t", 10));
+        assertEquals(List.of("T-Shirt", "Tank Top"), index.suggest("t", 2));
+    }
+
+    @Test
+    void putAndRemove_shouldUpdateSuggestionsIncrementally() {
+        index.put(product("P2", "Skinny Jeans", "DenimCo"));
+        assertEquals(List.of("Skinny Jeans"), index.suggest("jea", 10));
+
+        index.remove("P1");
+        assertEquals(List.of("ACME Apparel"), index.suggest("acme", 10));
+        assertTrue(index.suggest("shirt", 10).isEmpty());
+
+        index.remove("P3");
+        assertTrue(index.suggest("acme", 10).isEmpty());
+    }
+}
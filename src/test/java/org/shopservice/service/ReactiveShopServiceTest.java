@@ -0,0 +1,120 @@
+package org.shopservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.shopservice.exception.CartNotFoundException;
+import org.shopservice.exception.InsufficientStockException;
+import org.shopservice.exception.OrderNotFoundException;
+import org.shopservice.exception.ProductNotFoundException;
+import org.shopservice.model.*;
+import org.shopservice.model.enums.OrderStatus;
+import org.shopservice.repository.ReactiveOrderRepo;
+import org.shopservice.repository.ReactiveProductRepo;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveShopServiceTest {
+
+    @Mock private ReactiveOrderRepo orderRepo;
+    @Mock private ReactiveProductRepo productRepo;
+    @Mock private ShopService shopService;
+
+    @InjectMocks private ReactiveShopService reactiveShopService;
+
+    private Product p1;
+
+    @BeforeEach
+    void setUp() {
+        p1 = new Product("P1", "Test", "Brand", "Desc", "Color", "Size", new BigDecimal("10.00"), 5);
+    }
+
+    @Test
+    void getOrderById_shouldFail_whenOrderDoesNotExist() {
+        // GIVEN
+        when(orderRepo.findById("missing")).thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        assertThrows(OrderNotFoundException.class, () -> reactiveShopService.getOrderById("missing").block());
+    }
+
+    @Test
+    void getProductById_shouldFail_whenProductDoesNotExist() {
+        // GIVEN
+        when(productRepo.findById("missing")).thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        assertThrows(ProductNotFoundException.class, () -> reactiveShopService.getProductById("missing").block());
+    }
+
+    @Test
+    void placeOrder_shouldPlaceTheOrderThroughTheBlockingService_offTheCallingThread() {
+        // GIVEN
+        List<OrderItem> items = List.of(new OrderItem("P1", null, null, 1));
+        Order placed = new Order("o1", List.of(OrderItem.of(p1, 1)), OrderStatus.PROCESSING, Instant.now());
+        Thread caller = Thread.currentThread();
+        when(shopService.placeOrder("o1", items, OrderStatus.PROCESSING)).thenAnswer(inv -> {
+            assertNotSame(caller, Thread.currentThread());
+            return placed;
+        });
+
+        // WHEN
+        Order order = reactiveShopService.placeOrder("o1", items, OrderStatus.PROCESSING).block();
+
+        // THEN
+        assertSame(placed, order);
+    }
+
+    @Test
+    void placeOrder_shouldNotTouchStock_untilSubscribed() {
+        // WHEN
+        reactiveShopService.placeOrder("o1", List.of(new OrderItem("P1", null, null, 1)), OrderStatus.PROCESSING);
+
+        // THEN
+        verifyNoInteractions(shopService);
+    }
+
+    @Test
+    void placeOrder_shouldFail_whenTheBlockingServiceRejectsIt() {
+        // GIVEN
+        List<OrderItem> items = List.of(new OrderItem("P1", null, null, 9));
+        when(shopService.placeOrder("o1", items, OrderStatus.PROCESSING))
+                .thenThrow(new InsufficientStockException("Insufficient stock for product: P1"));
+
+        // WHEN / THEN
+        assertThrows(InsufficientStockException.class,
+                () -> reactiveShopService.placeOrder("o1", items, OrderStatus.PROCESSING).block());
+    }
+
+    @Test
+    void checkoutCart_shouldCheckOutThroughTheBlockingService() {
+        // GIVEN
+        Order placed = new Order("c1", List.of(OrderItem.of(p1, 2)), OrderStatus.PROCESSING, Instant.now());
+        when(shopService.checkoutCart("c1")).thenReturn(placed);
+
+        // WHEN
+        Order order = reactiveShopService.checkoutCart("c1").block();
+
+        // THEN
+        assertSame(placed, order);
+    }
+
+    @Test
+    void checkoutCart_shouldFail_whenCartDoesNotExist() {
+        // GIVEN
+        when(shopService.checkoutCart("missing")).thenThrow(new CartNotFoundException("missing"));
+
+        // WHEN / THEN
+        assertThrows(CartNotFoundException.class, () -> reactiveShopService.checkoutCart("missing").block());
+    }
+}
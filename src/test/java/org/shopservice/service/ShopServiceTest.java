@@ -3,25 +3,38 @@ package org.shopservice.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.shopservice.exception.CartNotFoundException;
 import org.shopservice.exception.InsufficientStockException;
 import org.shopservice.exception.OrderNotFoundException;
 import org.shopservice.exception.ProductNotFoundException;
 import org.shopservice.model.*;
 import org.shopservice.model.enums.OrderStatus;
 import org.shopservice.repository.CartRepo;
-import org.shopservice.repository.InventoryLogRepo;
 import org.shopservice.repository.OrderRepo;
 import org.shopservice.repository.ProductRepo;
+import org.shopservice.service.ProductFacetIndex.Facet;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -31,8 +44,12 @@ class ShopServiceTest {
 
     @Mock private OrderRepo orderRepo;
     @Mock private ProductRepo productRepo;
+    @Mock private ProductCache productCache;
+    @Mock private ProductSearchIndex productSearchIndex;
+    @Mock private ProductFacetIndex productFacetIndex;
     @Mock private CartRepo cartRepo;
-    @Mock private InventoryLogRepo inventoryLogRepo;
+    @Mock private CartExpirySweeper cartExpirySweeper;
+    @Mock private InventoryLogWriter inventoryLogWriter;
 
     @InjectMocks private ShopService shopService;
 
@@ -42,7 +59,7 @@ class ShopServiceTest {
     @BeforeEach
     void setUp() {
         product = new Product("P1", "Test", "Brand", "Desc", "Color", "Size", new BigDecimal("10.00"), 5);
-        orderItem = new OrderItem(product, 2);
+        orderItem = OrderItem.of(product, 2);
     }
 
     @Test
@@ -59,6 +76,21 @@ class ShopServiceTest {
         verify(orderRepo).findAll();
     }
 
+    @Test
+    void getOrders_shouldReadPageAfterGivenId() {
+        // GIVEN
+        List<Order> page = List.of(new Order("o2", List.of(orderItem), OrderStatus.PROCESSING, Instant.now()));
+        Pageable firstTwo = PageRequest.of(0, 2, Sort.by("id"));
+        when(orderRepo.findByIdGreaterThan("o1", firstTwo)).thenReturn(page);
+
+        // WHEN
+        List<Order> result = shopService.getOrders("o1", 2);
+
+        // THEN
+        assertEquals(page, result);
+        verify(orderRepo, never()).findAll();
+    }
+
     @Test
     void getOrderById_shouldReturnOrder_whenExists() {
         // GIVEN
@@ -86,7 +118,8 @@ class ShopServiceTest {
     @Test
     void placeOrder_shouldSaveOrderAndReduceStock() {
         // GIVEN
-        when(productRepo.findById("P1")).thenReturn(Optional.of(product));
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product));
+        when(productRepo.decrementStockBulk(Map.of("P1", 2))).thenReturn(Set.of());
         when(orderRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
         // WHEN
@@ -94,57 +127,297 @@ class ShopServiceTest {
 
         // THEN
         assertEquals("o1", result.getId());
-        assertEquals(3, product.getStock());
-        verify(inventoryLogRepo).save(any());
+        verify(productRepo).decrementStockBulk(Map.of("P1", 2));
+        verify(productRepo, never()).save(any());
+        verify(inventoryLogWriter).submitAll(argThat((List<InventoryLog> logs) -> logs.size() == 1));
         verify(orderRepo).save(any());
     }
 
+    @Test
+    void placeOrder_shouldSaveOrderWithoutTouchingStock_whenItHasNoItems() {
+        // GIVEN
+        when(orderRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        // WHEN
+        Order result = shopService.placeOrder("o1", List.of(), OrderStatus.PROCESSING);
+
+        // THEN
+        assertEquals(List.of(), result.getItems());
+        verifyNoInteractions(productRepo, productCache);
+    }
+
+    @Test
+    void placeOrder_shouldSnapshotNameAndPriceFromCatalog() {
+        // GIVEN
+        OrderItem requested = new OrderItem("P1", "stale name", new BigDecimal("0.01"), 3);
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product));
+        when(productRepo.decrementStockBulk(Map.of("P1", 3))).thenReturn(Set.of());
+        when(orderRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        // WHEN
+        Order result = shopService.placeOrder("o1", List.of(requested), OrderStatus.PROCESSING);
+
+        // THEN
+        assertEquals(List.of(new OrderItem("P1", "Test", new BigDecimal("10.00"), 3)), result.getItems());
+        assertEquals(new BigDecimal("30.00"), result.totalPrice());
+    }
+
+    @Test
+    void placeOrders_shouldServeOrdersInTurnAndDecrementStockOnce() {
+        // GIVEN stock of 5, and three orders asking for 2, 4 and 3
+        when(orderRepo.findIdsByIdIn(any())).thenReturn(List.of());
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product));
+        when(productCache.reload(any())).thenReturn(Map.of("P1", product));
+        when(productRepo.decrementStockBulk(any())).thenReturn(Set.of());
+        List<OrderRequest> requests = List.of(
+                new OrderRequest("a", OrderStatus.PROCESSING, List.of(OrderItem.of(product, 2))),
+                new OrderRequest("b", OrderStatus.PROCESSING, List.of(OrderItem.of(product, 4))),
+                new OrderRequest("c", OrderStatus.PROCESSING, List.of(OrderItem.of(product, 3))));
+
+        // WHEN
+        List<OrderResult> results = shopService.placeOrders(requests);
+
+        // THEN
+        assertEquals(List.of(
+                OrderResult.placed("a"),
+                OrderResult.rejected("b", "Insufficient stock for product: P1"),
+                OrderResult.placed("c")), results);
+        verify(productRepo).decrementStockBulk(Map.of("P1", 5));
+        verify(orderRepo).insertUnlessExists(argThat((List<Order> orders) -> orders.size() == 2));
+        verify(orderRepo, never()).save(any());
+    }
+
+    @Test
+    void placeOrders_shouldRejectAndRestock_ordersInsertedConcurrently() {
+        // GIVEN "b" is inserted by someone else after the existence check
+        when(orderRepo.findIdsByIdIn(any())).thenReturn(List.of());
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product));
+        when(productRepo.decrementStockBulk(any())).thenReturn(Set.of());
+        when(orderRepo.insertUnlessExists(anyList())).thenReturn(Set.of("b"));
+        List<OrderRequest> requests = List.of(
+                new OrderRequest("a", OrderStatus.PROCESSING, List.of(OrderItem.of(product, 1))),
+                new OrderRequest("b", OrderStatus.PROCESSING, List.of(OrderItem.of(product, 2))));
+
+        // WHEN
+        List<OrderResult> results = shopService.placeOrders(requests);
+
+        // THEN
+        assertEquals(List.of(
+                OrderResult.placed("a"),
+                OrderResult.rejected("b", "Order already exists: b")), results);
+        verify(productRepo).decrementStockBulk(Map.of("P1", 3));
+        verify(productRepo).incrementStockBulk(Map.of("P1", 2));
+        verify(inventoryLogWriter).submitAll(argThat((List<InventoryLog> logs) -> logs.size() == 1
+                && logs.get(0).getSourceId().equals("a")));
+    }
+
+    @Test
+    void placeOrders_shouldReturnAllStock_whenTheInsertThrows() {
+        // GIVEN
+        when(orderRepo.findIdsByIdIn(any())).thenReturn(List.of());
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product));
+        when(productRepo.decrementStockBulk(any())).thenReturn(Set.of());
+        when(orderRepo.insertUnlessExists(anyList())).thenThrow(new DataAccessResourceFailureException("down"));
+        List<OrderRequest> requests = List.of(
+                new OrderRequest("a", OrderStatus.PROCESSING, List.of(OrderItem.of(product, 1))),
+                new OrderRequest("b", OrderStatus.PROCESSING, List.of(OrderItem.of(product, 2))));
+
+        // WHEN & THEN
+        assertThrows(DataAccessResourceFailureException.class, () -> shopService.placeOrders(requests));
+        InOrder inOrder = inOrder(productRepo, orderRepo);
+        inOrder.verify(productRepo).decrementStockBulk(Map.of("P1", 3));
+        inOrder.verify(orderRepo).insertUnlessExists(anyList());
+        inOrder.verify(productRepo).incrementStockBulk(Map.of("P1", 3));
+        verify(productCache, atLeastOnce()).evictAll(Set.of("P1"));
+        verifyNoInteractions(inventoryLogWriter);
+    }
+
+    @Test
+    void placeOrders_shouldRejectInvalidDuplicateAndExistingOrders() {
+        // GIVEN
+        when(orderRepo.findIdsByIdIn(any())).thenReturn(List.of(
+                new Order("old", null, null, null)));
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product));
+        when(productRepo.decrementStockBulk(any())).thenReturn(Set.of());
+        List<OrderRequest> requests = List.of(
+                new OrderRequest("a", OrderStatus.PROCESSING, List.of(OrderItem.of(product, 1))),
+                new OrderRequest("a", OrderStatus.PROCESSING, List.of(OrderItem.of(product, 1))),
+                new OrderRequest("old", OrderStatus.PROCESSING, List.of(OrderItem.of(product, 1))),
+                new OrderRequest("empty", OrderStatus.PROCESSING, List.of()),
+                new OrderRequest("zero", OrderStatus.PROCESSING, List.of(OrderItem.of(product, 0))));
+
+        // WHEN
+        List<OrderResult> results = shopService.placeOrders(requests);
+
+        // THEN
+        assertEquals(List.of(true, false, false, false, false),
+                results.stream().map(OrderResult::isPlaced).toList());
+        assertEquals("Order already exists: old", results.get(2).getError());
+        verify(productRepo).decrementStockBulk(Map.of("P1", 1));
+    }
+
+    @Test
+    void placeOrders_shouldReallocate_whenConcurrentWriteWins() {
+        // GIVEN the first bulk write loses P1 to another writer, which left 1 unit
+        Product other = new Product("P2", "Other", "Brand", "Desc", "Color", "Size", new BigDecimal("5.00"), 5);
+        Product drained = new Product("P1", "Test", "Brand", "Desc", "Color", "Size", new BigDecimal("10.00"), 1);
+        when(orderRepo.findIdsByIdIn(any())).thenReturn(List.of());
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product, "P2", other));
+        when(productCache.reload(any())).thenReturn(Map.of("P1", drained));
+        when(productRepo.decrementStockBulk(any())).thenReturn(Set.of("P1"), Set.of());
+        List<OrderRequest> requests = List.of(
+                new OrderRequest("a", OrderStatus.PROCESSING, List.of(OrderItem.of(product, 2))),
+                new OrderRequest("b", OrderStatus.PROCESSING, List.of(OrderItem.of(other, 1))));
+
+        // WHEN
+        List<OrderResult> results = shopService.placeOrders(requests);
+
+        // THEN
+        assertEquals(List.of(
+                OrderResult.rejected("a", "Insufficient stock for product: P1"),
+                OrderResult.placed("b")), results);
+        verify(productRepo).incrementStockBulk(Map.of("P2", 1));
+        verify(productRepo).decrementStockBulk(Map.of("P2", 1));
+    }
+
+    @Test
+    void placeOrder_shouldBatchAllLines() {
+        // GIVEN
+        Product other = new Product("P2", "Other", "Brand", "Desc", "Color", "Size", new BigDecimal("5.00"), 4);
+        List<OrderItem> items = List.of(orderItem, OrderItem.of(other, 1), OrderItem.of(product, 1));
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product, "P2", other));
+        when(productRepo.decrementStockBulk(Map.of("P1", 3, "P2", 1))).thenReturn(Set.of());
+        when(orderRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        // WHEN
+        shopService.placeOrder("o1", items, OrderStatus.PROCESSING);
+
+        // THEN
+        verify(productCache, times(1)).findAllById(any());
+        verify(productRepo, never()).findById(any());
+        verify(inventoryLogWriter).submitAll(argThat((List<InventoryLog> logs) -> logs.size() == 3));
+    }
+
     @Test
     void placeOrder_shouldThrow_whenInsufficientStock() {
         // GIVEN
         product.setStock(1);
-        when(productRepo.findById("P1")).thenReturn(Optional.of(product));
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product));
+        when(productCache.reload(List.of("P1"))).thenReturn(Map.of("P1", product));
 
         // WHEN & THEN
-        assertThrows(IllegalStateException.class,
+        assertThrows(InsufficientStockException.class,
                 () -> shopService.placeOrder("o1", List.of(orderItem), OrderStatus.PROCESSING));
-        verify(productRepo).findById("P1");
+        verify(productRepo, never()).decrementStockBulk(any());
+        verify(inventoryLogWriter, never()).submitAll(anyList());
+        verify(orderRepo, never()).save(any());
     }
 
     @Test
-    void updateOrderStatus_shouldUpdateStatus_whenExists() {
+    void placeOrder_shouldRecheckDatabase_whenCachedStockLooksShort() {
         // GIVEN
-        Order existing = new Order("o1", List.of(orderItem), OrderStatus.PROCESSING, Instant.now());
-        when(orderRepo.findById("o1")).thenReturn(Optional.of(existing));
+        Product stale = new Product("P1", "Test", "Brand", "Desc", "Color", "Size", new BigDecimal("10.00"), 0);
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", stale));
+        when(productCache.reload(List.of("P1"))).thenReturn(Map.of("P1", product));
+        when(productRepo.decrementStockBulk(Map.of("P1", 2))).thenReturn(Set.of());
         when(orderRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
+        // WHEN
+        shopService.placeOrder("o1", List.of(orderItem), OrderStatus.PROCESSING);
+
+        // THEN
+        verify(productRepo).decrementStockBulk(Map.of("P1", 2));
+        verify(productCache).evictAll(Set.of("P1"));
+    }
+
+    @Test
+    void placeOrder_shouldThrow_whenProductMissing() {
+        // GIVEN
+        when(productCache.findAllById(any())).thenReturn(Map.of());
+        when(productCache.reload(List.of("P1"))).thenReturn(Map.of());
+
+        // WHEN & THEN
+        assertThrows(ProductNotFoundException.class,
+                () -> shopService.placeOrder("o1", List.of(orderItem), OrderStatus.PROCESSING));
+        verify(productRepo, never()).decrementStockBulk(any());
+    }
+
+    @Test
+    void placeOrder_shouldRollBackAppliedLines_whenConcurrentWriteWins() {
+        // GIVEN
+        Product other = new Product("P2", "Other", "Brand", "Desc", "Color", "Size", new BigDecimal("5.00"), 4);
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product, "P2", other));
+        when(productRepo.decrementStockBulk(Map.of("P1", 2, "P2", 1))).thenReturn(Set.of("P2"));
+
+        // WHEN & THEN
+        assertThrows(InsufficientStockException.class,
+                () -> shopService.placeOrder("o1", List.of(orderItem, OrderItem.of(other, 1)), OrderStatus.PROCESSING));
+        verify(productRepo).incrementStockBulk(Map.of("P1", 2));
+        verify(orderRepo, never()).save(any());
+    }
+
+    @Test
+    void updateOrderStatus_shouldUpdateStatus_whenExists() {
+        // GIVEN
+        Order updated = new Order("o1", List.of(orderItem), OrderStatus.COMPLETED, Instant.now());
+        when(orderRepo.updateStatus("o1", OrderStatus.COMPLETED)).thenReturn(updated);
+
         // WHEN
         Order result = shopService.updateOrderStatus("o1", OrderStatus.COMPLETED);
 
         // THEN
         assertEquals(OrderStatus.COMPLETED, result.getStatus());
-        verify(orderRepo).findById("o1");
-        verify(orderRepo).save(any());
+        verify(orderRepo, never()).findById(any());
+        verify(orderRepo, never()).save(any());
     }
 
     @Test
     void updateOrderStatus_shouldThrow_whenNotFound() {
         // GIVEN
-        when(orderRepo.findById("x")).thenReturn(Optional.empty());
+        when(orderRepo.updateStatus("x", OrderStatus.COMPLETED)).thenReturn(null);
 
         // WHEN & THEN
         assertThrows(NoSuchElementException.class,
                 () -> shopService.updateOrderStatus("x", OrderStatus.COMPLETED));
     }
 
+    @Test
+    void updateOrderItemQuantity_shouldUpdateMatchingLineOnly() {
+        // GIVEN
+        Order updated = new Order("o1", List.of(orderItem.withQuantity(7)), OrderStatus.PROCESSING, Instant.now());
+        when(orderRepo.updateItemQuantity("o1", "P1", 7)).thenReturn(updated);
+
+        // WHEN
+        Order result = shopService.updateOrderItemQuantity("o1", "P1", 7);
+
+        // THEN
+        assertEquals(7, result.getItems().get(0).getQuantity());
+        verify(orderRepo, never()).findById(any());
+        verify(orderRepo, never()).save(any());
+    }
+
+    @Test
+    void updateOrderItemQuantity_shouldTellMissingOrderFromMissingLine() {
+        // GIVEN
+        when(orderRepo.updateItemQuantity(any(), any(), anyInt())).thenReturn(null);
+        when(orderRepo.existsById("o1")).thenReturn(true);
+        when(orderRepo.existsById("x")).thenReturn(false);
+
+        // WHEN & THEN
+        NoSuchElementException missingLine = assertThrows(NoSuchElementException.class,
+                () -> shopService.updateOrderItemQuantity("o1", "P9", 1));
+        assertEquals("Product not found in order: P9", missingLine.getMessage());
+        NoSuchElementException missingOrder = assertThrows(NoSuchElementException.class,
+                () -> shopService.updateOrderItemQuantity("x", "P1", 1));
+        assertEquals("Order not found: x", missingOrder.getMessage());
+    }
+
     @Test
     void cancelOrder_shouldRestockAndLog() {
         // GIVEN
-        OrderItem item = new OrderItem(product, 2);
+        OrderItem item = OrderItem.of(product, 2);
         Order existing = new Order("o1", List.of(item), OrderStatus.PROCESSING, Instant.now());
         when(orderRepo.findById("o1")).thenReturn(Optional.of(existing));
-        when(productRepo.findById("P1")).thenReturn(Optional.of(product));
-        when(productRepo.save(any())).thenReturn(product);
         when(orderRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
         // WHEN
@@ -152,8 +425,9 @@ class ShopServiceTest {
 
         // THEN
         assertEquals(OrderStatus.CANCELED, canceled.getStatus());
-        assertEquals(7, product.getStock());
-        verify(inventoryLogRepo).save(any());
+        verify(productRepo).incrementStockBulk(Map.of("P1", 2));
+        verify(productRepo, never()).incrementStock(any(), anyInt());
+        verify(inventoryLogWriter).submitAll(argThat((List<InventoryLog> logs) -> logs.size() == 1));
     }
 
     @Test
@@ -161,8 +435,6 @@ class ShopServiceTest {
         // GIVEN
         Order existing = new Order("o1", List.of(orderItem), OrderStatus.COMPLETED, Instant.now());
         when(orderRepo.findById("o1")).thenReturn(Optional.of(existing));
-        when(productRepo.findById("P1")).thenReturn(Optional.of(product));
-        when(productRepo.save(any())).thenReturn(product);
         when(orderRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
         // WHEN
@@ -170,7 +442,8 @@ class ShopServiceTest {
 
         // THEN
         assertEquals(OrderStatus.REFUNDED, refunded.getStatus());
-        verify(inventoryLogRepo, times(1)).save(any());
+        verify(productRepo).incrementStockBulk(Map.of("P1", 2));
+        verify(inventoryLogWriter, times(1)).submitAll(argThat((List<InventoryLog> logs) -> logs.size() == 1));
     }
 
     @Test
@@ -187,70 +460,345 @@ class ShopServiceTest {
     @Test
     void goodsIn_shouldIncreaseStockAndLog() {
         // GIVEN
-        when(productRepo.findById("P1")).thenReturn(Optional.of(product));
-        when(productRepo.save(any())).thenReturn(product);
+        when(productRepo.incrementStock("P1", 5)).thenReturn(true);
 
         // WHEN
         shopService.goodsIn("P1", 5);
 
         // THEN
-        assertEquals(10, product.getStock());
-        verify(inventoryLogRepo).save(argThat(log -> log.getDelta() == 5));
+        verify(productRepo).incrementStock("P1", 5);
+        verify(inventoryLogWriter).submit(argThat(log -> log.getDelta() == 5));
     }
 
     @Test
     void goodsOut_shouldDecreaseStockAndLog() {
         // GIVEN
-        when(productRepo.findById("P1")).thenReturn(Optional.of(product));
-        when(productRepo.save(any())).thenReturn(product);
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product));
+        when(productRepo.decrementStockBulk(Map.of("P1", 3))).thenReturn(Set.of());
 
         // WHEN
         shopService.goodsOut("P1", 3);
 
         // THEN
-        assertEquals(2, product.getStock());
-        verify(inventoryLogRepo).save(argThat(log -> log.getDelta() == -3));
+        verify(productRepo).decrementStockBulk(Map.of("P1", 3));
+        verify(inventoryLogWriter).submit(argThat(log -> log.getDelta() == -3));
     }
 
     @Test
     void goodsOut_shouldThrow_whenInsufficient() {
         // GIVEN
-        product.setStock(1);
-        when(productRepo.findById("P1")).thenReturn(Optional.of(product));
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product));
+        when(productCache.reload(List.of("P1"))).thenReturn(Map.of("P1", product));
 
         // WHEN & THEN
         assertThrows(InsufficientStockException.class,
-                () -> shopService.goodsOut("P1", 5));
+                () -> shopService.goodsOut("P1", 6));
+        verify(productRepo, never()).decrementStockBulk(any());
+        verify(inventoryLogWriter, never()).submit(any());
     }
 
     @Test
-    void releaseReservedStock_shouldIncreaseStockAndLog() {
+    void goodsOut_shouldThrow_whenProductMissing() {
         // GIVEN
-        when(productRepo.findById("P1")).thenReturn(Optional.of(product));
-        when(productRepo.save(any())).thenReturn(product);
+        when(productCache.findAllById(any())).thenReturn(Map.of());
+        when(productCache.reload(List.of("gone"))).thenReturn(Map.of());
+
+        // WHEN & THEN
+        assertThrows(ProductNotFoundException.class,
+                () -> shopService.goodsOut("gone", 1));
+        verify(inventoryLogWriter, never()).submit(any());
+    }
+
+    @Test
+    void goodsOut_shouldWriteConcurrentRequestsAsOneUpdate_andRejectInArrivalOrder() throws Exception {
+        // GIVEN
+        CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product));
+        when(productRepo.decrementStockBulk(Map.of("P1", 1))).thenAnswer(inv -> {
+            firstWriteStarted.countDown();
+            releaseFirstWrite.await(5, TimeUnit.SECONDS);
+            return Set.of();
+        });
+        when(productRepo.decrementStockBulk(Map.of("P1", 3))).thenReturn(Set.of());
+        AtomicReference<RuntimeException> rejection = new AtomicReference<>();
+
+        // WHEN: two requests queue up behind the first write
+        Thread first = startThread(() -> shopService.goodsOut("P1", 1));
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+        Thread second = startThread(() -> shopService.goodsOut("P1", 3));
+        awaitQueued(second);
+        Thread third = startThread(() -> {
+            try {
+                shopService.goodsOut("P1", 3);
+            } catch (InsufficientStockException ex) {
+                rejection.set(ex);
+            }
+        });
+        awaitQueued(third);
+        releaseFirstWrite.countDown();
+        for (Thread thread : List.of(first, second, third)) {
+            thread.join(5000);
+        }
+
+        // THEN: one write for the queued group, the later request did not fit into the 5 units
+        verify(productRepo).decrementStockBulk(Map.of("P1", 3));
+        assertInstanceOf(InsufficientStockException.class, rejection.get());
+        verify(inventoryLogWriter, times(2)).submit(any());
+    }
+
+    @Test
+    void stockGroup_shouldUndoAppliedTakes_whenTheReserveWriteThrows() throws Exception {
+        // GIVEN
+        CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product));
+        when(productRepo.decrementStockBulk(Map.of("P1", 1))).thenAnswer(inv -> {
+            firstWriteStarted.countDown();
+            releaseFirstWrite.await(5, TimeUnit.SECONDS);
+            return Set.of();
+        }).thenReturn(Set.of());
+        when(productRepo.reserveStockBulk(Map.of("P1", 2))).thenThrow(new DataAccessResourceFailureException("down"));
+        AtomicReference<RuntimeException> takeFailure = new AtomicReference<>();
+
+        // WHEN: a take and a reservation queue up as one group behind the first write
+        Thread first = startThread(() -> shopService.goodsOut("P1", 1));
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+        Thread take = startThread(() -> {
+            try {
+                shopService.goodsOut("P1", 1);
+            } catch (RuntimeException ex) {
+                takeFailure.set(ex);
+            }
+        });
+        awaitQueued(take);
+        Thread reserve = startThread(() -> {
+            try {
+                shopService.reserveStockForCart("c1", List.of(new CartItem("P1", 2)));
+            } catch (RuntimeException ignored) {
+                // expected
+            }
+        });
+        awaitQueued(reserve);
+        releaseFirstWrite.countDown();
+        for (Thread thread : List.of(first, take, reserve)) {
+            thread.join(5000);
+        }
+
+        // THEN: the units taken for the group are put back before it fails
+        assertInstanceOf(DataAccessResourceFailureException.class, takeFailure.get());
+        verify(productRepo).incrementStockBulk(Map.of("P1", 1));
+        verify(cartRepo, never()).save(any());
+    }
+
+    @Test
+    void releaseReservedStock_shouldReleaseReservedUnitsAndLog() {
+        // GIVEN
+        when(productRepo.releaseReserved("P1", 2)).thenReturn(true);
 
         // WHEN
         shopService.releaseReservedStock("P1", 2);
 
         // THEN
-        assertEquals(7, product.getStock());
-        verify(inventoryLogRepo).save(argThat(log -> log.getDelta() == 2));
+        verify(productRepo).releaseReserved("P1", 2);
+        verify(productRepo, never()).incrementStock(any(), anyInt());
+        verify(inventoryLogWriter).submit(argThat(log -> log.getDelta() == 2));
+    }
+
+    @Test
+    void releaseReservedStock_shouldThrow_whenFewerUnitsReserved() {
+        // GIVEN
+        when(productRepo.releaseReserved("P1", 5)).thenReturn(false);
+        when(productRepo.existsById("P1")).thenReturn(true);
+
+        // WHEN & THEN
+        assertThrows(InsufficientStockException.class,
+                () -> shopService.releaseReservedStock("P1", 5));
+        verify(inventoryLogWriter, never()).submit(any());
+    }
+
+    @Test
+    void configureStockShards_shouldShardAndReturnProductWithShardedStock() {
+        // GIVEN
+        when(productRepo.configureStockShards("P1", 8)).thenReturn(true);
+        when(productRepo.findById("P1")).thenReturn(Optional.of(product));
+
+        // WHEN
+        Product result = shopService.configureStockShards("P1", 8);
+
+        // THEN
+        assertSame(product, result);
+        verify(productCache).evict("P1");
+    }
+
+    @Test
+    void configureStockShards_shouldThrow_whenCountOutOfRangeOrProductMissing() {
+        // GIVEN
+        when(productRepo.configureStockShards("missing", 4)).thenReturn(false);
+
+        // WHEN & THEN
+        assertThrows(IllegalArgumentException.class, () -> shopService.configureStockShards("P1", -1));
+        assertThrows(IllegalArgumentException.class,
+                () -> shopService.configureStockShards("P1", ShopService.MAX_STOCK_SHARDS + 1));
+        assertThrows(ProductNotFoundException.class, () -> shopService.configureStockShards("missing", 4));
     }
 
     @Test
     void reserveStockForCart_shouldReserveAndLog() {
         // GIVEN
         CartItem cartItem = new CartItem("P1", 3);
-        when(productRepo.findById("P1")).thenReturn(Optional.of(product));
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product));
+        when(productRepo.reserveStockBulk(Map.of("P1", 3))).thenReturn(Set.of());
         when(cartRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(cartExpirySweeper.expiryOf(any())).thenAnswer(inv -> inv.<Instant>getArgument(0).plusSeconds(60));
 
         // WHEN
         Cart cart = shopService.reserveStockForCart("c1", List.of(cartItem));
 
         // THEN
-        assertEquals(2, product.getStock());
-        verify(inventoryLogRepo).save(argThat(log -> log.getDelta() == -3));
+        verify(productRepo).reserveStockBulk(Map.of("P1", 3));
+        verify(productRepo, never()).decrementStockBulk(any());
+        verify(inventoryLogWriter).submitAll(argThat((List<InventoryLog> logs) -> logs.get(0).getDelta() == -3));
         assertEquals("c1", cart.getId());
+        assertEquals(cart.getCreatedAt().plusSeconds(60), cart.getExpiresAt());
+        verify(cartExpirySweeper).schedule(cart);
+    }
+
+    @Test
+    void reserveStockForCart_shouldSaveCartWithoutTouchingStock_whenItHasNoItems() {
+        // GIVEN
+        when(cartRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(cartExpirySweeper.expiryOf(any())).thenAnswer(inv -> inv.<Instant>getArgument(0).plusSeconds(60));
+
+        // WHEN
+        Cart cart = shopService.reserveStockForCart("c1", List.of());
+
+        // THEN
+        assertEquals(List.of(), cart.getItems());
+        verifyNoInteractions(productRepo, productCache);
+        verify(cartExpirySweeper).schedule(cart);
+    }
+
+    @Test
+    void checkoutCart_shouldCommitReservedUnits() {
+        // GIVEN
+        Cart cart = new Cart("c1", List.of(new CartItem("P1", 3)), Instant.now(), Instant.now().plusSeconds(60));
+        when(cartRepo.remove("c1")).thenReturn(cart);
+        when(productCache.findAllById(Set.of("P1"))).thenReturn(Map.of("P1", product));
+        when(orderRepo.insert(any(Order.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(productRepo.commitReservedBulk(Map.of("P1", 3))).thenReturn(Set.of());
+
+        // WHEN
+        Order order = shopService.checkoutCart("c1");
+
+        // THEN
+        assertEquals("c1", order.getId());
+        assertEquals(OrderStatus.PROCESSING, order.getStatus());
+        assertEquals(List.of(OrderItem.of(product, 3)), order.getItems());
+        verify(cartExpirySweeper).cancel("c1");
+        verify(productRepo).commitReservedBulk(Map.of("P1", 3));
+        verify(productRepo, never()).decrementStockBulk(any());
+        verifyNoInteractions(inventoryLogWriter);
+    }
+
+    @Test
+    void checkoutCart_shouldTakeOnHandStock_whenReservationWasLost() {
+        // GIVEN
+        Cart cart = new Cart("c1", List.of(new CartItem("P1", 3)), Instant.now(), Instant.now().plusSeconds(60));
+        when(cartRepo.remove("c1")).thenReturn(cart);
+        when(productCache.findAllById(Set.of("P1"))).thenReturn(Map.of("P1", product));
+        when(orderRepo.insert(any(Order.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(productRepo.commitReservedBulk(Map.of("P1", 3))).thenReturn(Set.of("P1"));
+        when(productRepo.decrementStockBulk(Map.of("P1", 3))).thenReturn(Set.of());
+
+        // WHEN
+        shopService.checkoutCart("c1");
+
+        // THEN
+        verify(productRepo).decrementStockBulk(Map.of("P1", 3));
+        verify(inventoryLogWriter).submitAll(argThat((List<InventoryLog> logs) -> logs.size() == 1
+                && logs.get(0).getDelta() == -3 && logs.get(0).getSourceType().equals("CheckoutUnreserved")));
+        verify(cartRepo, never()).save(any());
+    }
+
+    @Test
+    void checkoutCart_shouldPutUnitsAndCartBack_whenLostReservationCannotBeServed() {
+        // GIVEN
+        Product other = new Product("P2", "Other", "Brand", "Desc", "Color", "Size", new BigDecimal("5.00"), 5);
+        Product third = new Product("P3", "Third", "Brand", "Desc", "Color", "Size", new BigDecimal("5.00"), 5);
+        Cart cart = new Cart("c1", List.of(new CartItem("P1", 3), new CartItem("P2", 1), new CartItem("P3", 2)),
+                Instant.now(), Instant.now().plusSeconds(60));
+        when(cartRepo.remove("c1")).thenReturn(cart);
+        when(productCache.findAllById(Set.of("P1", "P2", "P3")))
+                .thenReturn(Map.of("P1", product, "P2", other, "P3", third));
+        when(productRepo.commitReservedBulk(Map.of("P1", 3, "P2", 1, "P3", 2))).thenReturn(Set.of("P2", "P3"));
+        when(productRepo.decrementStockBulk(Map.of("P2", 1, "P3", 2))).thenReturn(Set.of("P3"));
+
+        // WHEN & THEN
+        assertThrows(InsufficientStockException.class, () -> shopService.checkoutCart("c1"));
+        verify(productRepo).restoreReservedBulk(Map.of("P1", 3));
+        verify(productRepo).incrementStockBulk(Map.of("P2", 1));
+        verify(orderRepo, never()).insert(any(Order.class));
+        verify(cartRepo).save(cart);
+        verify(cartExpirySweeper).schedule(cart);
+        verifyNoInteractions(inventoryLogWriter);
+    }
+
+    @Test
+    void checkoutCart_shouldThrow_whenCartMissingOrExpired() {
+        // GIVEN
+        when(cartRepo.remove("gone")).thenReturn(null);
+
+        // WHEN & THEN
+        assertThrows(CartNotFoundException.class, () -> shopService.checkoutCart("gone"));
+        verify(orderRepo, never()).insert(any(Order.class));
+    }
+
+    @Test
+    void checkoutCart_shouldPutCartBack_whenOrderCannotBePlaced() {
+        // GIVEN
+        Cart cart = new Cart("c1", List.of(new CartItem("P1", 3)), Instant.now(), Instant.now().plusSeconds(60));
+        when(cartRepo.remove("c1")).thenReturn(cart);
+        when(productCache.findAllById(any())).thenReturn(Map.of());
+
+        // WHEN & THEN
+        assertThrows(ProductNotFoundException.class, () -> shopService.checkoutCart("c1"));
+        verify(cartRepo).save(cart);
+        verify(cartExpirySweeper).schedule(cart);
+    }
+
+    @Test
+    void checkoutCart_shouldPutCartBack_whenReservationCannotBeCommitted() {
+        // GIVEN
+        Cart cart = new Cart("c1", List.of(new CartItem("P1", 3)), Instant.now(), Instant.now().plusSeconds(60));
+        when(cartRepo.remove("c1")).thenReturn(cart);
+        when(productCache.findAllById(Set.of("P1"))).thenReturn(Map.of("P1", product));
+        when(productRepo.commitReservedBulk(Map.of("P1", 3))).thenThrow(new DataAccessResourceFailureException("down"));
+
+        // WHEN & THEN
+        assertThrows(DataAccessResourceFailureException.class, () -> shopService.checkoutCart("c1"));
+        verify(orderRepo, never()).insert(any(Order.class));
+        verify(cartRepo).save(cart);
+        verify(cartExpirySweeper).schedule(cart);
+    }
+
+    @Test
+    void checkoutCart_shouldReturnCommittedUnits_whenOrderCannotBeInserted() {
+        // GIVEN
+        Cart cart = new Cart("c1", List.of(new CartItem("P1", 3)), Instant.now(), Instant.now().plusSeconds(60));
+        when(cartRepo.remove("c1")).thenReturn(cart);
+        when(productCache.findAllById(Set.of("P1"))).thenReturn(Map.of("P1", product));
+        when(productRepo.commitReservedBulk(Map.of("P1", 3))).thenReturn(Set.of());
+        when(orderRepo.insert(any(Order.class))).thenThrow(new DataAccessResourceFailureException("down"));
+
+        // WHEN & THEN
+        assertThrows(DataAccessResourceFailureException.class, () -> shopService.checkoutCart("c1"));
+        InOrder inOrder = inOrder(productRepo, orderRepo);
+        inOrder.verify(productRepo).commitReservedBulk(Map.of("P1", 3));
+        inOrder.verify(orderRepo).insert(any(Order.class));
+        inOrder.verify(productRepo).incrementStockBulk(Map.of("P1", 3));
+        verify(inventoryLogWriter).submitAll(argThat((List<InventoryLog> logs) -> logs.get(0).getDelta() == 3));
+        verify(cartRepo, never()).save(any());
     }
 
     @Test
@@ -258,10 +806,11 @@ class ShopServiceTest {
         // GIVEN
         CartItem cartItem = new CartItem("P1", 3);
         product.setStock(2);
-        when(productRepo.findById("P1")).thenReturn(Optional.of(product));
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product));
+        when(productCache.reload(List.of("P1"))).thenReturn(Map.of("P1", product));
 
         // WHEN & THEN
-        assertThrows(IllegalStateException.class,
+        assertThrows(InsufficientStockException.class,
                 () -> shopService.reserveStockForCart("c2", List.of(cartItem)));
     }
 
@@ -269,7 +818,7 @@ class ShopServiceTest {
     void calculateCartTotal_shouldComputeCorrectly() {
         // GIVEN
         CartItem ci = new CartItem("P1", 2);
-        when(productRepo.findById("P1")).thenReturn(Optional.of(product));
+        when(productCache.findAllById(any())).thenReturn(Map.of("P1", product));
 
         // WHEN
         BigDecimal total = shopService.calculateCartTotal(List.of(ci));
@@ -281,15 +830,59 @@ class ShopServiceTest {
     @Test
     void searchProducts_shouldReturnMatchingList() {
         // GIVEN
-        List<Product> products = List.of(product);
-        when(productRepo.findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase(any(), any(), any(), any(), any()))
-                .thenReturn(products);
+        when(productSearchIndex.search("Test", Pageable.unpaged())).thenReturn(new PageImpl<>(List.of("P1")));
+        when(productCache.findAllById(List.of("P1"))).thenReturn(Map.of("P1", product));
+
+        // WHEN
+        List<Product> result = shopService.searchProducts("  Test ");
+
+        // THEN
+        assertEquals(List.of(product), result);
+    }
+
+    @Test
+    void searchProducts_shouldKeepRankingAndTotal_whenPaged() {
+        // GIVEN
+        Product other = new Product("P2", "Test Two", "Brand", "Desc", "Color", "Size", new BigDecimal("5.00"), 4);
+        Pageable firstPage = PageRequest.of(0, 2);
+        when(productSearchIndex.search("test", firstPage))
+                .thenReturn(new PageImpl<>(List.of("P2", "P1"), firstPage, 5));
+        when(productCache.findAllById(List.of("P2", "P1"))).thenReturn(Map.of("P1", product, "P2", other));
 
         // WHEN
-        List<Product> result = shopService.searchProducts("Test");
+        Page<Product> result = shopService.searchProducts("test", firstPage);
 
         // THEN
-        assertEquals(products, result);
+        assertEquals(List.of(other, product), result.getContent());
+        assertEquals(5, result.getTotalElements());
     }
 
+    @Test
+    void filterProducts_shouldLoadMatchingProductsInIndexOrder() {
+        // GIVEN
+        Product other = new Product("P2", "Other", "Brand", "Desc", "Blue", "Size", new BigDecimal("5.00"), 4);
+        Map<Facet, List<String>> selection = Map.of(Facet.BRAND, List.of("Brand"));
+        when(productFacetIndex.filter(selection)).thenReturn(List.of("P1", "P2"));
+        when(productCache.findAllById(List.of("P1", "P2"))).thenReturn(Map.of("P1", product, "P2", other));
+
+        // WHEN
+        List<Product> result = shopService.filterProducts(selection);
+
+        // THEN
+        assertEquals(List.of(product, other), result);
+    }
+
+
+    private static Thread startThread(Runnable task) {
+        Thread thread = new Thread(task);
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitQueued(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
 }
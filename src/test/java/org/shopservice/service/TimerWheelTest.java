@@ -0,0 +1,68 @@
+package org.shopservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTest {
+
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final TimerWheel<String> wheel = new TimerWheel<>(Duration.ofSeconds(1), 8, START);
+
+    @Test
+    void advance_shouldExpireKeysOnceTheirDeadlinePassed() {
+        wheel.schedule("a", START.plusMillis(1500));
+        wheel.schedule("b", START.plusSeconds(3));
+
+        assertEquals(List.of(), wheel.advance(START.plusSeconds(1)));
+        assertEquals(List.of("a"), wheel.advance(START.plusSeconds(2)));
+        assertEquals(List.of("b"), wheel.advance(START.plusSeconds(3)));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_shouldKeepKeysDueOnALaterRotation() {
+        // 8 slots of 1s: 2s and 10s share a slot
+        wheel.schedule("soon", START.plusSeconds(2));
+        wheel.schedule("later", START.plusSeconds(10));
+
+        assertEquals(List.of("soon"), wheel.advance(START.plusSeconds(2)));
+        assertEquals(List.of(), wheel.advance(START.plusSeconds(9)));
+        assertEquals(List.of("later"), wheel.advance(START.plusSeconds(10)));
+    }
+
+    @Test
+    void advance_shouldCatchUpAfterMoreThanOneRotation() {
+        wheel.schedule("a", START.plusSeconds(3));
+        wheel.schedule("b", START.plusSeconds(20));
+        wheel.schedule("c", START.plusSeconds(60));
+
+        assertEquals(List.of("a", "b"), wheel.advance(START.plusSeconds(30)).stream().sorted().toList());
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void schedule_shouldExpirePastDeadlinesOnTheNextAdvance() {
+        wheel.advance(START.plusSeconds(5));
+        wheel.schedule("late", START.plusSeconds(1));
+
+        assertEquals(List.of("late"), wheel.advance(START.plusSeconds(6)));
+    }
+
+    @Test
+    void cancelAndReschedule_shouldReplaceTheEarlierDeadline() {
+        wheel.schedule("a", START.plusSeconds(2));
+        wheel.schedule("b", START.plusSeconds(2));
+        wheel.schedule("a", START.plusSeconds(4));
+        assertTrue(wheel.cancel("b"));
+        assertFalse(wheel.cancel("b"));
+
+        assertEquals(List.of(), wheel.advance(START.plusSeconds(3)));
+        assertEquals(List.of("a"), wheel.advance(START.plusSeconds(4)));
+    }
+}